@@ -0,0 +1,50 @@
+#ifdef GL_ES
+	#ifdef GL_FRAGMENT_PRECISION_HIGH
+		precision highp float;
+	#else
+		precision mediump float;
+	#endif
+#endif
+varying vec2 v_worldPos;
+uniform sampler2D u_texture;
+// texture regions of the three cloud images as u, v, u2, v2
+uniform vec4 u_regions[3];
+uniform vec2 u_cloudSize;
+uniform float u_cellWidth;
+// speed of the far and the near row of clouds
+uniform vec2 u_speeds;
+uniform float u_baseHeight;
+uniform float u_heightVariation;
+uniform float u_time;
+
+float random(float seed) {
+	return fract(sin(seed) * 43758.5453);
+}
+
+// every cell of a row holds one cloud with a random image, position and
+// height. The row drifts to the left, so where x is now, the row was
+// speed * time further right at the start.
+vec4 sampleRow(float speed, float row) {
+	float x = v_worldPos.x + speed * u_time;
+	float cell = floor(x / u_cellWidth);
+	float seed = cell * 2.0 + row;
+	float left = cell * u_cellWidth + random(seed * 12.9898) * (u_cellWidth - u_cloudSize.x);
+	float bottom = u_baseHeight + (random(seed * 78.233) * 2.0 - 1.0) * u_heightVariation;
+	vec2 local = vec2(x - left, v_worldPos.y - bottom) / u_cloudSize;
+	if (local.x < 0.0 || local.x >= 1.0 || local.y < 0.0 || local.y >= 1.0)
+		return vec4(0.0);
+	float pick = random(seed * 39.425) * 3.0;
+	vec4 region = pick < 1.0 ? u_regions[0] : pick < 2.0 ? u_regions[1] : u_regions[2];
+	return texture2D(u_texture, vec2(mix(region.x, region.z, local.x), mix(region.w, region.y, local.y)));
+}
+
+void main() {
+	vec4 far = sampleRow(u_speeds.x, 0.0);
+	vec4 near = sampleRow(u_speeds.y, 1.0);
+	// near clouds in front of far ones, with premultiplied alpha
+	vec4 color = vec4(near.rgb * near.a, near.a) + vec4(far.rgb * far.a, far.a) * (1.0 - near.a);
+	if (color.a <= 0.0)
+		discard;
+	color.rgb /= color.a;
+	gl_FragColor = color;
+}
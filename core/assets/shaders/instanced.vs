@@ -0,0 +1,25 @@
+// FRAMES is defined by InstancedRenderer, it is the most animation frames
+// a sprite may have
+attribute vec2 a_corner;
+attribute vec2 a_position;
+attribute vec3 a_transform;
+attribute float a_frame;
+varying vec2 v_texCoords;
+uniform mat4 u_projTrans;
+uniform vec2 u_size;
+uniform vec2 u_origin;
+// u, v, u2, v2 of every frame
+uniform vec4 u_frames[FRAMES];
+
+void main() {
+	// the same as SpriteBatch does on the CPU: scale and rotate the corner
+	// around the origin. a_transform is rotation, scale x and scale y.
+	vec2 local = (a_corner * u_size - u_origin) * a_transform.yz;
+	float angle = radians(a_transform.x);
+	float c = cos(angle);
+	float s = sin(angle);
+	vec2 world = a_position + u_origin + vec2(local.x * c - local.y * s, local.x * s + local.y * c);
+	vec4 frame = u_frames[int(a_frame + 0.5)];
+	v_texCoords = vec2(mix(frame.x, frame.z, a_corner.x), mix(frame.w, frame.y, a_corner.y));
+	gl_Position = u_projTrans * vec4(world, 0.0, 1.0);
+}
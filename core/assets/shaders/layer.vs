@@ -0,0 +1,8 @@
+attribute vec4 a_position;
+varying vec2 v_worldPos;
+uniform mat4 u_projTrans;
+
+void main() {
+	v_worldPos = a_position.xy;
+	gl_Position = u_projTrans * a_position;
+}
@@ -0,0 +1,41 @@
+#ifdef GL_ES
+	// world positions far into the level need more than mediump to tile
+	// without jumping
+	#ifdef GL_FRAGMENT_PRECISION_HIGH
+		precision highp float;
+	#else
+		precision mediump float;
+	#endif
+#endif
+varying vec2 v_worldPos;
+uniform sampler2D u_texture;
+// start x, bottom y and tint of each layer, back to front
+uniform vec3 u_layers[3];
+// texture regions of the two parts of a mountain as u, v, u2, v2
+uniform vec4 u_left;
+uniform vec4 u_right;
+uniform vec2 u_tileSize;
+
+vec4 sampleLayer(vec3 layer) {
+	vec2 tile = (v_worldPos - layer.xy) / u_tileSize;
+	if (tile.y < 0.0 || tile.y >= 1.0)
+		return vec4(0.0);
+	vec4 region = mod(floor(tile.x), 2.0) < 0.5 ? u_left : u_right;
+	vec2 uv = vec2(mix(region.x, region.z, fract(tile.x)), mix(region.w, region.y, tile.y));
+	vec4 color = texture2D(u_texture, uv);
+	color.rgb *= layer.z;
+	return color;
+}
+
+void main() {
+	// put the layers on top of each other, with premultiplied alpha
+	vec4 color = vec4(0.0);
+	for (int i = 0; i < 3; i++) {
+		vec4 layer = sampleLayer(u_layers[i]);
+		color = vec4(layer.rgb * layer.a, layer.a) + color * (1.0 - layer.a);
+	}
+	if (color.a <= 0.0)
+		discard;
+	color.rgb /= color.a;
+	gl_FragColor = color;
+}
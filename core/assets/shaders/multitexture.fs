@@ -0,0 +1,20 @@
+#ifdef GL_ES
+	precision mediump float;
+#endif
+// TEXTURES is defined by MultiTextureBatch, it is the number of texture units
+// the batch binds
+varying vec4 v_color;
+varying vec2 v_texCoords;
+varying float v_texIndex;
+uniform sampler2D u_textures[TEXTURES];
+
+void main() {
+	// samplers can only be picked with a loop index in GLSL ES, and the index
+	// is compared with some slack as it went through the rasterizer
+	vec4 texel = vec4(0.0);
+	for (int i = 0; i < TEXTURES; i++) {
+		if (abs(v_texIndex - float(i)) < 0.5)
+			texel = texture2D(u_textures[i], v_texCoords);
+	}
+	gl_FragColor = v_color * texel;
+}
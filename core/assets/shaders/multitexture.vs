@@ -0,0 +1,15 @@
+attribute vec4 a_position;
+attribute vec4 a_color;
+attribute vec2 a_texCoord0;
+attribute float a_texIndex;
+varying vec4 v_color;
+varying vec2 v_texCoords;
+varying float v_texIndex;
+uniform mat4 u_projTrans;
+
+void main() {
+	v_color = a_color;
+	v_texCoords = a_texCoord0;
+	v_texIndex = a_texIndex;
+	gl_Position = u_projTrans * a_position;
+}
@@ -0,0 +1,101 @@
+package com.wilson.gdx;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.graphics.GL20;
+import com.wilson.gdx.game.Assets;
+
+/**
+ * Starts the game without a window, for the benchmarks. The headless backend
+ * has no OpenGL, so we put in a GL20 that does nothing and returns zero for
+ * almost everything; that is enough to load the textures and build levels.
+ * Shaders and frame buffers are reported as fine, so the WorldRenderer can be
+ * set up and its frames drawn into nothing, e.g. to count the calls it makes.
+ *
+ * Has to run in the core folder (or any other folder next to it), so the
+ * "../core/assets/..." paths of the Constants class lead to the assets.
+ *
+ * @author Chris
+ *
+ */
+public class Headless
+{
+
+	// what a typical desktop GPU has
+	private static final int MAX_TEXTURE_IMAGE_UNITS = 16;
+
+	private static HeadlessApplication application;
+	// last object name handed out by the GL
+	private static int lastName;
+
+	/**
+	 * Starts the headless application and loads the assets, once.
+	 */
+	public static synchronized void start()
+	{
+		if (application != null)
+			return;
+		application = new HeadlessApplication(new ApplicationAdapter()
+		{
+		});
+		GL20 gl = (GL20)Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] { GL20.class },
+		        new InvocationHandler()
+		        {
+			        @Override
+			        public Object invoke(Object proxy, Method method, Object[] args)
+			        {
+				        String name = method.getName();
+				        if (name.equals("glGetShaderiv") || name.equals("glGetProgramiv"))
+				        {
+					        int pname = (Integer)args[1];
+					        boolean ok = pname == GL20.GL_COMPILE_STATUS || pname == GL20.GL_LINK_STATUS;
+					        ((IntBuffer)args[2]).put(0, ok ? 1 : 0);
+					        return null;
+				        }
+				        if (name.equals("glGetIntegerv") && (Integer)args[0] == GL20.GL_MAX_TEXTURE_IMAGE_UNITS)
+				        {
+					        ((IntBuffer)args[1]).put(0, MAX_TEXTURE_IMAGE_UNITS);
+					        return null;
+				        }
+				        if (name.equals("glCheckFramebufferStatus"))
+					        return GL20.GL_FRAMEBUFFER_COMPLETE;
+				        Class<?> type = method.getReturnType();
+				        // shaders, programs, textures and buffers all need a name
+				        if (type == int.class && (name.startsWith("glCreate") || name.startsWith("glGen")))
+					        return ++lastName;
+				        if (type == boolean.class)
+					        return false;
+				        if (type == int.class)
+					        return 0;
+				        if (type == float.class)
+					        return 0f;
+				        if (type == String.class)
+					        return "";
+				        return null;
+			        }
+		        });
+		Gdx.gl = gl;
+		Gdx.gl20 = gl;
+		Assets.instance.init(new AssetManager());
+	}
+
+	/**
+	 * Unloads the assets and stops the application.
+	 */
+	public static synchronized void stop()
+	{
+		if (application == null)
+			return;
+		Assets.instance.dispose();
+		application.exit();
+		application = null;
+	}
+
+}
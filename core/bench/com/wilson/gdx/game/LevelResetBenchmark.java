@@ -0,0 +1,74 @@
+package com.wilson.gdx.game;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wilson.gdx.Headless;
+
+/**
+ * Compares building the level from scratch, the way the game did before
+ * every restart, with putting the existing level back to its start.
+ *
+ * Run with "gradlew core:bench -PbenchArgs=LevelReset".
+ *
+ * @author Chris
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LevelResetBenchmark
+{
+
+	private WorldController worldController;
+
+	// org.openjdk.jmh.annotations.Level is spelled out, Level is the game's
+	@Setup(org.openjdk.jmh.annotations.Level.Trial)
+	public void setup()
+	{
+		Headless.start();
+		worldController = new WorldController(null);
+	}
+
+	@TearDown(org.openjdk.jmh.annotations.Level.Trial)
+	public void tearDown()
+	{
+		worldController.dispose();
+		Headless.stop();
+	}
+
+	/**
+	 * New Level plus new physics worlds and bodies.
+	 */
+	@Benchmark
+	public Level load()
+	{
+		worldController.loadLevel();
+		return worldController.level;
+	}
+
+	/**
+	 * Level.reset() plus moving the existing bodies back.
+	 */
+	@Benchmark
+	public Level reset()
+	{
+		worldController.resetLevel();
+		return worldController.level;
+	}
+
+}
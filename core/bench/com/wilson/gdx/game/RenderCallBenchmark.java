@@ -0,0 +1,98 @@
+package com.wilson.gdx.game;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.wilson.gdx.Headless;
+
+/**
+ * Draws the start of the first level with the WorldRenderer, once with the
+ * render queues going through a plain SpriteBatch and once through the
+ * MultiTextureBatch. GLProfiler counts the OpenGL calls of every frame and
+ * the averages per frame are printed at the end of each run.
+ *
+ * The headless GL does nothing, so the time is only what the renderer costs
+ * on the CPU; the draw calls are the same as on a real GPU with 16 texture
+ * units.
+ *
+ * Run with "gradlew core:bench -PbenchArgs=RenderCall".
+ *
+ * @author Chris
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RenderCallBenchmark
+{
+
+	@Param({ "false", "true" })
+	public boolean multiTexture;
+
+	private WorldController worldController;
+	private WorldRenderer worldRenderer;
+	private final FrameSnapshot frame = new FrameSnapshot();
+
+	private long frames;
+	private long drawCalls;
+	private long textureBindings;
+	private long calls;
+
+	// org.openjdk.jmh.annotations.Level is spelled out, Level is the game's
+	@Setup(org.openjdk.jmh.annotations.Level.Trial)
+	public void setup()
+	{
+		Headless.start();
+		worldController = new WorldController(null);
+		worldRenderer = new WorldRenderer(worldController);
+		worldRenderer.resize(1280, 720);
+		worldRenderer.setMultiTexture(multiTexture);
+		// let the level stream in around the camera
+		FrameInput input = new FrameInput();
+		input.capture(worldController);
+		worldController.update(0.1f, input);
+		frame.capture(worldController, false);
+		GLProfiler.enable();
+	}
+
+	@TearDown(org.openjdk.jmh.annotations.Level.Trial)
+	public void tearDown()
+	{
+		GLProfiler.disable();
+		System.out.println();
+		System.out.println((multiTexture ? "MultiTextureBatch" : "SpriteBatch") + ": " + drawCalls
+		        / (float)frames + " draw calls, " + textureBindings / (float)frames + " texture bindings, "
+		        + calls / (float)frames + " GL calls per frame");
+		worldRenderer.dispose();
+		worldController.dispose();
+		Headless.stop();
+	}
+
+	@Benchmark
+	public void render()
+	{
+		GLProfiler.reset();
+		worldRenderer.render(frame);
+		frames++;
+		drawCalls += GLProfiler.drawCalls;
+		textureBindings += GLProfiler.textureBindings;
+		calls += GLProfiler.calls;
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.wilson.gdx.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Finds the items around the player once with the SpatialHash and once by
+ * testing every item, the way testCollisions() used to do it. The items are
+ * spread as densely as the gold coins of the first level, so the level just
+ * gets longer with more items. The grid should stay flat while the loop over
+ * all items grows with their number.
+ *
+ * Run with "gradlew core:bench -PbenchArgs=SpatialHash".
+ *
+ * @author Chris
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SpatialHashBenchmark
+{
+
+	// about one item every three meters, 32 meters high
+	private static final float LEVEL_HEIGHT = 32;
+	private static final float METERS_PER_ITEM = 3;
+	private static final float ITEM_SIZE = 0.5f;
+	// a bit more than the bunny
+	private static final float AREA_SIZE = 2;
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int items;
+
+	private final Array<Rectangle> all = new Array<Rectangle>();
+	private final SpatialHash<Rectangle> grid = new SpatialHash<Rectangle>(Constants.ITEM_GRID_CELL_SIZE);
+	private final Array<Rectangle> result = new Array<Rectangle>();
+	private final Rectangle[] areas = new Rectangle[1024];
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Random random = new Random(1);
+		float levelWidth = items * METERS_PER_ITEM / LEVEL_HEIGHT;
+		for (int i = 0; i < items; i++)
+		{
+			Rectangle bounds = new Rectangle(random.nextFloat() * levelWidth, random.nextFloat() * LEVEL_HEIGHT,
+			        ITEM_SIZE, ITEM_SIZE);
+			all.add(bounds);
+			grid.insert(bounds, bounds);
+		}
+		for (int i = 0; i < areas.length; i++)
+			areas[i] = new Rectangle(random.nextFloat() * levelWidth, random.nextFloat() * LEVEL_HEIGHT,
+			        AREA_SIZE, AREA_SIZE);
+	}
+
+	private Rectangle nextArea()
+	{
+		next = (next + 1) & (areas.length - 1);
+		return areas[next];
+	}
+
+	@Benchmark
+	public int query()
+	{
+		Rectangle area = nextArea();
+		result.clear();
+		int hits = 0;
+		for (Rectangle bounds : grid.query(area, result))
+		{
+			if (bounds.overlaps(area))
+				hits++;
+		}
+		return hits;
+	}
+
+	@Benchmark
+	public int testAll()
+	{
+		Rectangle area = nextArea();
+		int hits = 0;
+		for (int i = 0; i < all.size; i++)
+		{
+			if (all.get(i).overlaps(area))
+				hits++;
+		}
+		return hits;
+	}
+
+}
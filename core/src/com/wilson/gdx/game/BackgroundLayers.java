@@ -0,0 +1,154 @@
+package com.wilson.gdx.game;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.wilson.gdx.game.objects.Clouds;
+import com.wilson.gdx.game.objects.Mountains;
+import com.wilson.gdx.util.Constants;
+
+/**
+ * Draws the mountains and the clouds. Each of them is one quad as wide as the
+ * screen; a shader works out for every pixel which part of which image ends
+ * up there, using nothing but the camera position and the time. Drawing the
+ * background therefore takes the same few vertices however long the level
+ * is, and nothing has to be moved or respawned on the CPU.
+ *
+ * The layers are drawn with the batch of the WorldRenderer, but with their
+ * own shaders, so the batch must not be drawing when they are rendered.
+ *
+ * @author Chris
+ *
+ */
+public class BackgroundLayers implements Disposable
+{
+
+	private final Mountains mountains;
+	private final Clouds clouds;
+	private final ShaderProgram shaderMountains;
+	private final ShaderProgram shaderClouds;
+
+	private final float[] layers = new float[3 * Mountains.LAYERS];
+	private final float[] cloudRegions;
+	// top and bottom of the quads
+	private final float mountainsBottom;
+	private final float mountainsTop;
+	private final float cloudsBottom;
+	private final float cloudsTop;
+
+	public BackgroundLayers(Level level)
+	{
+		mountains = level.mountains;
+		clouds = level.clouds;
+		shaderMountains = createShader(Constants.shaderLayerVertex, Constants.shaderMountainsFragment);
+		shaderClouds = createShader(Constants.shaderLayerVertex, Constants.shaderCloudsFragment);
+
+		float bottom = Float.POSITIVE_INFINITY;
+		float top = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < Mountains.LAYERS; i++)
+		{
+			bottom = Math.min(bottom, mountains.getLayerY(i));
+			top = Math.max(top, mountains.getLayerY(i) + mountains.dimension.y);
+		}
+		mountainsBottom = bottom;
+		mountainsTop = top;
+
+		Array<TextureRegion> regions = clouds.getRegions();
+		cloudRegions = new float[4 * regions.size];
+		for (int i = 0; i < regions.size; i++)
+			putRegion(regions.get(i), cloudRegions, 4 * i);
+		cloudsBottom = Clouds.BASE_HEIGHT - Clouds.HEIGHT_VARIATION;
+		cloudsTop = Clouds.BASE_HEIGHT + Clouds.HEIGHT_VARIATION + clouds.dimension.y;
+	}
+
+	private static ShaderProgram createShader(String vertex, String fragment)
+	{
+		ShaderProgram shader = new ShaderProgram(Gdx.files.internal(vertex), Gdx.files.internal(fragment));
+		if (!shader.isCompiled())
+			throw new GdxRuntimeException("Could not compile shader program: " + shader.getLog());
+		return shader;
+	}
+
+	private static void putRegion(TextureRegion region, float[] values, int offset)
+	{
+		values[offset] = region.getU();
+		values[offset + 1] = region.getV();
+		values[offset + 2] = region.getU2();
+		values[offset + 3] = region.getV2();
+	}
+
+	/**
+	 * Draws all layers of mountains. The batch's shader is set back to the
+	 * default one afterwards.
+	 *
+	 * @param batch
+	 * @param view
+	 *            the visible area of the world
+	 * @param cameraX
+	 *            where the camera is, the layers scroll with it
+	 */
+	public void renderMountains(Batch batch, Rectangle view, float cameraX)
+	{
+		if (view.y > mountainsTop || view.y + view.height < mountainsBottom)
+			return;
+		for (int i = 0; i < Mountains.LAYERS; i++)
+		{
+			layers[3 * i] = mountains.getLayerX(i, cameraX);
+			layers[3 * i + 1] = mountains.getLayerY(i);
+			layers[3 * i + 2] = mountains.getLayerTint(i);
+		}
+		TextureRegion left = mountains.getRegionLeft();
+		TextureRegion right = mountains.getRegionRight();
+		batch.setShader(shaderMountains);
+		batch.begin();
+		shaderMountains.setUniform3fv("u_layers", layers, 0, layers.length);
+		shaderMountains.setUniformf("u_left", left.getU(), left.getV(), left.getU2(), left.getV2());
+		shaderMountains.setUniformf("u_right", right.getU(), right.getV(), right.getU2(), right.getV2());
+		shaderMountains.setUniformf("u_tileSize", mountains.dimension.x, mountains.dimension.y);
+		batch.draw(left.getTexture(), view.x, mountainsBottom, view.width, mountainsTop - mountainsBottom);
+		batch.end();
+		batch.setShader(null);
+	}
+
+	/**
+	 * Draws the clouds. The batch's shader is set back to the default one
+	 * afterwards.
+	 *
+	 * @param batch
+	 * @param view
+	 *            the visible area of the world
+	 * @param time
+	 *            how long the clouds have been drifting, see
+	 *            Clouds.renderTime
+	 */
+	public void renderClouds(Batch batch, Rectangle view, float time)
+	{
+		if (view.y > cloudsTop || view.y + view.height < cloudsBottom)
+			return;
+		batch.setShader(shaderClouds);
+		batch.begin();
+		shaderClouds.setUniform4fv("u_regions", cloudRegions, 0, cloudRegions.length);
+		shaderClouds.setUniformf("u_cloudSize", clouds.dimension.x, clouds.dimension.y);
+		shaderClouds.setUniformf("u_cellWidth", Clouds.CELL_WIDTH);
+		shaderClouds.setUniformf("u_speeds", Clouds.SPEED_FAR, Clouds.SPEED_NEAR);
+		shaderClouds.setUniformf("u_baseHeight", Clouds.BASE_HEIGHT);
+		shaderClouds.setUniformf("u_heightVariation", Clouds.HEIGHT_VARIATION);
+		shaderClouds.setUniformf("u_time", time);
+		batch.draw(clouds.getRegions().first().getTexture(), view.x, cloudsBottom, view.width, cloudsTop - cloudsBottom);
+		batch.end();
+		batch.setShader(null);
+	}
+
+	@Override
+	public void dispose()
+	{
+		shaderMountains.dispose();
+		shaderClouds.dispose();
+	}
+
+}
@@ -0,0 +1,267 @@
+package com.wilson.gdx.game;
+
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.wilson.gdx.game.objects.Feather;
+import com.wilson.gdx.game.objects.GoldCoin;
+import com.wilson.gdx.util.Constants;
+
+/**
+ * Low detail stand-ins for the chunks of the level, used when the camera is
+ * zoomed out far. Everything in a chunk that does not move by itself, its
+ * rocks and the gold coins and feathers that are left, is drawn once into a
+ * small texture, and from then on the whole chunk is drawn as one quad with
+ * that texture.
+ *
+ * An impostor is only drawn again when its chunk changes, i.e. when an item
+ * in it is collected or the level is reset (see Level.getChunkVersion()),
+ * and only once the chunk is seen again. Impostors that have not been seen
+ * for a while are thrown away once there are more than
+ * Constants.IMPOSTOR_CACHE_SIZE of them.
+ *
+ * Rocks are drawn at rest and items without their animation; at the zoom
+ * impostors are used at, neither can be made out anyway.
+ *
+ * @author Chris
+ *
+ */
+public class ChunkImpostors implements Disposable
+{
+
+	private static class Impostor
+	{
+		FrameBuffer frameBuffer;
+		// the area of the world the texture shows
+		final Rectangle bounds = new Rectangle();
+		int chunk;
+		int version = -1;
+		int lastUsed;
+	}
+
+	private final Level level;
+	private final TerrainCache terrainCache;
+	private final Impostor[] impostors;
+	private final Array<Impostor> made = new Array<Impostor>();
+	private int frame;
+
+	// for drawing the impostors
+	private final GoldCoin goldCoin = new GoldCoin();
+	private final Feather feather = new Feather();
+	private final OrthographicCamera camera = new OrthographicCamera();
+	private final IntBuffer binding = BufferUtils.newIntBuffer(16);
+	private final int[] viewport = new int[4];
+
+	public ChunkImpostors(Level level, TerrainCache terrainCache)
+	{
+		this.level = level;
+		this.terrainCache = terrainCache;
+		impostors = new Impostor[level.chunks.length];
+	}
+
+	/**
+	 * Tells whether the level is drawn with impostors at a zoom.
+	 *
+	 * @param zoom
+	 * @return
+	 */
+	public static boolean isUsed(float zoom)
+	{
+		return zoom >= Constants.IMPOSTOR_ZOOM;
+	}
+
+	/**
+	 * Makes sure the impostors of the given chunks are up to date. This draws
+	 * into frame buffers with the given batch, so it has to be called while
+	 * the batch is not drawing. The batch's projection matrix is changed.
+	 *
+	 * @param batch
+	 * @param parts
+	 *            parts of the terrain as found by Level.findVisibleTerrain(),
+	 *            only the chunks in there are looked at
+	 */
+	public void update(SpriteBatch batch, IntArray parts)
+	{
+		frame++;
+		for (int i = 0; i < parts.size; i++)
+		{
+			int chunk = parts.get(i);
+			if (chunk < 0)
+				continue;
+			Impostor impostor = impostors[chunk];
+			if (impostor == null)
+			{
+				impostor = new Impostor();
+				impostor.chunk = chunk;
+				impostors[chunk] = impostor;
+				made.add(impostor);
+			}
+			impostor.lastUsed = frame;
+			// the version has to be read before the collected flags
+			int version = level.getChunkVersion(chunk);
+			if (impostor.version != version)
+			{
+				make(batch, impostor);
+				impostor.version = version;
+			}
+		}
+		while (made.size > Constants.IMPOSTOR_CACHE_SIZE)
+		{
+			Impostor oldest = made.first();
+			for (Impostor impostor : made)
+			{
+				if (impostor.lastUsed < oldest.lastUsed)
+					oldest = impostor;
+			}
+			// all of them are needed for this frame
+			if (oldest.lastUsed == frame)
+				break;
+			made.removeValue(oldest, true);
+			impostors[oldest.chunk] = null;
+			if (oldest.frameBuffer != null)
+				oldest.frameBuffer.dispose();
+		}
+	}
+
+	/**
+	 * Draws the impostors of the given chunks. The batch has to be drawing.
+	 *
+	 * @param batch
+	 * @param parts
+	 *            the same parts that were passed to update()
+	 */
+	public void render(SpriteBatch batch, IntArray parts)
+	{
+		// the textures hold premultiplied alpha
+		batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+		for (int i = 0; i < parts.size; i++)
+		{
+			int chunk = parts.get(i);
+			if (chunk < 0 || impostors[chunk] == null || impostors[chunk].frameBuffer == null)
+				continue;
+			Impostor impostor = impostors[chunk];
+			Rectangle bounds = impostor.bounds;
+			// frame buffer textures are upside down
+			batch.draw(impostor.frameBuffer.getColorBufferTexture(), bounds.x, bounds.y, bounds.width, bounds.height, 0,
+			        0, 1, 1);
+		}
+		batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+	}
+
+	/**
+	 * Draws the content of a chunk into the frame buffer of its impostor.
+	 */
+	private void make(SpriteBatch batch, Impostor impostor)
+	{
+		LevelChunk chunk = level.chunks[impostor.chunk];
+		Rectangle bounds = impostor.bounds;
+		bounds.set(terrainCache.getChunkBounds(chunk.index));
+		for (int i = 0; i < chunk.goldcoinEntries.size; i++)
+		{
+			level.placeGoldCoin(goldCoin, chunk.goldcoinEntries.get(i));
+			addBounds(bounds, goldCoin.position.x, goldCoin.position.y, goldCoin.dimension.x, goldCoin.dimension.y);
+		}
+		for (int i = 0; i < chunk.featherEntries.size; i++)
+		{
+			level.placeFeather(feather, chunk.featherEntries.get(i));
+			addBounds(bounds, feather.position.x, feather.position.y, feather.dimension.x, feather.dimension.y);
+		}
+		if (bounds.width == 0 || bounds.height == 0)
+			return;
+		// whole texels, so the texture is not stretched
+		int width = MathUtils.ceil(bounds.width * Constants.IMPOSTOR_PIXELS_PER_METER);
+		int height = MathUtils.ceil(bounds.height * Constants.IMPOSTOR_PIXELS_PER_METER);
+		bounds.setSize((float)width / Constants.IMPOSTOR_PIXELS_PER_METER,
+		        (float)height / Constants.IMPOSTOR_PIXELS_PER_METER);
+		if (impostor.frameBuffer == null || impostor.frameBuffer.getWidth() != width
+		        || impostor.frameBuffer.getHeight() != height)
+		{
+			if (impostor.frameBuffer != null)
+				impostor.frameBuffer.dispose();
+			impostor.frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+			impostor.frameBuffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear,
+			        Texture.TextureFilter.Linear);
+		}
+
+		// the frame buffer that is bound now may not be the screen, so it is
+		// put back afterwards instead of just unbinding ours
+		binding.clear();
+		Gdx.gl.glGetIntegerv(GL20.GL_FRAMEBUFFER_BINDING, binding);
+		int previous = binding.get(0);
+		binding.clear();
+		Gdx.gl.glGetIntegerv(GL20.GL_VIEWPORT, binding);
+		binding.get(viewport);
+
+		impostor.frameBuffer.bind();
+		Gdx.gl.glViewport(0, 0, width, height);
+		Gdx.gl.glClearColor(0, 0, 0, 0);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+		camera.setToOrtho(false, bounds.width, bounds.height);
+		camera.position.set(bounds.x + bounds.width / 2, bounds.y + bounds.height / 2, 0);
+		camera.update();
+		// keep the alpha of what is drawn right, which makes the color
+		// premultiplied
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFuncSeparate(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA, GL20.GL_ONE,
+		        GL20.GL_ONE_MINUS_SRC_ALPHA);
+		terrainCache.renderChunk(camera.combined, level, chunk);
+		// -1 tells the batch to leave the blend function alone
+		batch.setBlendFunction(-1, -1);
+		batch.setProjectionMatrix(camera.combined);
+		batch.begin();
+		for (int i = 0; i < chunk.goldcoinEntries.size; i++)
+		{
+			int index = chunk.goldcoinEntries.get(i);
+			if (level.isGoldcoinCollected(index))
+				continue;
+			level.placeGoldCoin(goldCoin, index);
+			goldCoin.savePreviousState();
+			goldCoin.render(batch);
+		}
+		for (int i = 0; i < chunk.featherEntries.size; i++)
+		{
+			int index = chunk.featherEntries.get(i);
+			if (level.isFeatherCollected(index))
+				continue;
+			level.placeFeather(feather, index);
+			feather.savePreviousState();
+			feather.render(batch);
+		}
+		batch.end();
+		batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+		Gdx.gl.glBindFramebuffer(GL20.GL_FRAMEBUFFER, previous);
+		Gdx.gl.glViewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+	}
+
+	private static void addBounds(Rectangle bounds, float x, float y, float width, float height)
+	{
+		if (bounds.width == 0 && bounds.height == 0)
+			bounds.set(x, y, width, height);
+		else
+			bounds.merge(x, y).merge(x + width, y + height);
+	}
+
+	@Override
+	public void dispose()
+	{
+		for (Impostor impostor : made)
+		{
+			if (impostor.frameBuffer != null)
+				impostor.frameBuffer.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+package com.wilson.gdx.game;
+
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+import com.wilson.gdx.util.Constants;
+
+/**
+ * Renders the world at a lower resolution when frames take too long, and
+ * scales it up to the screen afterwards. The GUI is drawn on top at the full
+ * resolution, so text stays sharp.
+ *
+ * The world is drawn into the lower left part of a frame buffer the size of
+ * the screen; only the part that is used shrinks, so changing the scale
+ * never creates a new frame buffer.
+ *
+ * The scale follows the measured frame time. OpenGL ES 2 can't tell how long
+ * the GPU took on its own, but the time between frames includes waiting for
+ * it, so that is what is measured. When the smoothed frame time goes over
+ * the budget, the scale drops by a step every Constants.RESOLUTION_ADJUST_TIME
+ * seconds, down to Constants.RESOLUTION_MIN_SCALE. With vsync a frame never
+ * finishes early, so headroom is found by trying: after
+ * Constants.RESOLUTION_HEADROOM_TIME seconds on budget the scale goes up by
+ * a smaller step, and comes right back down if that was too much.
+ *
+ * @author Chris
+ *
+ */
+public class DynamicResolution implements Disposable
+{
+
+	// share of a new frame time in the smoothed one
+	private static final float SMOOTHING = 0.1f;
+	// a frame this much over the budget still counts as on budget
+	private static final float TOLERANCE = 1.1f;
+	private static final float STEP_DOWN = 0.1f;
+	private static final float STEP_UP = 0.05f;
+
+	private FrameBuffer frameBuffer;
+	private int width;
+	private int height;
+	private float scale = 1;
+	private int scaledWidth;
+	private int scaledHeight;
+
+	private float frameTime = Constants.RESOLUTION_FRAME_BUDGET;
+	private float adjustTime;
+	private float onBudgetTime;
+
+	private final Matrix4 projection = new Matrix4();
+	private final IntBuffer binding = BufferUtils.newIntBuffer(16);
+	private int previous;
+
+	/**
+	 * Sets the size of the screen. The frame buffer is made again if it
+	 * changes.
+	 *
+	 * @param width
+	 * @param height
+	 */
+	public void resize(int width, int height)
+	{
+		if (width == this.width && height == this.height)
+			return;
+		this.width = width;
+		this.height = height;
+		if (frameBuffer != null)
+			frameBuffer.dispose();
+		frameBuffer = null;
+		if (width <= 0 || height <= 0)
+			return;
+		frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+		frameBuffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+		projection.setToOrtho2D(0, 0, width, height);
+	}
+
+	/**
+	 * Adjusts the scale to how long the last frame took.
+	 *
+	 * @param deltaTime
+	 *            time since the last frame, not capped
+	 */
+	public void update(float deltaTime)
+	{
+		frameTime += (deltaTime - frameTime) * SMOOTHING;
+		adjustTime += deltaTime;
+		if (frameTime > Constants.RESOLUTION_FRAME_BUDGET * TOLERANCE)
+		{
+			onBudgetTime = 0;
+			if (adjustTime >= Constants.RESOLUTION_ADJUST_TIME)
+			{
+				setScale(scale - STEP_DOWN);
+				adjustTime = 0;
+			}
+		} else
+		{
+			onBudgetTime += deltaTime;
+			if (onBudgetTime >= Constants.RESOLUTION_HEADROOM_TIME)
+			{
+				setScale(scale + STEP_UP);
+				onBudgetTime = 0;
+				adjustTime = 0;
+			}
+		}
+	}
+
+	private void setScale(float scale)
+	{
+		this.scale = MathUtils.clamp(scale, Constants.RESOLUTION_MIN_SCALE, 1);
+	}
+
+	public float getScale()
+	{
+		return scale;
+	}
+
+	/**
+	 * Starts drawing the world into the frame buffer. It is cleared with the
+	 * current clear color, the same the screen was cleared with.
+	 */
+	public void begin()
+	{
+		if (frameBuffer == null)
+			return;
+		scaledWidth = Math.max(MathUtils.round(width * scale), 1);
+		scaledHeight = Math.max(MathUtils.round(height * scale), 1);
+		binding.clear();
+		Gdx.gl.glGetIntegerv(GL20.GL_FRAMEBUFFER_BINDING, binding);
+		previous = binding.get(0);
+		frameBuffer.bind();
+		Gdx.gl.glViewport(0, 0, scaledWidth, scaledHeight);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+	}
+
+	/**
+	 * Stops drawing into the frame buffer. What was drawn can then be drawn
+	 * onto the screen with draw(), or handed on from getTexture().
+	 */
+	public void end()
+	{
+		if (frameBuffer == null)
+			return;
+		Gdx.gl.glBindFramebuffer(GL20.GL_FRAMEBUFFER, previous);
+		Gdx.gl.glViewport(0, 0, width, height);
+	}
+
+	/**
+	 * The texture the world was drawn into, upside down like all frame buffer
+	 * textures. Only the part given by getU2() and getV2() is used. Null if
+	 * the world was drawn straight onto the screen.
+	 *
+	 * @return
+	 */
+	public Texture getTexture()
+	{
+		return frameBuffer != null ? frameBuffer.getColorBufferTexture() : null;
+	}
+
+	public float getU2()
+	{
+		return (float)scaledWidth / width;
+	}
+
+	public float getV2()
+	{
+		return (float)scaledHeight / height;
+	}
+
+	/**
+	 * Draws the world onto the screen, scaled up to its full size.
+	 *
+	 * @param batch
+	 *            must not be drawing; its projection matrix is changed
+	 */
+	public void draw(SpriteBatch batch)
+	{
+		if (frameBuffer == null)
+			return;
+		batch.setProjectionMatrix(projection);
+		batch.disableBlending();
+		batch.begin();
+		// frame buffer textures are upside down
+		batch.draw(frameBuffer.getColorBufferTexture(), 0, 0, width, height, 0, 0, getU2(), getV2());
+		batch.end();
+		batch.enableBlending();
+	}
+
+	@Override
+	public void dispose()
+	{
+		if (frameBuffer != null)
+			frameBuffer.dispose();
+	}
+
+}
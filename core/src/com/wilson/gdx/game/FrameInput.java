@@ -0,0 +1,67 @@
+package com.wilson.gdx.game;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input.Keys;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Everything the WorldController needs to know about the player for one
+ * frame: the keys held down, the keys released since the last frame, the
+ * touch screen, the accelerometer and the size of the viewport.
+ *
+ * The input is captured on the render thread before the frame is simulated
+ * and not changed while the simulation reads it, so the simulation never has
+ * to look at Gdx.input or the window itself. It is the counterpart of
+ * FrameSnapshot, which carries the result of the frame the other way.
+ *
+ * @author Chris
+ *
+ */
+public class FrameInput
+{
+
+	// the keys the game polls every frame, all others are only seen when
+	// they are released
+	private static final int[] POLLED_KEYS = { Keys.LEFT, Keys.RIGHT, Keys.UP, Keys.DOWN, Keys.SPACE,
+	        Keys.SHIFT_LEFT, Keys.BACKSPACE, Keys.COMMA, Keys.PERIOD, Keys.SLASH };
+
+	private final boolean[] keysPressed = new boolean[256];
+	public final IntArray releasedKeys = new IntArray();
+	public boolean touched;
+	public float accelerometerY;
+
+	// size of the viewport of the camera in world units at a zoom of 1
+	public float viewportWidth;
+	public float viewportHeight;
+
+	/**
+	 * Polls the input of the frame and takes over the keys and the viewport
+	 * size the controller collected on the render thread.
+	 *
+	 * @param worldController
+	 */
+	public void capture(WorldController worldController)
+	{
+		for (int i = 0; i < POLLED_KEYS.length; i++)
+			keysPressed[POLLED_KEYS[i]] = Gdx.input.isKeyPressed(POLLED_KEYS[i]);
+		touched = Gdx.input.isTouched();
+		accelerometerY = worldController.accelerometerAvailable ? Gdx.input.getAccelerometerY() : 0;
+
+		releasedKeys.clear();
+		releasedKeys.addAll(worldController.releasedKeys);
+		worldController.releasedKeys.clear();
+		viewportWidth = worldController.viewportWidth;
+		viewportHeight = worldController.viewportHeight;
+	}
+
+	/**
+	 * @param keycode
+	 *            one of the keys the game polls
+	 * @return whether the key was held down when the input was captured
+	 */
+	public boolean isKeyPressed(int keycode)
+	{
+		return keysPressed[keycode];
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.wilson.gdx.game;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.wilson.gdx.util.BatchRecorder;
+import com.wilson.gdx.util.SpriteInstances;
+
+/**
+ * Everything WorldRenderer needs to draw one frame: where the camera is, the
+ * numbers shown in the GUI and the recorded sprites of the level.
+ *
+ * The snapshot is filled from the WorldController after its update and is
+ * not changed while it is drawn, so the renderer never has to look at game
+ * objects the simulation might be changing at the same time.
+ *
+ * @author Chris
+ *
+ */
+public class FrameSnapshot
+{
+
+	// camera
+	public float cameraX;
+	public float cameraY;
+	public float cameraZoom;
+	// how long the clouds have been drifting, for BackgroundLayers
+	public float cloudTime;
+
+	// GUI
+	public int score;
+	public float scoreVisual;
+	public int lives;
+	public float livesVisual;
+	public float timeLeftFeatherPowerup;
+	public boolean gameOver;
+	public int objectsDrawn;
+	public int objectsTotal;
+
+	// sprites of the level. The rocks are drawn from the TerrainCache in
+	// between the two.
+	public final BatchRecorder background = new BatchRecorder();
+	public final BatchRecorder foreground = new BatchRecorder();
+	public final IntArray terrainParts = new IntArray();
+	public final FloatArray terrainOffsets = new FloatArray();
+	// gold coins and carrots, when they are drawn instanced; then they are
+	// not in the foreground
+	public final SpriteInstances goldcoinInstances = new SpriteInstances();
+	public final SpriteInstances carrotInstances = new SpriteInstances();
+	public boolean instanced;
+	// the simulation is already working on the next frame
+	public boolean simulatedAhead;
+	private final Rectangle view = new Rectangle();
+
+	/**
+	 * Copies the state of the controller into the snapshot and records the
+	 * sprites of the level, so it can be drawn without looking at the level
+	 * again.
+	 *
+	 * @param worldController
+	 * @param simulatedAhead
+	 *            the simulation runs on its own thread and will change the
+	 *            world while the snapshot is drawn
+	 */
+	public void capture(WorldController worldController, boolean simulatedAhead)
+	{
+		cameraX = worldController.cameraHelper.getRenderPosition().x;
+		cameraY = worldController.cameraHelper.getRenderPosition().y;
+		cameraZoom = worldController.cameraHelper.getZoom();
+		cloudTime = worldController.level.clouds.renderTime;
+
+		score = worldController.score;
+		scoreVisual = worldController.scoreVisual;
+		lives = worldController.lives;
+		livesVisual = worldController.livesVisual;
+		timeLeftFeatherPowerup = worldController.level.bunnyHead.timeLeftFeatherPowerup;
+		gameOver = worldController.isGameOver();
+
+		this.simulatedAhead = simulatedAhead;
+		Level level = worldController.level;
+		worldController.cameraHelper.getVisibleArea(view);
+		background.clear();
+		background.begin();
+		level.renderBackground(background, view);
+		background.end();
+		level.findVisibleTerrain(view, terrainParts, terrainOffsets);
+		foreground.clear();
+		goldcoinInstances.clear();
+		carrotInstances.clear();
+		instanced = InstancedRenderer.isSupported();
+		foreground.begin();
+		level.renderForeground(foreground, view, ChunkImpostors.isUsed(cameraZoom), instanced ? goldcoinInstances : null,
+		        instanced ? carrotInstances : null);
+		foreground.end();
+		objectsDrawn = level.objectsDrawn;
+		objectsTotal = level.objectsTotal;
+	}
+
+}
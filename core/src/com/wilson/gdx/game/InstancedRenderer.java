@@ -0,0 +1,156 @@
+package com.wilson.gdx.game;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.wilson.gdx.util.Constants;
+import com.wilson.gdx.util.SpriteInstances;
+
+/**
+ * Draws all copies of a sprite, like all gold coins, with one instanced draw
+ * call. There is a single quad with the corners (0, 0) to (1, 1), and for
+ * every copy only the few numbers of SpriteInstances are uploaded; the
+ * vertex shader turns them into the four corners, the way SpriteBatch would
+ * have done on the CPU.
+ *
+ * Instancing needs OpenGL ES 3.0. When the game runs on OpenGL ES 2.0,
+ * isSupported() is false and the sprites are drawn with the batch instead.
+ *
+ * @author Chris
+ *
+ */
+public class InstancedRenderer implements Disposable
+{
+
+	private static final int FLOAT_BYTES = 4;
+
+	private final ShaderProgram shader;
+	private final int vertexArray;
+	private final int cornerBuffer;
+	private final int instanceBuffer;
+	private FloatBuffer instanceData = BufferUtils.newFloatBuffer(SpriteInstances.INSTANCE_SIZE * 256);
+	private final float[] frames = new float[4 * Constants.INSTANCED_MAX_FRAMES];
+
+	/**
+	 * Tells whether sprites can be drawn instanced, i.e. whether there is an
+	 * OpenGL ES 3.0 context.
+	 *
+	 * @return
+	 */
+	public static boolean isSupported()
+	{
+		return Gdx.gl30 != null;
+	}
+
+	public InstancedRenderer()
+	{
+		shader = new ShaderProgram("#define FRAMES " + Constants.INSTANCED_MAX_FRAMES + "\n"
+		        + Gdx.files.internal(Constants.shaderInstancedVertex).readString(),
+		        Gdx.files.internal(Constants.shaderInstancedFragment).readString());
+		if (!shader.isCompiled())
+			throw new GdxRuntimeException("Could not compile shader program: " + shader.getLog());
+
+		GL30 gl = Gdx.gl30;
+		IntBuffer ids = BufferUtils.newIntBuffer(1);
+		gl.glGenVertexArrays(1, ids);
+		vertexArray = ids.get(0);
+		cornerBuffer = gl.glGenBuffer();
+		instanceBuffer = gl.glGenBuffer();
+		gl.glBindVertexArray(vertexArray);
+
+		// the corners of the quad, the same for every instance
+		FloatBuffer corners = BufferUtils.newFloatBuffer(8);
+		corners.put(new float[] { 0, 0, 1, 0, 1, 1, 0, 1 });
+		corners.flip();
+		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, cornerBuffer);
+		gl.glBufferData(GL20.GL_ARRAY_BUFFER, 8 * FLOAT_BYTES, corners, GL20.GL_STATIC_DRAW);
+		int corner = shader.getAttributeLocation("a_corner");
+		gl.glEnableVertexAttribArray(corner);
+		gl.glVertexAttribPointer(corner, 2, GL20.GL_FLOAT, false, 0, 0);
+
+		// the rest moves on once per instance
+		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, instanceBuffer);
+		int stride = SpriteInstances.INSTANCE_SIZE * FLOAT_BYTES;
+		enableInstanceAttribute(gl, "a_position", 2, stride, 0);
+		enableInstanceAttribute(gl, "a_transform", 3, stride, 2 * FLOAT_BYTES);
+		enableInstanceAttribute(gl, "a_frame", 1, stride, 5 * FLOAT_BYTES);
+
+		gl.glBindVertexArray(0);
+		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+	}
+
+	private void enableInstanceAttribute(GL30 gl, String name, int size, int stride, int offset)
+	{
+		int location = shader.getAttributeLocation(name);
+		gl.glEnableVertexAttribArray(location);
+		gl.glVertexAttribPointer(location, size, GL20.GL_FLOAT, false, stride, offset);
+		gl.glVertexAttribDivisor(location, 1);
+	}
+
+	/**
+	 * Draws all instances. No batch may be drawing at the same time.
+	 *
+	 * @param projection
+	 * @param instances
+	 */
+	public void render(Matrix4 projection, SpriteInstances instances)
+	{
+		int count = instances.size();
+		if (count == 0)
+			return;
+		TextureRegion[] regions = instances.getFrames();
+		if (regions.length > Constants.INSTANCED_MAX_FRAMES)
+			throw new GdxRuntimeException("Too many frames to draw instanced: " + regions.length);
+		for (int i = 0; i < regions.length; i++)
+		{
+			frames[4 * i] = regions[i].getU();
+			frames[4 * i + 1] = regions[i].getV();
+			frames[4 * i + 2] = regions[i].getU2();
+			frames[4 * i + 3] = regions[i].getV2();
+		}
+
+		int floats = count * SpriteInstances.INSTANCE_SIZE;
+		if (instanceData.capacity() < floats)
+			instanceData = BufferUtils.newFloatBuffer(Math.max(floats, instanceData.capacity() * 2));
+		BufferUtils.copy(instances.getInstances(), instanceData, floats, 0);
+		GL30 gl = Gdx.gl30;
+		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, instanceBuffer);
+		gl.glBufferData(GL20.GL_ARRAY_BUFFER, floats * FLOAT_BYTES, instanceData, GL20.GL_STREAM_DRAW);
+		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+
+		gl.glEnable(GL20.GL_BLEND);
+		gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+		instances.getTexture().bind(0);
+		shader.begin();
+		shader.setUniformMatrix("u_projTrans", projection);
+		shader.setUniformf("u_size", instances.getWidth(), instances.getHeight());
+		shader.setUniformf("u_origin", instances.getOriginX(), instances.getOriginY());
+		shader.setUniform4fv("u_frames", frames, 0, 4 * regions.length);
+		shader.setUniformi("u_texture", 0);
+		gl.glBindVertexArray(vertexArray);
+		gl.glDrawArraysInstanced(GL20.GL_TRIANGLE_FAN, 0, 4, count);
+		gl.glBindVertexArray(0);
+		shader.end();
+		gl.glDisable(GL20.GL_BLEND);
+	}
+
+	@Override
+	public void dispose()
+	{
+		GL30 gl = Gdx.gl30;
+		gl.glDeleteVertexArrays(1, new int[] { vertexArray }, 0);
+		gl.glDeleteBuffer(cornerBuffer);
+		gl.glDeleteBuffer(instanceBuffer);
+		shader.dispose();
+	}
+
+}
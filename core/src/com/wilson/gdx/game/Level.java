@@ -1,9 +1,23 @@
 package com.wilson.gdx.game;
 
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
 import com.wilson.gdx.game.objects.AbstractGameObject;
 import com.wilson.gdx.game.objects.BunnyHead;
 import com.wilson.gdx.game.objects.Carrot;
@@ -14,6 +28,11 @@ import com.wilson.gdx.game.objects.GoldCoin;
 import com.wilson.gdx.game.objects.Mountains;
 import com.wilson.gdx.game.objects.Rock;
 import com.wilson.gdx.game.objects.WaterOverlay;
+import com.wilson.gdx.util.BatchRecorder;
+import com.wilson.gdx.util.Constants;
+import com.wilson.gdx.util.OccupancyBitmap;
+import com.wilson.gdx.util.SpatialHash;
+import com.wilson.gdx.util.SpriteInstances;
 
 
 public class Level {
@@ -22,9 +41,23 @@ public class Level {
 	 * Rocks, Clouds, Mountains, and water overlay. To do this it takes in our
 	 * level PNG file and builds based off of pixels used there.
 	 * 
-	 * Most of these objects are loaded in the init() method
+	 * Most of these objects are loaded in the init() method. The parsing of
+	 * the PNG itself lives in LevelTemplate, which caches the result.
+	 * 
+	 * Rocks, coins and feathers are streamed in chunks around the camera, so
+	 * the rocks, goldcoins and feathers lists only ever hold the objects of
+	 * the active chunks (see updateStreaming()).
 	 */
 	public static final String TAG = Level.class.getName();
+
+	// rocks are 1.5 meters tall, every pixel row puts them a quarter of
+	// that higher
+	private static final float ROCK_HEIGHT = 1.5f;
+	private static final int ROCK_ROWS = 4;
+	private static final float ROCK_ROW_HEIGHT = ROCK_HEIGHT / ROCK_ROWS;
+	private static final float ROCK_BASE_Y = -2.5f;
+	// how far a floating rock can get away from its resting height
+	private static final float ROCK_FLOAT_MARGIN = 0.5f;
 	
 	/**
 	 * This takes in RGB values for each pixel in the game and spawns them
@@ -40,14 +73,30 @@ public class Level {
 		ROCK(0, 255, 0), // green
 		PLAYER_SPAWNPOINT(255, 255, 255), // white
 		ITEM_FEATHER(255, 0, 255), // purple
-		ITEM_GOLD_COIN(255, 255, 0); // yellow
+		ITEM_GOLD_COIN(255, 255, 0), // yellow
+		ROCK_STATIC(0, 128, 0); // dark green, a rock that doesn't float
 
 		private int color;
 
+		// lookup table from pixel color to block type
+		private static final IntMap<BLOCK_TYPE> types = new IntMap<BLOCK_TYPE>();
+		static {
+			for (BLOCK_TYPE type : values())
+				types.put(type.color, type);
+		}
+
 		private BLOCK_TYPE (int r, int g, int b) {
 			color = r << 24 | g << 16 | b << 8 | 0xff;
 		}
 
+		/**
+		 * Returns the block type of a 32-bit RGBA pixel color, or null if
+		 * the color does not stand for any block type.
+		 */
+		public static BLOCK_TYPE forColor (int color) {
+			return types.get(color);
+		}
+
 		public boolean sameColor (int color) {
 			return this.color == color;
 		}
@@ -57,10 +106,30 @@ public class Level {
 		}
 	}
 
+	/**
+	 * Gets told whenever a chunk of the level becomes active or is about to be
+	 * unloaded, so the owner of the physics world can create and destroy the
+	 * bodies of its objects, and whenever an active chunk falls asleep or
+	 * wakes up again (see updateActivity()). All calls happen on the thread
+	 * that calls updateStreaming() and updateActivity().
+	 */
+	public interface ChunkListener {
+		public void chunkActivated (LevelChunk chunk);
+
+		public void chunkDeactivated (LevelChunk chunk);
+
+		public void chunkAsleep (LevelChunk chunk);
+
+		public void chunkAwake (LevelChunk chunk);
+	}
+
+	// creates the game objects of chunks in the background
+	private static ExecutorService chunkLoader;
+
 	// player character
 	public BunnyHead bunnyHead;
 
-	// objects
+	// objects of all active chunks
 	public Array<Rock> rocks;
 	public Array<GoldCoin> goldcoins;
 	public Array<Feather> feathers;
@@ -72,165 +141,936 @@ public class Level {
 	public WaterOverlay waterOverlay;
 	public Goal goal;
 
+	// immutable description of the level file, shared between restarts
+	public LevelTemplate template;
+
+	// the level split into slices along the x-axis
+	public LevelChunk[] chunks;
+	private ChunkListener chunkListener;
+	// range of chunks that are not unloaded
+	private int streamedFirst;
+	private int streamedLast;
+	// objects between these are updated every step
+	private float activeMinX = Float.NEGATIVE_INFINITY;
+	private float activeMaxX = Float.POSITIVE_INFINITY;
+
+	// solid cells of all rocks of the level, one row per rock height and
+	// one column per meter, whether their chunk is loaded or not
+	public OccupancyBitmap terrain;
+	// template index of each rock, keyed by the first cell of its run
+	private IntIntMap rockRuns;
+	// rock objects of the active chunks by template index
+	private Rock[] rockObjects;
+	// whether a rock floats, by template index. Rocks that don't float are
+	// covered by rockColliders instead.
+	private boolean[] rockFloating;
+	// static collision rectangles of all rocks that don't float, in world
+	// units
+	public final Array<Rectangle> rockColliders = new Array<Rectangle>();
+	// one clock for the floating of all rocks, and when each rock starts
+	// floating on it, by template index
+	private float floatClock;
+	private float[] rockFloatStart;
+
+	// uniform grids of the items of all active chunks that have not been
+	// collected yet, used to find the items near the player
+	public SpatialHash<GoldCoin> goldcoinIndex;
+	public SpatialHash<Feather> featherIndex;
+	private final Rectangle itemBounds = new Rectangle();
+
+	// drawing: objects can reach a bit further than their bounds (the edges of
+	// rocks, rotated carrots), so the visible area is grown by CULL_MARGIN
+	private static final float CULL_MARGIN = 1.0f;
+	// layers of the render queue the foreground is drawn in, see
+	// BatchRecorder.setLayer()
+	static final int LAYER_ITEMS = 0;
+	static final int LAYER_CARROTS = 1;
+	static final int LAYER_PARTICLES = 2;
+	static final int LAYER_PLAYER = 3;
+	static final int LAYER_WATER = 4;
+	private final Rectangle cullArea = new Rectangle();
+	// how many chunks the longest rock reaches past the one it starts in
+	private int rockReach;
+	private final Array<GoldCoin> visibleGoldcoins = new Array<GoldCoin>();
+	private final Array<Feather> visibleFeathers = new Array<Feather>();
+	// how many objects the last call of render() drew out of how many there are
+	public int objectsDrawn;
+	public int objectsTotal;
+
+	// collected items, indexed like the entries of the template, so the
+	// state survives when their chunk is unloaded
+	private boolean[] goldcoinsCollected;
+	private boolean[] feathersCollected;
+	// counts the changes to what the impostor of a chunk shows, see
+	// ChunkImpostors. It is raised on the simulation thread after the
+	// collected flags are set and read on the render thread before them.
+	private AtomicIntegerArray chunkVersions;
+
 	public Level (String filename) {
 		init(filename);
 	}
 	
 	/**
-	 * Creates an empty list for rocks. Then uses Gdx.files.internal() to get a
-	 * file handle, which in turn is used to create a new Pixmap object. This is
-	 * how it determines what image to render.
-	 * 
-	 * Init loops through the pixels of our level PNG and scans starting at the
-	 * top left. By doing this we define the game worlds height and length while
-	 * also determining relative scale of our objects.
+	 * Looks up the (cached) template for the level file and splits it into
+	 * chunks. The level image itself is only read the very first time a level
+	 * is loaded; after that LevelTemplate hands out the parsed result.
 	 * 
-	 * currentPixel keeps track of the color value in the current pixel being
-	 * looked at.
+	 * No rock, coin or feather is created here. They are created chunk by
+	 * chunk once updateStreaming() finds the camera close enough to them.
 	 * 
 	 * @param filename
 	 */
 	private void init (String filename) {
+		template = LevelTemplate.load(filename);
+
 		// player character
-		bunnyHead = null;
+		bunnyHead = new BunnyHead();
 
 		// objects
 		rocks = new Array<Rock>();
 		goldcoins = new Array<GoldCoin>();
 		feathers = new Array<Feather>();
 		carrots = new Array<Carrot>();
+		goal = new Goal();
+		goldcoinIndex = new SpatialHash<GoldCoin>(Constants.ITEM_GRID_CELL_SIZE);
+		featherIndex = new SpatialHash<Feather>(Constants.ITEM_GRID_CELL_SIZE);
+		goldcoinsCollected = new boolean[template.goldcoins.length];
+		feathersCollected = new boolean[template.feathers.length];
+		placeObjects();
 
-		// load image file that represents the level data
-		Pixmap pixmap = new Pixmap(Gdx.files.internal(filename));
-		// scan pixels from top-left to bottom-right
-		int lastPixel = -1;
-		for (int pixelY = 0; pixelY < pixmap.getHeight(); pixelY++) {
-			for (int pixelX = 0; pixelX < pixmap.getWidth(); pixelX++) {
-				AbstractGameObject obj = null;
-				float offsetHeight = 0;
-				// height grows from bottom to top
-				float baseHeight = pixmap.getHeight() - pixelY;
-				// get color of current pixel as 32-bit RGBA value
-				int currentPixel = pixmap.getPixel(pixelX, pixelY);
-				// find matching color value to identify block type at (x,y)
-				// point and create the corresponding game object if there is
-				// a match
-
-				// empty space
-				if (BLOCK_TYPE.EMPTY.sameColor(currentPixel)) {
-					// do nothing
-				}
-				// rock
-				else if (BLOCK_TYPE.ROCK.sameColor(currentPixel)) {
-					if (lastPixel != currentPixel) {
-						obj = new Rock();
-						float heightIncreaseFactor = 0.25f;
-						offsetHeight = -2.5f;
-						obj.position.set(pixelX, baseHeight * obj.dimension.y * heightIncreaseFactor + offsetHeight);
-						rocks.add((Rock)obj);
-					} else {
-						rocks.get(rocks.size - 1).increaseLength(1);
-					}
-				}
-				// player spawn point
-				else if (BLOCK_TYPE.PLAYER_SPAWNPOINT.sameColor(currentPixel)) {
-					obj = new BunnyHead();
-					offsetHeight = -3.0f;
-					obj.position.set(pixelX, baseHeight * obj.dimension.y + offsetHeight);
-					bunnyHead = (BunnyHead)obj;
-				}
-				// feather
-				else if (BLOCK_TYPE.ITEM_FEATHER.sameColor(currentPixel)) {
-					obj = new Feather();
-					offsetHeight = -1.5f;
-					obj.position.set(pixelX, baseHeight * obj.dimension.y + offsetHeight);
-					feathers.add((Feather)obj);
-				}
-				// gold coin
-				else if (BLOCK_TYPE.ITEM_GOLD_COIN.sameColor(currentPixel)) {
-					obj = new GoldCoin();
-					offsetHeight = -1.5f;
-					obj.position.set(pixelX, baseHeight * obj.dimension.y + offsetHeight);
-					goldcoins.add((GoldCoin)obj);
-				}
-				// goal
-				else if (BLOCK_TYPE.GOAL.sameColor(currentPixel)) {
-					obj = new Goal();
-					offsetHeight = -7.0f;
-					obj.position.set(pixelX, baseHeight + offsetHeight);
-					goal = (Goal)obj;
-				}
-				// unknown object/pixel color
-				else {
-					// red color channel
-					int r = 0xff & (currentPixel >>> 24);
-					// green color channel
-					int g = 0xff & (currentPixel >>> 16);
-					// blue color channel
-					int b = 0xff & (currentPixel >>> 8);
-					// alpha channel
-					int a = 0xff & currentPixel;
-					Gdx.app.error(TAG, "Unknown object at x<" + pixelX + "> y<" + pixelY + ">: r<" + r + "> g<" + g + "> b<" + b
-						+ "> a<" + a + ">");
-				}
-				lastPixel = currentPixel;
-			}
+		// chunks
+		int numChunks = chunkIndex(Math.max(template.width, template.maxX)) + 1;
+		chunks = new LevelChunk[numChunks];
+		for (int i = 0; i < numChunks; i++)
+			chunks[i] = new LevelChunk(i, Constants.LEVEL_CHUNK_WIDTH);
+		chunkVersions = new AtomicIntegerArray(numChunks);
+		for (int i = 0; i < template.rocks.length; i++) {
+			LevelTemplate.Entry entry = template.rocks[i];
+			LevelChunk chunk = chunks[chunkIndex(entry.x)];
+			chunk.rockEntries.add(i);
+			chunk.rocksEndX = Math.max(chunk.rocksEndX, entry.x + entry.length);
+			rockReach = Math.max(rockReach, chunkIndex(entry.x + entry.length) - chunk.index);
+		}
+		for (int i = 0; i < template.goldcoins.length; i++)
+			chunks[chunkIndex(template.goldcoins[i].x)].goldcoinEntries.add(i);
+		for (int i = 0; i < template.feathers.length; i++)
+			chunks[chunkIndex(template.feathers[i].x)].featherEntries.add(i);
+		streamedFirst = Integer.MAX_VALUE;
+		streamedLast = -1;
+
+		// terrain
+		int terrainWidth = Math.max(template.maxX, 0);
+		int terrainHeight = template.height + 1;
+		terrain = new OccupancyBitmap(terrainWidth, terrainHeight,
+			(long)terrainWidth * terrainHeight > Constants.TERRAIN_OFF_HEAP_CELLS);
+		rockRuns = new IntIntMap(template.rocks.length);
+		for (int i = 0; i < template.rocks.length; i++) {
+			LevelTemplate.Entry entry = template.rocks[i];
+			terrain.set(entry.x, entry.y, entry.length);
+			rockRuns.put(entry.y * terrain.width + entry.x, i);
 		}
+		rockObjects = new Rock[template.rocks.length];
+		findFloatingRocks();
+		buildRockColliders();
+		rockFloatStart = new float[template.rocks.length];
+		resetFloating();
 
 		// decoration
-		clouds = new Clouds(pixmap.getWidth());
+		clouds = new Clouds();
 		clouds.position.set(0, 2);
-		mountains = new Mountains(pixmap.getWidth());
+		mountains = new Mountains();
 		mountains.position.set(-1, -1);
-		waterOverlay = new WaterOverlay(pixmap.getWidth());
+		waterOverlay = new WaterOverlay(template.width);
 		waterOverlay.position.set(0, -3.75f);
 
-		// free memory
-		pixmap.dispose();
-		Gdx.app.debug(TAG, "level '" + filename + "' loaded");
+		savePreviousState();
+
+		Gdx.app.debug(TAG, "level '" + filename + "' loaded (" + numChunks + " chunks)");
+	}
+
+	public void setChunkListener (ChunkListener chunkListener) {
+		this.chunkListener = chunkListener;
+	}
+
+	/**
+	 * Puts the level back into the state it had right after loading without
+	 * creating any new objects. This is what happens whenever the player
+	 * loses a life, so it only resets the per-object state in place. Chunks
+	 * that are loaded stay loaded.
+	 * 
+	 * Carrots are dropped from the list; their physics bodies belong to the
+	 * WorldController and have to be released there first.
+	 */
+	public void reset () {
+		bunnyHead.init();
+		Arrays.fill(goldcoinsCollected, false);
+		Arrays.fill(feathersCollected, false);
+		for (int i = 0; i < chunks.length; i++)
+			chunkVersions.incrementAndGet(i);
+		resetFloating();
+		for (GoldCoin goldCoin : goldcoins)
+			goldCoin.collected = false;
+		for (Feather feather : feathers)
+			feather.collected = false;
+		carrots.clear();
+		placeObjects();
+		for (int i = streamedFirst; i <= streamedLast; i++) {
+			if (chunks[i].state == LevelChunk.STATE.ACTIVE)
+				placeObjects(chunks[i]);
+		}
+		savePreviousState();
+		goldcoinIndex.clear();
+		for (GoldCoin goldCoin : goldcoins)
+			goldcoinIndex.insert(goldCoin, getBounds(goldCoin, itemBounds));
+		featherIndex.clear();
+		for (Feather feather : feathers)
+			featherIndex.insert(feather, getBounds(feather, itemBounds));
+	}
+
+	/**
+	 * Marks a gold coin as collected and takes it out of the item index.
+	 * 
+	 * @param goldCoin
+	 */
+	public void collect (GoldCoin goldCoin) {
+		goldCoin.collected = true;
+		goldcoinIndex.remove(goldCoin, getBounds(goldCoin, itemBounds));
+		LevelChunk chunk = chunks[chunkIndex(goldCoin.position.x)];
+		goldcoinsCollected[chunk.goldcoinEntries.get(chunk.goldcoins.indexOf(goldCoin, true))] = true;
+		chunkVersions.incrementAndGet(chunk.index);
+	}
+
+	/**
+	 * Marks a feather as collected and takes it out of the item index.
+	 * 
+	 * @param feather
+	 */
+	public void collect (Feather feather) {
+		feather.collected = true;
+		featherIndex.remove(feather, getBounds(feather, itemBounds));
+		LevelChunk chunk = chunks[chunkIndex(feather.position.x)];
+		feathersCollected[chunk.featherEntries.get(chunk.feathers.indexOf(feather, true))] = true;
+		chunkVersions.incrementAndGet(chunk.index);
+	}
+
+	/**
+	 * Tells how often the items of a chunk have changed. Can be called from
+	 * any thread; once a change is seen here, isCollected() shows it too.
+	 * 
+	 * @param chunk
+	 * @return
+	 */
+	int getChunkVersion (int chunk) {
+		return chunkVersions.get(chunk);
+	}
+
+	/**
+	 * Tells whether the gold coin of a template entry has been collected.
+	 * 
+	 * @param index template index of the gold coin
+	 * @return
+	 */
+	boolean isGoldcoinCollected (int index) {
+		return goldcoinsCollected[index];
+	}
+
+	/**
+	 * Tells whether the feather of a template entry has been collected.
+	 * 
+	 * @param index template index of the feather
+	 * @return
+	 */
+	boolean isFeatherCollected (int index) {
+		return feathersCollected[index];
+	}
+
+	/**
+	 * Stores the bounding box of an object in world coordinates.
+	 * 
+	 * @param obj
+	 * @param out
+	 * @return out
+	 */
+	public static Rectangle getBounds (AbstractGameObject obj, Rectangle out) {
+		return out.set(obj.position.x + obj.bounds.x, obj.position.y + obj.bounds.y, obj.bounds.width,
+			obj.bounds.height);
+	}
+
+	/**
+	 * Moves the player and the goal to the positions the template describes.
+	 * The height of an object is derived from the pixel row it was found in.
+	 */
+	private void placeObjects () {
+		LevelTemplate.Entry entry = template.playerSpawnpoint;
+		bunnyHead.position.set(entry.x, entry.y * bunnyHead.dimension.y - 3.0f);
+		entry = template.goal;
+		goal.position.set(entry.x, entry.y - 7.0f);
+	}
+
+	/**
+	 * Moves the objects of a chunk to the positions of their template
+	 * entries. Safe to call from the loader thread for chunks that are not
+	 * active yet.
+	 * 
+	 * @param chunk
+	 */
+	private void placeObjects (LevelChunk chunk) {
+		for (int i = 0; i < chunk.rocks.size; i++) {
+			Rock rock = chunk.rocks.get(i);
+			LevelTemplate.Entry entry = template.rocks[chunk.rockEntries.get(i)];
+			rock.position.set(entry.x, getRockBaseY(entry.y));
+			rock.floating = rockFloating[chunk.rockEntries.get(i)];
+			rock.floatVelocity = 0;
+		}
+		for (int i = 0; i < chunk.goldcoins.size; i++)
+			placeGoldCoin(chunk.goldcoins.get(i), chunk.goldcoinEntries.get(i));
+		for (int i = 0; i < chunk.feathers.size; i++)
+			placeFeather(chunk.feathers.get(i), chunk.featherEntries.get(i));
+	}
+
+	/**
+	 * Moves a gold coin to the position of a template entry.
+	 * 
+	 * @param goldCoin
+	 * @param index template index of the gold coin
+	 */
+	void placeGoldCoin (GoldCoin goldCoin, int index) {
+		LevelTemplate.Entry entry = template.goldcoins[index];
+		goldCoin.position.set(entry.x, entry.y * goldCoin.dimension.y - 1.5f);
+	}
+
+	/**
+	 * Moves a feather to the position of a template entry.
+	 * 
+	 * @param feather
+	 * @param index template index of the feather
+	 */
+	void placeFeather (Feather feather, int index) {
+		LevelTemplate.Entry entry = template.feathers[index];
+		feather.position.set(entry.x, entry.y * feather.dimension.y - 1.5f);
+	}
+
+	/**
+	 * Decides which rocks float. Every rock floats up and down on its own,
+	 * touching other rocks or not, unless the level marks it as a static rock
+	 * (BLOCK_TYPE.ROCK_STATIC). Only those stand still and go into the static
+	 * colliders.
+	 */
+	private void findFloatingRocks () {
+		rockFloating = new boolean[template.rocks.length];
+		for (int i = 0; i < template.rocks.length; i++)
+			rockFloating[i] = template.rocks[i].type != BLOCK_TYPE.ROCK_STATIC;
+	}
+
+	/**
+	 * Restarts the floating of all rocks. Each rock waits a random time of up
+	 * to half a cycle, so they don't all move in step.
+	 */
+	private void resetFloating () {
+		floatClock = 0;
+		for (int i = 0; i < rockFloatStart.length; i++)
+			rockFloatStart[i] = MathUtils.random(0, Rock.FLOAT_CYCLE_TIME / 2);
+	}
+
+	/**
+	 * Moves the floating rocks of a chunk to where the float cycle puts them
+	 * at the current time of the clock.
+	 * 
+	 * @param chunk
+	 */
+	private void updateFloatingRocks (LevelChunk chunk) {
+		for (int j = 0; j < chunk.rocks.size; j++) {
+			Rock rock = chunk.rocks.get(j);
+			if (!rock.floating) continue;
+			int index = chunk.rockEntries.get(j);
+			float time = floatClock - rockFloatStart[index];
+			rock.position.y = getRockBaseY(template.rocks[index].y) + Rock.floatOffset(time);
+			rock.floatVelocity = Rock.floatVelocity(time);
+		}
+	}
+
+	/**
+	 * Merges the cells of all rocks that don't float into as few rectangles
+	 * as possible. Cells of floating rocks move and are never merged. A rock
+	 * covers ROCK_ROWS terrain rows, so stacked rocks overlap and end up in
+	 * the same rectangles.
+	 */
+	private void buildRockColliders () {
+		OccupancyBitmap cells = new OccupancyBitmap(terrain.width, terrain.height + ROCK_ROWS, false);
+		int resting = 0;
+		for (int i = 0; i < template.rocks.length; i++) {
+			if (rockFloating[i]) continue;
+			LevelTemplate.Entry entry = template.rocks[i];
+			for (int row = entry.y; row < entry.y + ROCK_ROWS; row++)
+				cells.set(entry.x, row, entry.length);
+			resting++;
+		}
+		rockColliders.clear();
+		cells.takeRectangles(rockColliders);
+		for (Rectangle collider : rockColliders)
+			collider.set(collider.x, getRockBaseY((int)collider.y), collider.width, collider.height * ROCK_ROW_HEIGHT);
+		Gdx.app.debug(TAG, resting + " of " + template.rocks.length + " rocks rest in " + rockColliders.size
+			+ " static colliders");
+	}
+
+	/**
+	 * Height at which the rocks of a terrain row rest.
+	 * 
+	 * @param row
+	 * @return
+	 */
+	static float getRockBaseY (int row) {
+		return row * ROCK_ROW_HEIGHT + ROCK_BASE_Y;
+	}
+
+	/**
+	 * Tells whether a rock floats, see findFloatingRocks().
+	 * 
+	 * @param index template index of the rock
+	 * @return
+	 */
+	boolean isRockFloating (int index) {
+		return rockFloating[index];
+	}
+
+	/**
+	 * Current height of a rock. Rocks of unloaded chunks are not floating,
+	 * so they are at their resting height.
+	 * 
+	 * @param index template index of the rock
+	 * @return
+	 */
+	private float getRockY (int index) {
+		Rock rock = rockObjects[index];
+		return rock != null ? rock.position.y : getRockBaseY(template.rocks[index].y);
+	}
+
+	/**
+	 * Template index of the rock that covers a solid terrain cell.
+	 */
+	private int getRockIndex (int x, int row) {
+		return rockRuns.get(row * terrain.width + terrain.runStart(x, row), -1);
+	}
+
+	/**
+	 * Tells whether a point of the world is inside of a rock. Only the few
+	 * terrain rows whose rocks could reach the point are looked at, so this
+	 * does not depend on the number of rocks.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public boolean isSolid (float x, float y) {
+		int column = (int)Math.floor(x);
+		int firstRow = (int)Math.ceil((y - ROCK_HEIGHT - ROCK_FLOAT_MARGIN - ROCK_BASE_Y) / ROCK_ROW_HEIGHT);
+		int lastRow = (int)Math.floor((y + ROCK_FLOAT_MARGIN - ROCK_BASE_Y) / ROCK_ROW_HEIGHT);
+		for (int row = Math.max(firstRow, 0); row <= lastRow; row++) {
+			if (!terrain.isSolid(column, row))
+				continue;
+			float bottom = getRockY(getRockIndex(column, row));
+			if (y >= bottom && y < bottom + ROCK_HEIGHT)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the top of the highest rock at x that is not above y, i.e. the
+	 * ground something at (x, y) would land on.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return the height of the ground or Float.NEGATIVE_INFINITY if there is
+	 *         nothing but water below
+	 */
+	public float getGroundHeight (float x, float y) {
+		int column = (int)Math.floor(x);
+		float ground = Float.NEGATIVE_INFINITY;
+		int row = (int)Math.floor((y + ROCK_FLOAT_MARGIN - ROCK_HEIGHT - ROCK_BASE_Y) / ROCK_ROW_HEIGHT);
+		while ((row = terrain.highestSolid(column, row)) >= 0) {
+			// rows further down can't be higher, even when floating
+			if (getRockBaseY(row) + ROCK_HEIGHT + ROCK_FLOAT_MARGIN < ground)
+				break;
+			float top = getRockY(getRockIndex(column, row)) + ROCK_HEIGHT;
+			if (top <= y && top > ground)
+				ground = top;
+			row--;
+		}
+		return ground;
+	}
+
+	/**
+	 * Adds the active rocks whose cells could overlap an area to the given
+	 * array. Like the item index this only narrows down the candidates, the
+	 * caller still has to test their bounds.
+	 * 
+	 * @param area
+	 * @param result
+	 * @return
+	 */
+	public Array<Rock> findRocks (Rectangle area, Array<Rock> result) {
+		int firstColumn = Math.max((int)Math.floor(area.x), 0);
+		int lastColumn = Math.min((int)Math.floor(area.x + area.width), terrain.width - 1);
+		int firstRow = (int)Math.ceil((area.y - ROCK_HEIGHT - ROCK_FLOAT_MARGIN - ROCK_BASE_Y) / ROCK_ROW_HEIGHT);
+		int lastRow = (int)Math.floor((area.y + area.height + ROCK_FLOAT_MARGIN - ROCK_BASE_Y) / ROCK_ROW_HEIGHT);
+		for (int row = Math.max(firstRow, 0); row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				if (!terrain.isSolid(column, row))
+					continue;
+				int index = getRockIndex(column, row);
+				if (index < 0)
+					continue;
+				if (rockObjects[index] != null)
+					result.add(rockObjects[index]);
+				// the rest of the run belongs to the same rock
+				LevelTemplate.Entry entry = template.rocks[index];
+				column = entry.x + entry.length - 1;
+			}
+		}
+		return result;
+	}
+
+	private int chunkIndex (float x) {
+		return (int)Math.floor(x / Constants.LEVEL_CHUNK_WIDTH);
+	}
+
+	/**
+	 * Loads the chunks that come within range of the given center (usually
+	 * the camera position) and unloads the ones that are well out of range.
+	 * Chunks are created on a loader thread; once they are done they are
+	 * activated here, which is also when the chunk listener gets to create
+	 * their physics bodies. Only the chunks between the streamed ones and the
+	 * new range are looked at, so the cost does not grow with level length.
+	 * 
+	 * The chunks around the player are always activated right away, waiting
+	 * for the loader if needed, so the player never stands on missing rocks
+	 * (e.g. right after being put back to the spawn point).
+	 * 
+	 * @param centerX
+	 * @param range
+	 */
+	public void updateStreaming (float centerX, float range) {
+		int last = chunks.length - 1;
+		int loadFirst = MathUtils.clamp(chunkIndex(centerX - range), 0, last);
+		int loadLast = MathUtils.clamp(chunkIndex(centerX + range), 0, last);
+		// chunks are only unloaded one chunk width further away
+		float unloadRange = range + Constants.LEVEL_CHUNK_WIDTH;
+		int keepFirst = chunkIndex(centerX - unloadRange);
+		int keepLast = chunkIndex(centerX + unloadRange);
+		int playerFirst = MathUtils.clamp(chunkIndex(bunnyHead.position.x) - 1, 0, last);
+		int playerLast = MathUtils.clamp(chunkIndex(bunnyHead.position.x) + 1, 0, last);
+
+		for (int i = playerFirst; i <= playerLast; i++)
+			activateNow(chunks[i]);
+
+		int first = Math.min(Math.min(loadFirst, playerFirst), streamedFirst);
+		int end = Math.max(Math.max(loadLast, playerLast), streamedLast);
+		streamedFirst = Integer.MAX_VALUE;
+		streamedLast = -1;
+		for (int i = first; i <= end; i++) {
+			LevelChunk chunk = chunks[i];
+			boolean keep = (i >= keepFirst && i <= keepLast) || (i >= playerFirst && i <= playerLast);
+			if (chunk.state == LevelChunk.STATE.UNLOADED && keep && i >= loadFirst && i <= loadLast) {
+				startLoading(chunk);
+			} else if (chunk.state == LevelChunk.STATE.LOADING && chunk.loading.isDone()) {
+				if (keep)
+					activate(chunk);
+				else
+					chunk.release();
+			} else if (chunk.state == LevelChunk.STATE.ACTIVE && !keep) {
+				deactivate(chunk);
+			}
+			if (chunk.state != LevelChunk.STATE.UNLOADED) {
+				streamedFirst = Math.min(streamedFirst, i);
+				streamedLast = Math.max(streamedLast, i);
+			}
+		}
+	}
+
+	private void startLoading (final LevelChunk chunk) {
+		if (chunkLoader == null) {
+			chunkLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread (Runnable runnable) {
+					Thread thread = new Thread(runnable, "LevelChunkLoader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		chunk.state = LevelChunk.STATE.LOADING;
+		chunk.loading = chunkLoader.submit(new Callable<LevelChunk>() {
+			@Override
+			public LevelChunk call () {
+				return buildObjects(chunk);
+			}
+		});
+	}
+
+	/**
+	 * Creates the game objects for all template entries of a chunk. This only
+	 * touches the chunk itself, so it runs on the loader thread.
+	 * 
+	 * @param chunk
+	 * @return
+	 */
+	private LevelChunk buildObjects (LevelChunk chunk) {
+		for (int i = 0; i < chunk.rockEntries.size; i++) {
+			Rock rock = new Rock();
+			rock.setLength(template.rocks[chunk.rockEntries.get(i)].length);
+			chunk.rocks.add(rock);
+		}
+		for (int i = 0; i < chunk.goldcoinEntries.size; i++)
+			chunk.goldcoins.add(new GoldCoin());
+		for (int i = 0; i < chunk.featherEntries.size; i++)
+			chunk.feathers.add(new Feather());
+		placeObjects(chunk);
+		return chunk;
+	}
+
+	/**
+	 * Makes sure a chunk is active now. Chunks that are still being loaded are
+	 * waited for, unloaded chunks are built on the calling thread.
+	 * 
+	 * @param chunk
+	 */
+	private void activateNow (LevelChunk chunk) {
+		if (chunk.state == LevelChunk.STATE.UNLOADED) {
+			chunk.state = LevelChunk.STATE.LOADING;
+			buildObjects(chunk);
+		} else if (chunk.state == LevelChunk.STATE.LOADING) {
+			try {
+				chunk.loading.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new GdxRuntimeException("Loading of chunk " + chunk.index + " was interrupted", e);
+			} catch (ExecutionException e) {
+				throw new GdxRuntimeException("Couldn't load chunk " + chunk.index, e.getCause());
+			}
+		}
+		if (chunk.state != LevelChunk.STATE.ACTIVE)
+			activate(chunk);
+	}
+
+	/**
+	 * Adds the objects of a loaded chunk to the level. Items that were
+	 * collected before the chunk was unloaded stay collected, all others are
+	 * added to the item index.
+	 * 
+	 * @param chunk
+	 */
+	private void activate (LevelChunk chunk) {
+		for (int i = 0; i < chunk.goldcoins.size; i++) {
+			GoldCoin goldCoin = chunk.goldcoins.get(i);
+			goldCoin.collected = goldcoinsCollected[chunk.goldcoinEntries.get(i)];
+			if (!goldCoin.collected)
+				goldcoinIndex.insert(goldCoin, getBounds(goldCoin, itemBounds));
+		}
+		for (int i = 0; i < chunk.feathers.size; i++) {
+			Feather feather = chunk.feathers.get(i);
+			feather.collected = feathersCollected[chunk.featherEntries.get(i)];
+			if (!feather.collected)
+				featherIndex.insert(feather, getBounds(feather, itemBounds));
+		}
+		for (int i = 0; i < chunk.rocks.size; i++)
+			rockObjects[chunk.rockEntries.get(i)] = chunk.rocks.get(i);
+		for (Rock rock : chunk.rocks)
+			rock.savePreviousState();
+		for (GoldCoin goldCoin : chunk.goldcoins)
+			goldCoin.savePreviousState();
+		for (Feather feather : chunk.feathers)
+			feather.savePreviousState();
+		rocks.addAll(chunk.rocks);
+		goldcoins.addAll(chunk.goldcoins);
+		feathers.addAll(chunk.feathers);
+		chunk.loading = null;
+		chunk.state = LevelChunk.STATE.ACTIVE;
+		chunk.awake = true;
+		chunk.sleepTime = 0;
+		if (chunkListener != null)
+			chunkListener.chunkActivated(chunk);
+	}
+
+	/**
+	 * Removes the objects of a chunk from the level and releases them,
+	 * remembering which of its items were collected.
+	 * 
+	 * @param chunk
+	 */
+	private void deactivate (LevelChunk chunk) {
+		if (chunkListener != null)
+			chunkListener.chunkDeactivated(chunk);
+		for (int i = 0; i < chunk.goldcoins.size; i++) {
+			GoldCoin goldCoin = chunk.goldcoins.get(i);
+			goldcoinsCollected[chunk.goldcoinEntries.get(i)] = goldCoin.collected;
+			if (!goldCoin.collected)
+				goldcoinIndex.remove(goldCoin, getBounds(goldCoin, itemBounds));
+		}
+		for (int i = 0; i < chunk.feathers.size; i++) {
+			Feather feather = chunk.feathers.get(i);
+			feathersCollected[chunk.featherEntries.get(i)] = feather.collected;
+			if (!feather.collected)
+				featherIndex.remove(feather, getBounds(feather, itemBounds));
+		}
+		for (int i = 0; i < chunk.rockEntries.size; i++)
+			rockObjects[chunk.rockEntries.get(i)] = null;
+		rocks.removeAll(chunk.rocks, true);
+		goldcoins.removeAll(chunk.goldcoins, true);
+		feathers.removeAll(chunk.feathers, true);
+		chunk.release();
+	}
+
+	/**
+	 * Decides which chunks are close enough to the camera to be updated. The
+	 * others fall asleep: they are skipped by update() and the listener
+	 * switches their bodies off. When a chunk wakes up again its objects are
+	 * updated once with all the time they missed, and floating rocks are put
+	 * where their cycle is now. That way the cost of a step only depends on
+	 * the area around the camera, not on the size of the level.
+	 * 
+	 * @param centerX
+	 * @param radius
+	 */
+	public void updateActivity (float centerX, float radius) {
+		activeMinX = centerX - radius;
+		activeMaxX = centerX + radius;
+		for (int i = streamedFirst; i <= streamedLast; i++) {
+			LevelChunk chunk = chunks[i];
+			if (chunk.state != LevelChunk.STATE.ACTIVE) continue;
+			boolean awake = chunk.endX >= activeMinX && chunk.startX <= activeMaxX;
+			if (awake == chunk.awake) continue;
+			chunk.awake = awake;
+			if (awake) {
+				updateFloatingRocks(chunk);
+				for (GoldCoin goldCoin : chunk.goldcoins)
+					goldCoin.update(chunk.sleepTime);
+				for (Feather feather : chunk.feathers)
+					feather.update(chunk.sleepTime);
+				chunk.sleepTime = 0;
+				if (chunkListener != null) chunkListener.chunkAwake(chunk);
+			} else if (chunkListener != null) {
+				chunkListener.chunkAsleep(chunk);
+			}
+		}
+		for (Carrot carrot : carrots)
+			carrot.asleep = carrot.position.x < activeMinX || carrot.position.x > activeMaxX;
 	}
 
 	public void update (float deltaTime) {
 		// Bunny Head
 		bunnyHead.update(deltaTime);
-		// Rocks
+		floatClock += deltaTime;
+		for (int i = streamedFirst; i <= streamedLast; i++) {
+			LevelChunk chunk = chunks[i];
+			if (chunk.state != LevelChunk.STATE.ACTIVE) continue;
+			if (!chunk.awake) {
+				chunk.sleepTime += deltaTime;
+				continue;
+			}
+			// Rocks
+			updateFloatingRocks(chunk);
+			// Gold Coins
+			for (GoldCoin goldCoin : chunk.goldcoins)
+				goldCoin.update(deltaTime);
+			// Feathers
+			for (Feather feather : chunk.feathers)
+				feather.update(deltaTime);
+		}
+		for (Carrot carrot : carrots) {
+			if (!carrot.asleep) carrot.update(deltaTime);
+		}
+		// Clouds
+		clouds.update(deltaTime);
+	}
+
+	/**
+	 * Remembers the state of all moving objects before the next simulation
+	 * step.
+	 */
+	public void savePreviousState () {
+		bunnyHead.savePreviousState();
+		goal.savePreviousState();
 		for (Rock rock : rocks)
-			rock.update(deltaTime);
-		// Gold Coins
+			rock.savePreviousState();
 		for (GoldCoin goldCoin : goldcoins)
-			goldCoin.update(deltaTime);
-		// Feathers
+			goldCoin.savePreviousState();
 		for (Feather feather : feathers)
-			feather.update(deltaTime);
+			feather.savePreviousState();
 		for (Carrot carrot : carrots)
-			carrot.update(deltaTime);
-		// Clouds
-		clouds.update(deltaTime);
+			carrot.savePreviousState();
+		clouds.savePreviousState();
 	}
 
-	public void render (SpriteBatch batch) {
-		// Draw Mountains
-		mountains.render(batch);
-		// Draw Goal
-		goal.render(batch);
-		// Draw Rocks
+	/**
+	 * Moves all objects to where they are drawn in this frame, between the
+	 * previous and the current simulation step.
+	 * 
+	 * @param alpha
+	 */
+	public void interpolate (float alpha) {
+		bunnyHead.interpolate(alpha);
+		goal.interpolate(alpha);
 		for (Rock rock : rocks)
-			rock.render(batch);
-		// Draw Gold Coins
+			rock.interpolate(alpha);
 		for (GoldCoin goldCoin : goldcoins)
-			goldCoin.render(batch);
-		// Draw Feathers
+			goldCoin.interpolate(alpha);
 		for (Feather feather : feathers)
-			feather.render(batch);
-		// Draw Carrots
+			feather.interpolate(alpha);
 		for (Carrot carrot : carrots)
-			carrot.render(batch);
+			carrot.interpolate(alpha);
+		clouds.interpolate(alpha);
+	}
+
+	/**
+	 * Draws the parts of the level that are behind the rocks. The level is
+	 * drawn in three steps: renderBackground(), the rocks found by
+	 * findVisibleTerrain() and renderForeground(). Only what can be seen is
+	 * drawn; rocks are looked up in the terrain bitmap and items in the item
+	 * index, so objects outside of the view are not even looked at.
+	 * objectsDrawn and objectsTotal tell how much was left out once all three
+	 * steps are done.
+	 * 
+	 * Mountains and clouds are not drawn here but by BackgroundLayers. The
+	 * sprites go into a render queue, which puts the ones with the same
+	 * texture together before they are drawn.
+	 * 
+	 * @param batch
+	 * @param view
+	 *            the visible area of the world, see CameraHelper.getVisibleArea()
+	 */
+	public void renderBackground (BatchRecorder batch, Rectangle view) {
+		setCullArea(view);
+		// mountains and clouds are always drawn
+		int drawn = 2;
+		// Draw Goal
+		if (isVisible(goal)) {
+			goal.render(batch);
+			drawn++;
+		}
+		objectsDrawn = drawn;
+	}
+
+	/**
+	 * Finds the parts of the TerrainCache that have to be drawn. The resting
+	 * rocks of a chunk are one part, every floating rock is a part of its
+	 * own. Floating rocks were baked at their resting height, their offset
+	 * tells how far they have moved from it since.
+	 * 
+	 * @param view
+	 *            the visible area of the world
+	 * @param parts
+	 *            gets the chunk index for the resting rocks of a chunk and
+	 *            -(index + 1) for a floating rock
+	 * @param offsets
+	 *            gets how far each part is moved up
+	 */
+	public void findVisibleTerrain (Rectangle view, IntArray parts, FloatArray offsets) {
+		setCullArea(view);
+		parts.clear();
+		offsets.clear();
+		float left = cullArea.x;
+		float right = cullArea.x + cullArea.width;
+		int first = Math.max(chunkIndex(left) - rockReach, 0);
+		int last = Math.min(chunkIndex(right), chunks.length - 1);
+		int drawn = 0;
+		for (int i = first; i <= last; i++) {
+			LevelChunk chunk = chunks[i];
+			if (chunk.startX > right || chunk.rocksEndX < left) continue;
+			parts.add(chunk.index);
+			offsets.add(0);
+			boolean active = chunk.state == LevelChunk.STATE.ACTIVE;
+			for (int j = 0; j < chunk.rockEntries.size; j++) {
+				int index = chunk.rockEntries.get(j);
+				if (!rockFloating[index]) {
+					drawn++;
+					continue;
+				}
+				LevelTemplate.Entry entry = template.rocks[index];
+				if (entry.x > right || entry.x + entry.length < left) continue;
+				parts.add(-(index + 1));
+				offsets.add(active ? chunk.rocks.get(j).renderPosition.y - getRockBaseY(entry.y) : 0);
+				drawn++;
+			}
+		}
+		objectsDrawn += drawn;
+	}
+
+	/**
+	 * Draws the parts of the level that are in front of the rocks.
+	 * 
+	 * @param batch
+	 * @param view
+	 *            the visible area of the world
+	 * @param impostors
+	 *            the level is drawn with ChunkImpostors, which already show
+	 *            the gold coins and feathers
+	 * @param goldcoinInstances
+	 *            where the gold coins go to be drawn instanced, or null to
+	 *            draw them with the batch
+	 * @param carrotInstances
+	 *            the same for the carrots
+	 */
+	public void renderForeground (BatchRecorder batch, Rectangle view, boolean impostors, SpriteInstances goldcoinInstances,
+		SpriteInstances carrotInstances) {
+		setCullArea(view);
+		int drawn = 0;
+		if (!impostors) {
+			batch.setLayer(LAYER_ITEMS);
+			// Draw Gold Coins
+			visibleGoldcoins.clear();
+			for (GoldCoin goldCoin : goldcoinIndex.query(cullArea, visibleGoldcoins)) {
+				if (goldcoinInstances != null)
+					goldCoin.render(goldcoinInstances);
+				else
+					goldCoin.render(batch);
+				drawn++;
+			}
+			// Draw Feathers
+			visibleFeathers.clear();
+			for (Feather feather : featherIndex.query(cullArea, visibleFeathers)) {
+				feather.render(batch);
+				drawn++;
+			}
+		}
+		// Draw Carrots
+		batch.setLayer(LAYER_CARROTS);
+		for (Carrot carrot : carrots) {
+			if (!isVisible(carrot)) continue;
+			if (carrotInstances != null)
+				carrot.render(carrotInstances);
+			else
+				carrot.render(batch);
+			drawn++;
+		}
 		// Draw Player Character
+		batch.setLayer(LAYER_PARTICLES);
+		bunnyHead.renderParticles(batch);
+		batch.setLayer(LAYER_PLAYER);
 		bunnyHead.render(batch);
+		drawn++;
 		// Draw Water Overlay
-		waterOverlay.render(batch);
-		// Draw Clouds
-		clouds.render(batch);
+		batch.setLayer(LAYER_WATER);
+		waterOverlay.render(batch, cullArea.x, cullArea.x + cullArea.width);
+		drawn++;
+		objectsDrawn += drawn;
+		// mountains, clouds, goal, player and water count as one object each
+		objectsTotal = 5 + rocks.size + goldcoinIndex.size() + featherIndex.size() + carrots.size;
+	}
+
+	private void setCullArea (Rectangle view) {
+		cullArea.set(view.x - CULL_MARGIN, view.y - CULL_MARGIN, view.width + 2 * CULL_MARGIN, view.height + 2 * CULL_MARGIN);
+	}
+
+	/**
+	 * Tells whether the box of an object, where it is drawn, reaches into
+	 * the area that is drawn.
+	 */
+	private boolean isVisible (AbstractGameObject obj) {
+		float x = obj.renderPosition.x + obj.bounds.x;
+		float y = obj.renderPosition.y + obj.bounds.y;
+		return x <= cullArea.x + cullArea.width && x + obj.bounds.width >= cullArea.x && y <= cullArea.y + cullArea.height
+			&& y + obj.bounds.height >= cullArea.y;
 	}
 
 }
\ No newline at end of file
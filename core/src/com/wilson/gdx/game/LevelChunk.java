@@ -0,0 +1,86 @@
+package com.wilson.gdx.game;
+
+import java.util.concurrent.Future;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.wilson.gdx.game.objects.Feather;
+import com.wilson.gdx.game.objects.GoldCoin;
+import com.wilson.gdx.game.objects.Rock;
+
+/**
+ * A vertical slice of the level that is Constants.LEVEL_CHUNK_WIDTH meters
+ * wide. Level only keeps the chunks around the camera loaded; all the others
+ * exist as nothing more than the list of template entries that fall into
+ * them.
+ *
+ * A chunk goes through these states:
+ *
+ * UNLOADED - no game objects exist for it.
+ *
+ * LOADING - its game objects are being created on the loader thread.
+ *
+ * ACTIVE - its game objects are part of the level, they are updated,
+ * rendered and have physics bodies.
+ *
+ * @author Chris
+ *
+ */
+public class LevelChunk
+{
+
+	public enum STATE
+	{
+		UNLOADED, LOADING, ACTIVE
+	}
+
+	public final int index;
+	public final float startX;
+	public final float endX;
+
+	// indices of the template entries that start inside this chunk
+	final IntArray rockEntries = new IntArray();
+	final IntArray goldcoinEntries = new IntArray();
+	final IntArray featherEntries = new IntArray();
+	// right end of the rocks that start in this chunk, they can reach into
+	// the chunks after it
+	float rocksEndX;
+
+	public STATE state;
+	// an active chunk is awake while it is close to the camera. Objects of
+	// chunks that are asleep are not updated and their bodies are switched
+	// off; sleepTime is the time they have to catch up on when they wake.
+	public boolean awake;
+	float sleepTime;
+
+	// game objects of this chunk, same order as the entry indices
+	public final Array<Rock> rocks = new Array<Rock>();
+	public final Array<GoldCoin> goldcoins = new Array<GoldCoin>();
+	public final Array<Feather> feathers = new Array<Feather>();
+
+	Future<LevelChunk> loading;
+
+	public LevelChunk(int index, float width)
+	{
+		this.index = index;
+		startX = index * width;
+		endX = startX + width;
+		rocksEndX = endX;
+		state = STATE.UNLOADED;
+	}
+
+	/**
+	 * Drops all game objects of the chunk so they can be garbage collected.
+	 */
+	void release()
+	{
+		rocks.clear();
+		goldcoins.clear();
+		feathers.clear();
+		loading = null;
+		state = STATE.UNLOADED;
+		awake = false;
+		sleepTime = 0;
+	}
+
+}
@@ -0,0 +1,679 @@
+package com.wilson.gdx.game;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Blending;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.wilson.gdx.game.Level.BLOCK_TYPE;
+
+/**
+ * An immutable description of a level as it was read from its image file.
+ * Every level file is only parsed once; after that the template is kept in a
+ * cache so that Level can build (or rebuild) its objects without touching the
+ * PNG again.
+ *
+ * The template does not know anything about game objects. It only records
+ * which block type sits at which pixel, with neighbouring rock pixels already
+ * merged into a single run the same way the level loader always did it.
+ *
+ * Templates can also be written to a compact binary file (see
+ * COMPILED_EXTENSION) by the LevelCompiler of the desktop project. If such a
+ * file exists next to the level image it is memory-mapped and read directly,
+ * so no pixel of the image has to be looked at. The compiled file remembers
+ * the size and checksum of the image it was made from; when the image has
+ * changed since, the file is ignored and the PNG is parsed as before.
+ *
+ * @author Chris
+ *
+ */
+public class LevelTemplate
+{
+
+	public static final String TAG = LevelTemplate.class.getName();
+
+	/**
+	 * File extension and header of compiled level files. The version has to
+	 * be increased whenever the layout of the records changes (this includes
+	 * the order of BLOCK_TYPE, whose ordinal is stored for every record).
+	 * Magic, version and the source image's size and checksum always come
+	 * first, at COMPILED_SOURCE_OFFSET, so staleness can be checked before
+	 * anything else is read.
+	 */
+	public static final String COMPILED_EXTENSION = "lvl";
+	private static final int COMPILED_MAGIC = 0x43424c56; // "CBLV"
+	private static final int COMPILED_VERSION = 2;
+	private static final int COMPILED_SOURCE_OFFSET = 8;
+
+	private static final BLOCK_TYPE[] BLOCK_TYPES = BLOCK_TYPE.values();
+
+	private static final ObjectMap<String, LevelTemplate> cache = new ObjectMap<String, LevelTemplate>();
+
+	// Images with fewer pixels than this are scanned on the calling thread
+	private static final int PARALLEL_SCAN_MIN_PIXELS = 256 * 256;
+
+	/**
+	 * Gives the parser access to the pixels of a level image as 32-bit RGBA
+	 * values, no matter where they come from (a Pixmap in the game, an image
+	 * file in the offline compiler). Rows are read in bulk and may be read
+	 * from several threads at the same time.
+	 */
+	public interface PixelSource
+	{
+		public int getWidth();
+
+		public int getHeight();
+
+		public void readRow(int y, int[] row);
+	}
+
+	/**
+	 * One object found in the level image. x is the pixel column, y is the
+	 * height measured from the bottom of the image (the baseHeight used by the
+	 * loader) and length is the number of merged pixels for rocks.
+	 */
+	public static class Entry
+	{
+		public final BLOCK_TYPE type;
+		public final int x;
+		public final int y;
+		public final int length;
+
+		public Entry(BLOCK_TYPE type, int x, int y, int length)
+		{
+			this.type = type;
+			this.x = x;
+			this.y = y;
+			this.length = length;
+		}
+	}
+
+	public final String filename;
+	public final int width;
+	public final int height;
+
+	// floating (ROCK) and static (ROCK_STATIC) rock runs in scan order
+	public final Entry[] rocks;
+	public final Entry[] goldcoins;
+	public final Entry[] feathers;
+	public final Entry playerSpawnpoint;
+	public final Entry goal;
+
+	// Bounds of all entries in pixels, rock runs included
+	public final int minX;
+	public final int minY;
+	public final int maxX;
+	public final int maxY;
+
+	/**
+	 * Problems found while parsing the image (unknown pixel colors). They
+	 * are not stored in compiled files.
+	 */
+	public final String[] warnings;
+
+	private LevelTemplate(String filename, int width, int height, Array<Entry> rocks, Array<Entry> goldcoins,
+	        Array<Entry> feathers, Entry playerSpawnpoint, Entry goal, Array<String> warnings)
+	{
+		this.filename = filename;
+		this.width = width;
+		this.height = height;
+		this.rocks = rocks.toArray(Entry.class);
+		this.goldcoins = goldcoins.toArray(Entry.class);
+		this.feathers = feathers.toArray(Entry.class);
+		this.playerSpawnpoint = playerSpawnpoint;
+		this.goal = goal;
+		this.warnings = warnings.toArray(String.class);
+
+		// calculate the bounds of everything in the level
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		Array<Entry> all = new Array<Entry>();
+		all.addAll(this.rocks);
+		all.addAll(this.goldcoins);
+		all.addAll(this.feathers);
+		if (playerSpawnpoint != null)
+			all.add(playerSpawnpoint);
+		if (goal != null)
+			all.add(goal);
+		for (Entry entry : all)
+		{
+			minX = Math.min(minX, entry.x);
+			minY = Math.min(minY, entry.y);
+			maxX = Math.max(maxX, entry.x + entry.length);
+			maxY = Math.max(maxY, entry.y);
+		}
+		if (all.size == 0)
+			minX = minY = maxX = maxY = 0;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+	}
+
+	/**
+	 * Returns the template for the given level file, parsing it only the first
+	 * time it is asked for. A compiled version of the level is preferred over
+	 * the image whenever one exists and was made from the image as it is now.
+	 *
+	 * @param filename
+	 * @return
+	 */
+	public static LevelTemplate load(String filename)
+	{
+		LevelTemplate template = cache.get(filename);
+		if (template == null)
+		{
+			long startTime = System.nanoTime();
+			FileHandle image = Gdx.files.internal(filename);
+			FileHandle compiled = Gdx.files.internal(getCompiledFilename(filename));
+			// a level may ship without its image, then there is nothing to
+			// compare with and the compiled file is all we have
+			byte[] imageBytes = image.exists() ? image.readBytes() : null;
+			ByteBuffer buffer = compiled.exists() ? map(compiled) : null;
+			boolean useCompiled = buffer != null && (imageBytes == null || isCompiledFrom(buffer, imageBytes));
+			if (useCompiled)
+			{
+				template = read(filename, buffer);
+			} else
+			{
+				if (buffer != null)
+					Gdx.app.error(TAG, "'" + compiled + "' is out of date, parsing '" + filename
+					        + "' instead. Please rebuild the levels.");
+				if (imageBytes == null)
+					throw new GdxRuntimeException("Couldn't find level '" + filename + "'");
+				template = parse(filename, imageBytes);
+				for (String warning : template.warnings)
+					Gdx.app.error(TAG, warning);
+			}
+			cache.put(filename, template);
+			Gdx.app.debug(TAG, "level template '" + filename + "' loaded from "
+			        + (useCompiled ? "compiled file" : "image") + " in "
+			        + (System.nanoTime() - startTime) / 1000 + " us");
+		}
+		return template;
+	}
+
+	/**
+	 * Name of the compiled file that belongs to a level image. It sits next
+	 * to the image and only differs in its extension.
+	 *
+	 * @param filename
+	 * @return
+	 */
+	public static String getCompiledFilename(String filename)
+	{
+		int dot = filename.lastIndexOf('.');
+		if (dot > filename.lastIndexOf('/'))
+			filename = filename.substring(0, dot);
+		return filename + "." + COMPILED_EXTENSION;
+	}
+
+	/**
+	 * Checksum of a level image as stored in compiled files. Only used to see
+	 * whether the image changed, so CRC32 is good enough.
+	 *
+	 * @param image
+	 *            the bytes of the image file
+	 * @return
+	 */
+	public static int checksum(byte[] image)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(image, 0, image.length);
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Tells whether the compiled data in the buffer is of the current version
+	 * and was made from exactly this image. Only looks at the header and
+	 * leaves the position of the buffer alone.
+	 *
+	 * @param buffer
+	 * @param image
+	 * @return
+	 */
+	private static boolean isCompiledFrom(ByteBuffer buffer, byte[] image)
+	{
+		if (buffer.limit() < COMPILED_SOURCE_OFFSET + 8 || buffer.getInt(0) != COMPILED_MAGIC
+		        || buffer.getInt(4) != COMPILED_VERSION)
+			return false;
+		return buffer.getInt(COMPILED_SOURCE_OFFSET) == image.length
+		        && buffer.getInt(COMPILED_SOURCE_OFFSET + 4) == checksum(image);
+	}
+
+	/**
+	 * Maps the compiled file into memory through a FileChannel. Files that
+	 * are not on the file system (e.g. packed into an APK or jar) cannot be
+	 * mapped, so they are read into a heap buffer instead.
+	 *
+	 * @param file
+	 * @return
+	 */
+	private static ByteBuffer map(FileHandle file)
+	{
+		if (!file.file().exists())
+			return ByteBuffer.wrap(file.readBytes());
+		RandomAccessFile raf = null;
+		try
+		{
+			raf = new RandomAccessFile(file.file(), "r");
+			FileChannel channel = raf.getChannel();
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e)
+		{
+			throw new GdxRuntimeException("Couldn't map level file '" + file + "'", e);
+		} finally
+		{
+			if (raf != null)
+			{
+				try
+				{
+					raf.close();
+				} catch (IOException e)
+				{
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes the level image into a Pixmap and parses it. The pixels are read
+	 * straight from the Pixmap's backing ByteBuffer, which is a lot cheaper
+	 * than one getPixel() call (and JNI crossing) per pixel.
+	 *
+	 * @param filename
+	 * @param image
+	 *            the bytes of the image file
+	 * @return
+	 */
+	private static LevelTemplate parse(String filename, byte[] image)
+	{
+		Pixmap pixmap = new Pixmap(image, 0, image.length);
+		if (pixmap.getFormat() != Format.RGBA8888)
+		{
+			// bring the image into the 32-bit RGBA layout the scan expects
+			Pixmap converted = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Format.RGBA8888);
+			Blending blending = Pixmap.getBlending();
+			Pixmap.setBlending(Blending.None);
+			converted.drawPixmap(pixmap, 0, 0);
+			Pixmap.setBlending(blending);
+			pixmap.dispose();
+			pixmap = converted;
+		}
+		final int width = pixmap.getWidth();
+		final int height = pixmap.getHeight();
+		// absolute reads never move the position of the buffer, so all
+		// threads of the scan can share this one view of it
+		final ByteBuffer buffer = pixmap.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN);
+		LevelTemplate template = parse(filename, new PixelSource()
+		{
+			@Override
+			public int getWidth()
+			{
+				return width;
+			}
+
+			@Override
+			public int getHeight()
+			{
+				return height;
+			}
+
+			@Override
+			public void readRow(int y, int[] row)
+			{
+				int offset = y * width * 4;
+				for (int x = 0; x < width; x++)
+					row[x] = buffer.getInt(offset + x * 4);
+			}
+		});
+		// free memory
+		pixmap.dispose();
+		return template;
+	}
+
+	/**
+	 * Scans the pixels of the level image from top-left to bottom-right. Rock
+	 * pixels that follow another rock pixel only grow the length of the last
+	 * rock run instead of creating a new entry.
+	 *
+	 * Large images are cut into bands of rows that are scanned in parallel.
+	 * The only state that is carried from one pixel to the next is the rock
+	 * run, and it even continues from the end of one row into the next one.
+	 * So every band remembers how many rock pixels at its start belong to the
+	 * run of the band before, and those are added to that run when the bands
+	 * are put back together. The result is exactly what a single scan over
+	 * the whole image gives.
+	 *
+	 * @param filename
+	 * @param pixels
+	 * @return
+	 */
+	public static LevelTemplate parse(String filename, PixelSource pixels)
+	{
+		int numBands = 1;
+		if ((long) pixels.getWidth() * pixels.getHeight() >= PARALLEL_SCAN_MIN_PIXELS)
+			numBands = Math.min(pixels.getHeight(), Runtime.getRuntime().availableProcessors() * 4);
+		return parse(filename, pixels, numBands);
+	}
+
+	/**
+	 * Scans the image in the given number of bands. Package-private so the
+	 * tests can compare any split with a single band.
+	 *
+	 * @param filename
+	 * @param pixels
+	 * @param numBands
+	 *            at least 1 and at most the height of the image
+	 * @return
+	 */
+	static LevelTemplate parse(String filename, PixelSource pixels, int numBands)
+	{
+		int width = pixels.getWidth();
+		int height = pixels.getHeight();
+		ScanBand[] bands = new ScanBand[numBands];
+		for (int i = 0; i < numBands; i++)
+			bands[i] = new ScanBand(pixels, height * i / numBands, height * (i + 1) / numBands);
+		if (numBands == 1)
+		{
+			bands[0].call();
+		} else
+		{
+			int numThreads = Math.min(numBands, Runtime.getRuntime().availableProcessors());
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+			try
+			{
+				for (Future<ScanBand> future : executor.invokeAll(Arrays.asList(bands)))
+					future.get();
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new GdxRuntimeException("Scan of level '" + filename + "' was interrupted", e);
+			} catch (ExecutionException e)
+			{
+				throw new GdxRuntimeException("Couldn't scan level '" + filename + "'", e.getCause());
+			} finally
+			{
+				executor.shutdown();
+			}
+		}
+
+		// put the bands back together in scan order
+		Array<Entry> rocks = new Array<Entry>();
+		Array<Entry> goldcoins = new Array<Entry>();
+		Array<Entry> feathers = new Array<Entry>();
+		Array<String> warnings = new Array<String>();
+		Entry playerSpawnpoint = null;
+		Entry goal = null;
+		for (ScanBand band : bands)
+		{
+			if (band.leadingRockLength > 0)
+			{
+				// the band starts in the middle of the last rock run
+				Entry last = rocks.pop();
+				rocks.add(new Entry(last.type, last.x, last.y, last.length + band.leadingRockLength));
+			}
+			rocks.addAll(band.rocks);
+			goldcoins.addAll(band.goldcoins);
+			feathers.addAll(band.feathers);
+			warnings.addAll(band.warnings);
+			if (band.playerSpawnpoint != null)
+				playerSpawnpoint = band.playerSpawnpoint;
+			if (band.goal != null)
+				goal = band.goal;
+		}
+		return new LevelTemplate(filename, width, height, rocks, goldcoins, feathers, playerSpawnpoint, goal,
+		        warnings);
+	}
+
+	/**
+	 * Scans the rows [startY, endY) of a level image. The block type of every
+	 * pixel is found with one lookup in BLOCK_TYPE's color table instead of
+	 * comparing the pixel against every block type in turn.
+	 */
+	private static class ScanBand implements Callable<ScanBand>
+	{
+		private final PixelSource pixels;
+		private final int startY;
+		private final int endY;
+
+		final Array<Entry> rocks = new Array<Entry>();
+		final Array<Entry> goldcoins = new Array<Entry>();
+		final Array<Entry> feathers = new Array<Entry>();
+		final Array<String> warnings = new Array<String>();
+		Entry playerSpawnpoint;
+		Entry goal;
+		// rock pixels at the start of the band that continue an earlier run
+		int leadingRockLength;
+
+		// the rock run currently being scanned
+		private BLOCK_TYPE rockType;
+		private int rockX;
+		private int rockY;
+		private int rockLength;
+		private boolean rockContinued;
+
+		ScanBand(PixelSource pixels, int startY, int endY)
+		{
+			this.pixels = pixels;
+			this.startY = startY;
+			this.endY = endY;
+		}
+
+		@Override
+		public ScanBand call()
+		{
+			int width = pixels.getWidth();
+			int height = pixels.getHeight();
+			int[] row = new int[width];
+			// the last pixel of the row before is where a single scan over
+			// the whole image would come from
+			int lastPixel = -1;
+			if (startY > 0 && width > 0)
+			{
+				pixels.readRow(startY - 1, row);
+				lastPixel = row[width - 1];
+			}
+			for (int pixelY = startY; pixelY < endY; pixelY++)
+			{
+				pixels.readRow(pixelY, row);
+				// height grows from bottom to top
+				int baseHeight = height - pixelY;
+				for (int pixelX = 0; pixelX < width; pixelX++)
+				{
+					int currentPixel = row[pixelX];
+
+					// close the rock run as soon as a different color shows up
+					if (rockLength > 0 && lastPixel != currentPixel)
+						closeRock();
+
+					BLOCK_TYPE type = BLOCK_TYPE.forColor(currentPixel);
+					if (type == null)
+					{
+						// red color channel
+						int r = 0xff & (currentPixel >>> 24);
+						// green color channel
+						int g = 0xff & (currentPixel >>> 16);
+						// blue color channel
+						int b = 0xff & (currentPixel >>> 8);
+						// alpha channel
+						int a = 0xff & currentPixel;
+						warnings.add("Unknown object at x<" + pixelX + "> y<" + pixelY + ">: r<" + r + "> g<" + g
+						        + "> b<" + b + "> a<" + a + ">");
+					} else
+					{
+						switch (type)
+						{
+						case EMPTY:
+							break;
+						case ROCK:
+						case ROCK_STATIC:
+							// a run only goes on over pixels of the same
+							// color, so both kinds of rock never mix
+							if (rockLength == 0)
+							{
+								rockType = type;
+								rockX = pixelX;
+								rockY = baseHeight;
+								// only possible for the first pixel of a band
+								rockContinued = lastPixel == currentPixel;
+							}
+							rockLength++;
+							break;
+						case PLAYER_SPAWNPOINT:
+							playerSpawnpoint = new Entry(type, pixelX, baseHeight, 1);
+							break;
+						case ITEM_FEATHER:
+							feathers.add(new Entry(type, pixelX, baseHeight, 1));
+							break;
+						case ITEM_GOLD_COIN:
+							goldcoins.add(new Entry(type, pixelX, baseHeight, 1));
+							break;
+						case GOAL:
+							goal = new Entry(type, pixelX, baseHeight, 1);
+							break;
+						}
+					}
+					lastPixel = currentPixel;
+				}
+			}
+			if (rockLength > 0)
+				closeRock();
+			return this;
+		}
+
+		private void closeRock()
+		{
+			if (rockContinued)
+				leadingRockLength = rockLength;
+			else
+				rocks.add(new Entry(rockType, rockX, rockY, rockLength));
+			rockLength = 0;
+			rockContinued = false;
+		}
+	}
+
+	/**
+	 * Writes the template in the compiled format: a header with the source
+	 * image's size and checksum and the size, bounds and record counts of the
+	 * level, followed by one fixed-size record (type, x, y, length) per entry.
+	 * Rocks come first, then gold coins, feathers, the player spawn point and
+	 * the goal.
+	 *
+	 * @param out
+	 * @param image
+	 *            the bytes of the image file the template was parsed from
+	 * @throws IOException
+	 */
+	public void write(DataOutputStream out, byte[] image) throws IOException
+	{
+		out.writeInt(COMPILED_MAGIC);
+		out.writeInt(COMPILED_VERSION);
+		out.writeInt(image.length);
+		out.writeInt(checksum(image));
+		out.writeInt(width);
+		out.writeInt(height);
+		out.writeInt(minX);
+		out.writeInt(minY);
+		out.writeInt(maxX);
+		out.writeInt(maxY);
+		out.writeInt(rocks.length);
+		out.writeInt(goldcoins.length);
+		out.writeInt(feathers.length);
+		out.writeInt(playerSpawnpoint != null ? 1 : 0);
+		out.writeInt(goal != null ? 1 : 0);
+		for (Entry entry : rocks)
+			writeEntry(out, entry);
+		for (Entry entry : goldcoins)
+			writeEntry(out, entry);
+		for (Entry entry : feathers)
+			writeEntry(out, entry);
+		if (playerSpawnpoint != null)
+			writeEntry(out, playerSpawnpoint);
+		if (goal != null)
+			writeEntry(out, goal);
+	}
+
+	private static void writeEntry(DataOutputStream out, Entry entry) throws IOException
+	{
+		out.writeByte(entry.type.ordinal());
+		out.writeInt(entry.x);
+		out.writeInt(entry.y);
+		out.writeInt(entry.length);
+	}
+
+	/**
+	 * Reads a template from a buffer in the compiled format. The buffer is
+	 * walked once from start to end; no pixel data is involved.
+	 *
+	 * @param filename
+	 * @param buffer
+	 * @return
+	 */
+	public static LevelTemplate read(String filename, ByteBuffer buffer)
+	{
+		if (buffer.getInt() != COMPILED_MAGIC)
+			throw new GdxRuntimeException("'" + filename + "' has no compiled level data");
+		int version = buffer.getInt();
+		if (version != COMPILED_VERSION)
+			throw new GdxRuntimeException("Compiled level data of '" + filename + "' has version " + version
+			        + ", expected " + COMPILED_VERSION + ". Please rebuild the levels.");
+		// the source image was already compared by load()
+		buffer.position(buffer.position() + 2 * 4);
+		int width = buffer.getInt();
+		int height = buffer.getInt();
+		// bounds are calculated again by the constructor
+		buffer.position(buffer.position() + 4 * 4);
+		int numRocks = buffer.getInt();
+		int numGoldcoins = buffer.getInt();
+		int numFeathers = buffer.getInt();
+		int numPlayerSpawnpoints = buffer.getInt();
+		int numGoals = buffer.getInt();
+		Array<Entry> rocks = readEntries(buffer, numRocks);
+		Array<Entry> goldcoins = readEntries(buffer, numGoldcoins);
+		Array<Entry> feathers = readEntries(buffer, numFeathers);
+		Entry playerSpawnpoint = numPlayerSpawnpoints > 0 ? readEntry(buffer) : null;
+		Entry goal = numGoals > 0 ? readEntry(buffer) : null;
+		return new LevelTemplate(filename, width, height, rocks, goldcoins, feathers, playerSpawnpoint, goal,
+		        new Array<String>());
+	}
+
+	private static Array<Entry> readEntries(ByteBuffer buffer, int count)
+	{
+		Array<Entry> entries = new Array<Entry>(count);
+		for (int i = 0; i < count; i++)
+			entries.add(readEntry(buffer));
+		return entries;
+	}
+
+	private static Entry readEntry(ByteBuffer buffer)
+	{
+		BLOCK_TYPE type = BLOCK_TYPES[buffer.get()];
+		int x = buffer.getInt();
+		int y = buffer.getInt();
+		int length = buffer.getInt();
+		return new Entry(type, x, y, length);
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.wilson.gdx.game;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.wilson.gdx.util.AudioManager;
+
+/**
+ * Runs the WorldController on a thread of its own, one frame ahead of the
+ * renderer. While the render thread draws frame N, the simulation thread
+ * already updates the world for frame N+1 and records it into a
+ * FrameSnapshot.
+ *
+ * There are two snapshots: the simulation fills the back one, the renderer
+ * draws the front one, and they are swapped once both are done. The
+ * renderer therefore shows the world one frame late, but the two threads
+ * never touch the same snapshot at the same time.
+ *
+ * The input of the frame is captured into a FrameInput on the render thread
+ * before the frame is handed to the simulation, which never polls Gdx.input
+ * itself. Everything the simulation does that has to happen on the render
+ * thread is posted there with Gdx.app.postRunnable() (sounds, switching
+ * screens).
+ *
+ * @author Chris
+ *
+ */
+public class PipelinedSimulation implements Disposable
+{
+
+	private final WorldController worldController;
+	private final ExecutorService executor;
+
+	private FrameSnapshot front = new FrameSnapshot();
+	private FrameSnapshot back = new FrameSnapshot();
+	private Future<FrameSnapshot> pending;
+	private float deltaTime;
+	// only filled while no frame is being simulated
+	private final FrameInput input = new FrameInput();
+
+	private final Callable<FrameSnapshot> simulateFrame = new Callable<FrameSnapshot>()
+	{
+		@Override
+		public FrameSnapshot call()
+		{
+			worldController.update(deltaTime, input);
+			back.capture(worldController, true);
+			return back;
+		}
+	};
+
+	public PipelinedSimulation(WorldController worldController)
+	{
+		this.worldController = worldController;
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "Simulation");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		AudioManager.instance.setDeferred(true);
+		// the very first frame has nothing to show yet
+		front.capture(worldController, true);
+	}
+
+	/**
+	 * Waits for the frame that is being simulated, starts simulating the next
+	 * one and returns the finished frame for drawing.
+	 *
+	 * @param deltaTime
+	 *            time that has passed since the last frame
+	 * @param simulate
+	 *            false while the game is paused; the last frame is shown again
+	 * @return
+	 */
+	public FrameSnapshot frame(float deltaTime, boolean simulate)
+	{
+		if (waitForPending())
+		{
+			FrameSnapshot finished = back;
+			back = front;
+			front = finished;
+		}
+		if (simulate)
+		{
+			this.deltaTime = deltaTime;
+			input.capture(worldController);
+			pending = executor.submit(simulateFrame);
+		}
+		return front;
+	}
+
+	private boolean waitForPending()
+	{
+		if (pending == null)
+			return false;
+		try
+		{
+			pending.get();
+			return true;
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new GdxRuntimeException("Interrupted while waiting for the simulation", e);
+		} catch (ExecutionException e)
+		{
+			throw new GdxRuntimeException("Simulation failed", e.getCause());
+		} finally
+		{
+			pending = null;
+		}
+	}
+
+	/**
+	 * Lets the frame that is being simulated finish and stops the thread. The
+	 * WorldController can be disposed after this.
+	 */
+	@Override
+	public void dispose()
+	{
+		waitForPending();
+		executor.shutdown();
+		AudioManager.instance.setDeferred(false);
+	}
+
+}
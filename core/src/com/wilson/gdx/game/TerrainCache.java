@@ -0,0 +1,270 @@
+package com.wilson.gdx.game;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.wilson.gdx.game.objects.Rock;
+import com.wilson.gdx.util.BatchRecorder;
+import com.wilson.gdx.util.Constants;
+
+/**
+ * The sprites of all rocks of a level, baked into SpriteCaches once when the
+ * level is loaded. Drawing the rocks then only means telling the GPU which
+ * parts of the caches to draw; no vertices are worked out per frame.
+ *
+ * There is one part for the resting rocks of each chunk and one part for
+ * every floating rock, which is baked at its resting height. While drawing,
+ * the shader moves each part up or down by the offset it is given, so
+ * floating rocks still bob without touching their vertices (see
+ * Level.findVisibleTerrain()).
+ *
+ * @author Chris
+ *
+ */
+public class TerrainCache implements Disposable
+{
+
+	// the most sprites a SpriteCache with indices can hold
+	private static final int CACHE_SIZE = 5460;
+
+	private final Array<SpriteCache> caches = new Array<SpriteCache>();
+	private final ShaderProgram shader;
+
+	// where the parts are: which cache, and the cache id in there. Parts
+	// without sprites have the cache -1.
+	private final int[] chunkCache;
+	private final int[] chunkCacheId;
+	private final int[] rockCache;
+	private final int[] rockCacheId;
+	// area covered by the rocks of each chunk, floating ones at rest
+	private final Rectangle[] chunkBounds;
+	// the parts of one chunk, for renderChunk()
+	private final IntArray chunkParts = new IntArray();
+	private final FloatArray chunkOffsets = new FloatArray();
+
+	/**
+	 * Bakes the rocks of a level. Has to be called on the render thread.
+	 *
+	 * @param level
+	 */
+	public TerrainCache(Level level)
+	{
+		shader = new ShaderProgram(Gdx.files.internal(Constants.shaderTerrainVertex),
+		        Gdx.files.internal(Constants.shaderTerrainFragment));
+		if (!shader.isCompiled())
+			throw new GdxRuntimeException("Could not compile shader program: " + shader.getLog());
+
+		chunkCache = new int[level.chunks.length];
+		chunkCacheId = new int[level.chunks.length];
+		rockCache = new int[level.template.rocks.length];
+		rockCacheId = new int[level.template.rocks.length];
+		chunkBounds = new Rectangle[level.chunks.length];
+
+		BatchRecorder recorder = new BatchRecorder();
+		Rock rock = new Rock();
+		Builder builder = new Builder();
+		for (LevelChunk chunk : level.chunks)
+		{
+			// resting rocks of the chunk
+			recorder.clear();
+			recorder.begin();
+			for (int i = 0; i < chunk.rockEntries.size; i++)
+			{
+				int index = chunk.rockEntries.get(i);
+				if (!level.isRockFloating(index))
+					drawRock(recorder, rock, level, index);
+			}
+			recorder.end();
+			builder.add(recorder);
+			chunkCache[chunk.index] = builder.cache;
+			chunkCacheId[chunk.index] = builder.cacheId;
+			chunkBounds[chunk.index] = new Rectangle();
+			addBounds(recorder, chunkBounds[chunk.index]);
+			// every floating rock on its own
+			for (int i = 0; i < chunk.rockEntries.size; i++)
+			{
+				int index = chunk.rockEntries.get(i);
+				if (!level.isRockFloating(index))
+				{
+					rockCache[index] = -1;
+					continue;
+				}
+				recorder.clear();
+				recorder.begin();
+				drawRock(recorder, rock, level, index);
+				recorder.end();
+				builder.add(recorder);
+				rockCache[index] = builder.cache;
+				rockCacheId[index] = builder.cacheId;
+				addBounds(recorder, chunkBounds[chunk.index]);
+			}
+		}
+		Gdx.app.debug(Level.TAG, "Baked " + level.template.rocks.length + " rocks into " + caches.size + " caches");
+	}
+
+	private static void drawRock(BatchRecorder recorder, Rock rock, Level level, int index)
+	{
+		LevelTemplate.Entry entry = level.template.rocks[index];
+		rock.setLength(entry.length);
+		rock.position.set(entry.x, Level.getRockBaseY(entry.y));
+		rock.savePreviousState();
+		rock.render(recorder);
+	}
+
+	/**
+	 * Grows bounds to cover all recorded sprites. Empty bounds (no width) are
+	 * set to the first sprite instead.
+	 */
+	private static void addBounds(BatchRecorder recorder, Rectangle bounds)
+	{
+		float[] vertices = recorder.getVertices();
+		int end = recorder.size() * BatchRecorder.SPRITE_SIZE;
+		// every vertex is x, y, color, u, v
+		for (int i = 0; i < end; i += 5)
+		{
+			float x = vertices[i];
+			float y = vertices[i + 1];
+			if (bounds.width == 0 && bounds.height == 0)
+				bounds.set(x, y, 0, 0);
+			else
+				bounds.merge(x, y);
+		}
+	}
+
+	/**
+	 * Puts the recorded sprites into SpriteCaches, starting a new cache
+	 * whenever the current one is full.
+	 */
+	private class Builder
+	{
+		SpriteCache current;
+		int used;
+		// where the last part went
+		int cache;
+		int cacheId;
+
+		void add(BatchRecorder recorder)
+		{
+			int count = recorder.size();
+			if (count == 0)
+			{
+				cache = -1;
+				return;
+			}
+			if (count > CACHE_SIZE)
+				throw new GdxRuntimeException("Too many sprites in one part of the terrain: " + count);
+			if (current == null || used + count > CACHE_SIZE)
+			{
+				current = new SpriteCache(CACHE_SIZE, true);
+				current.setShader(shader);
+				caches.add(current);
+				used = 0;
+			}
+			current.beginCache();
+			for (int i = 0; i < count; i++)
+				current.add(recorder.getTexture(i), recorder.getVertices(), i * BatchRecorder.SPRITE_SIZE,
+				        BatchRecorder.SPRITE_SIZE);
+			cacheId = current.endCache();
+			cache = caches.size - 1;
+			used += count;
+		}
+	}
+
+	/**
+	 * Draws the given parts of the terrain.
+	 *
+	 * @param projection
+	 *            the combined matrix of the camera
+	 * @param parts
+	 *            chunk indices for the resting rocks of a chunk, -(index + 1)
+	 *            for the floating rock with that template index
+	 * @param offsets
+	 *            how far each part is moved up
+	 */
+	public void render(Matrix4 projection, IntArray parts, FloatArray offsets)
+	{
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+		draw(projection, parts, offsets);
+	}
+
+	/**
+	 * The area the rocks of a chunk cover. Its size is 0 if the chunk has no
+	 * rocks.
+	 *
+	 * @param chunk
+	 * @return
+	 */
+	public Rectangle getChunkBounds(int chunk)
+	{
+		return chunkBounds[chunk];
+	}
+
+	/**
+	 * Draws all rocks of a chunk, floating ones at rest. Unlike
+	 * render() this leaves the blend function to the caller.
+	 *
+	 * @param projection
+	 * @param level
+	 * @param chunk
+	 */
+	public void renderChunk(Matrix4 projection, Level level, LevelChunk chunk)
+	{
+		chunkParts.clear();
+		chunkOffsets.clear();
+		chunkParts.add(chunk.index);
+		chunkOffsets.add(0);
+		for (int i = 0; i < chunk.rockEntries.size; i++)
+		{
+			int index = chunk.rockEntries.get(i);
+			if (!level.isRockFloating(index))
+				continue;
+			chunkParts.add(-(index + 1));
+			chunkOffsets.add(0);
+		}
+		draw(projection, chunkParts, chunkOffsets);
+	}
+
+	private void draw(Matrix4 projection, IntArray parts, FloatArray offsets)
+	{
+		SpriteCache drawing = null;
+		for (int i = 0; i < parts.size; i++)
+		{
+			int part = parts.get(i);
+			int cache = part >= 0 ? chunkCache[part] : rockCache[-part - 1];
+			if (cache < 0)
+				continue;
+			int cacheId = part >= 0 ? chunkCacheId[part] : rockCacheId[-part - 1];
+			SpriteCache spriteCache = caches.get(cache);
+			if (spriteCache != drawing)
+			{
+				if (drawing != null)
+					drawing.end();
+				drawing = spriteCache;
+				drawing.setProjectionMatrix(projection);
+				drawing.begin();
+			}
+			shader.setUniformf("u_offset", offsets.get(i));
+			drawing.draw(cacheId);
+		}
+		if (drawing != null)
+			drawing.end();
+	}
+
+	@Override
+	public void dispose()
+	{
+		for (SpriteCache cache : caches)
+			cache.dispose();
+		shader.dispose();
+	}
+
+}
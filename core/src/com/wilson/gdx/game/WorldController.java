@@ -12,14 +12,23 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.BodyDef;
 import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.ContactImpulse;
+import com.badlogic.gdx.physics.box2d.ContactListener;
 import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.Manifold;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
-import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.Pool;
+import com.wilson.gdx.game.objects.AbstractGameObject;
 import com.wilson.gdx.game.objects.BunnyHead;
 import com.wilson.gdx.game.objects.BunnyHead.JUMP_STATE;
 import com.wilson.gdx.game.objects.Carrot;
 import com.wilson.gdx.game.objects.Feather;
+import com.wilson.gdx.game.objects.Goal;
 import com.wilson.gdx.game.objects.GoldCoin;
 import com.wilson.gdx.game.objects.Rock;
 import com.wilson.gdx.screens.DirectedGame;
@@ -29,6 +38,9 @@ import com.wilson.gdx.screens.transitions.ScreenTransitionSlide;
 import com.wilson.gdx.util.AudioManager;
 import com.wilson.gdx.util.CameraHelper;
 import com.wilson.gdx.util.Constants;
+import com.wilson.gdx.util.ContactQueue;
+import com.wilson.gdx.util.GamePreferences;
+import com.wilson.gdx.util.PhysicsRegions;
 
 
 public class WorldController extends InputAdapter implements Disposable
@@ -43,7 +55,7 @@ public class WorldController extends InputAdapter implements Disposable
 	public int score;
 	public float scoreVisual;
 	private boolean goalReached;
-	private boolean accelerometerAvailable;
+	boolean accelerometerAvailable;
 
 	public CameraHelper cameraHelper;
 
@@ -51,73 +63,529 @@ public class WorldController extends InputAdapter implements Disposable
 	private Rectangle r1 = new Rectangle();
 	private Rectangle r2 = new Rectangle();
 
+	// Rocks and items found near the player by the terrain bitmap and the
+	// item index
+	private Array<Rock> nearbyRocks = new Array<Rock>();
+	private final Rectangle syncArea = new Rectangle();
+	// rocks whose bodies were moved in the last physics step
+	private final Array<Rock> syncedRocks = new Array<Rock>();
+
 	private float timeLeftGameOverDelay;
 
-	public World b2world;
+	// where the BunnyHead was before it was moved in the current step
+	private final Vector2 sweepStart = new Vector2();
+
+	// fixed time step of the simulation and the frame time that has not been
+	// simulated yet
+	private float stepTime;
+	private float accumulator;
+	private boolean leavingGame;
+
+	// keys released and the size of the viewport, collected on the render
+	// thread until FrameInput takes them over for the next update
+	final IntArray releasedKeys = new IntArray();
+	float viewportWidth = Constants.VIEWPORT_WIDTH;
+	float viewportHeight = Constants.VIEWPORT_HEIGHT;
+
+	// the Box2D worlds of the level, one per region
+	public PhysicsRegions physics;
+
+	// bodies of the rocks by template index. A body is created the first
+	// time its chunk is activated and only switched off when the chunk is
+	// unloaded, so every rock gets exactly one body per level.
+	private Body[] rockBodies;
+	// sensor bodies of the gold coins and feathers by template index, which
+	// are reused the same way
+	private Body[] goldcoinBodies;
+	private Body[] featherBodies;
+
+	// definitions shared by all bodies and fixtures that are created
+	private final BodyDef bodyDef = new BodyDef();
+	private final FixtureDef fixtureDef = new FixtureDef();
+	private final FixtureDef sensorDef = new FixtureDef();
+	private final Vector2 tmpOrigin = new Vector2();
+	private PolygonShape polygonShape;
+
+	// carrots whose bodies are switched off, ready for the next celebration
+	private final Pool<Carrot> carrotPool = new Pool<Carrot>(Constants.CARROTS_SPAWN_MAX)
+	{
+		@Override
+		protected Carrot newObject()
+		{
+			return createCarrot();
+		}
+	};
 
 	public WorldController(DirectedGame game)
 	{
 		this.game = game;
+		// kept for the whole game, it gets the viewport size with the input of
+		// every update
+		cameraHelper = new CameraHelper();
+		accelerometerAvailable = Gdx.input.isPeripheralAvailable(Peripheral.Accelerometer);
 		init();
 	}
 
 	private void init()
 	{
-		accelerometerAvailable = Gdx.input.isPeripheralAvailable(Peripheral.Accelerometer);
-		cameraHelper = new CameraHelper();
+		cameraHelper.reset();
 		lives = Constants.LIVES_START;
 		livesVisual = lives;
 		timeLeftGameOverDelay = 0;
+		setSimulationRate(GamePreferences.instance.useLowSimulationRate ? Constants.SIMULATION_RATE_LOW
+		        : Constants.SIMULATION_RATE);
 		initLevel();
 	}
 
+	/**
+	 * Starts (or restarts) the level. The first call builds the level and its
+	 * physics world. Every later call, e.g. after losing a life or pressing
+	 * 'R', only resets the existing objects and bodies in place so no level
+	 * file is read and no Box2D world is rebuilt.
+	 */
 	private void initLevel()
 	{
 		score = 0;
 		scoreVisual = score;
 		goalReached = false;
-		level = new Level(Constants.LEVEL_01);
+		// their bodies are about to be reset or thrown away
+		syncedRocks.clear();
+		if (level == null)
+			loadLevel();
+		else
+			resetLevel();
 		cameraHelper.setTarget(level.bunnyHead);
+		streamLevel();
+	}
+	/**
+	 * Builds the level and its physics worlds from scratch. The
+	 * LevelResetBenchmark compares this with resetLevel().
+	 */
+	void loadLevel()
+	{
+		level = new Level(Constants.LEVEL_01);
+		level.setChunkListener(chunkListener);
 		initPhysics();
 	}
 	/**
-	 * Creates the physics for Box2D in the game. Gives rocks a body polygon
-	 * shape for use in collision detection with BunnyHead.
+	 * Puts the level and the bodies of its objects back to where they started,
+	 * without creating anything new.
+	 */
+	void resetLevel()
+	{
+		releaseCarrots();
+		level.reset();
+		resetPhysics();
+	}
+	/**
+	 * Creates the physics worlds for Box2D in the game. The level is split
+	 * into regions of Constants.PHYSICS_REGION_WIDTH, each simulated in a
+	 * world of its own. Rocks that don't float get static bodies right away,
+	 * the bodies of floating rocks are created chunk by chunk as the level
+	 * streams them in.
 	 */
 	private void initPhysics()
 	{
-		if (b2world != null)
-			b2world.dispose();
-		b2world = new World(new Vector2(0, -9.81f), true);
-		// Rocks
-		Vector2 origin = new Vector2();
-		for (Rock rock : level.rocks)
+		if (physics != null)
+			physics.dispose();
+		physics = new PhysicsRegions(Constants.PHYSICS_REGION_WIDTH, Constants.PHYSICS_REGION_SHARE_DISTANCE,
+		        new Vector2(0, -9.81f));
+		rockBodies = new Body[level.template.rocks.length];
+		carrotPool.clear();
+		// the shape is copied into every fixture, so one is enough
+		if (polygonShape == null)
+			polygonShape = new PolygonShape();
+		createRockColliders();
+		goldcoinBodies = new Body[level.template.goldcoins.length];
+		featherBodies = new Body[level.template.feathers.length];
+		// the player begins to touch every pickup at most once per step
+		pickupContacts = new ContactQueue(level.template.goldcoins.length + level.template.feathers.length + 1);
+		physics.setContactListener(pickupListener);
+		createPlayerBody();
+		createSensorBody(level.goal, BodyType.StaticBody, Constants.CATEGORY_PICKUP, Constants.CATEGORY_PLAYER);
+	}
+	/**
+	 * Collects the pickups the player touches during a physics step. Box2D
+	 * finds the touching sensors in its broadphase, so there is no need to
+	 * test the items by hand. The regions are stepped in parallel, so the
+	 * events go into a ContactQueue and are handled after the step (see
+	 * handlePickups()). The queue has room for every pickup of the level and
+	 * the goal, so no event can be dropped.
+	 */
+	private ContactQueue pickupContacts;
+	private final ContactListener pickupListener = new ContactListener()
+	{
+		@Override
+		public void beginContact(Contact contact)
+		{
+			Object a = contact.getFixtureA().getBody().getUserData();
+			Object b = contact.getFixtureB().getBody().getUserData();
+			if (a instanceof BunnyHead)
+				pickupContacts.offer(a, b);
+			else if (b instanceof BunnyHead)
+				pickupContacts.offer(b, a);
+		}
+
+		@Override
+		public void endContact(Contact contact)
+		{
+		}
+
+		@Override
+		public void preSolve(Contact contact, Manifold oldManifold)
+		{
+		}
+
+		@Override
+		public void postSolve(Contact contact, ContactImpulse impulse)
+		{
+		}
+	};
+	/**
+	 * Switches the physics bodies of chunks on and off as the level activates
+	 * and unloads them. Bodies are only created the first time.
+	 */
+	private final Level.ChunkListener chunkListener = new Level.ChunkListener()
+	{
+		@Override
+		public void chunkActivated(LevelChunk chunk)
+		{
+			for (int i = 0; i < chunk.rocks.size; i++)
+			{
+				Rock rock = chunk.rocks.get(i);
+				if (!rock.floating)
+					continue;
+				int index = chunk.rockEntries.get(i);
+				Body body = rockBodies[index];
+				if (body == null)
+				{
+					body = createRockBody(rock);
+					rockBodies[index] = body;
+				} else
+				{
+					body.setTransform(rock.position, 0);
+					body.setLinearVelocity(0, 0);
+					physics.setActive(body, true);
+				}
+				body.setUserData(rock);
+				rock.body = body;
+			}
+			for (int i = 0; i < chunk.goldcoins.size; i++)
+			{
+				GoldCoin goldcoin = chunk.goldcoins.get(i);
+				activatePickup(goldcoin, goldcoinBodies, chunk.goldcoinEntries.get(i), goldcoin.collected);
+			}
+			for (int i = 0; i < chunk.feathers.size; i++)
+			{
+				Feather feather = chunk.feathers.get(i);
+				activatePickup(feather, featherBodies, chunk.featherEntries.get(i), feather.collected);
+			}
+		}
+
+		@Override
+		public void chunkDeactivated(LevelChunk chunk)
+		{
+			for (Rock rock : chunk.rocks)
+			{
+				if (rock.body == null)
+					continue;
+				physics.setActive(rock.body, false);
+				rock.body.setUserData(null);
+				rock.body = null;
+			}
+			for (GoldCoin goldcoin : chunk.goldcoins)
+				deactivatePickup(goldcoin);
+			for (Feather feather : chunk.feathers)
+				deactivatePickup(feather);
+		}
+
+		@Override
+		public void chunkAsleep(LevelChunk chunk)
 		{
-			BodyDef bodyDef = new BodyDef();
-			bodyDef.type = BodyType.KinematicBody;
-			bodyDef.position.set(rock.position);
-			Body body = b2world.createBody(bodyDef);
-			rock.body = body;
-			PolygonShape polygonShape = new PolygonShape();
-			origin.x = rock.bounds.width / 2.0f;
-			origin.y = rock.bounds.height / 2.0f;
-			polygonShape.setAsBox(rock.bounds.width / 2.0f, rock.bounds.height / 2.0f, origin, 0);
-			FixtureDef fixtureDef = new FixtureDef();
+			for (Rock rock : chunk.rocks)
+			{
+				if (rock.body != null)
+					physics.setActive(rock.body, false);
+			}
+			for (GoldCoin goldcoin : chunk.goldcoins)
+				physics.setActive(goldcoin.body, false);
+			for (Feather feather : chunk.feathers)
+				physics.setActive(feather.body, false);
+		}
+
+		@Override
+		public void chunkAwake(LevelChunk chunk)
+		{
+			for (Rock rock : chunk.rocks)
+			{
+				if (rock.body == null)
+					continue;
+				rock.body.setTransform(rock.position, 0);
+				rock.body.setLinearVelocity(0, rock.floatVelocity);
+				physics.setActive(rock.body, true);
+			}
+			for (GoldCoin goldcoin : chunk.goldcoins)
+				physics.setActive(goldcoin.body, !goldcoin.collected);
+			for (Feather feather : chunk.feathers)
+				physics.setActive(feather.body, !feather.collected);
+		}
+	};
+	/**
+	 * Gives a pickup of an activated chunk its sensor body, creating it the
+	 * first time. The body is only switched on while the item can still be
+	 * collected.
+	 * 
+	 * @param pickup
+	 * @param bodies
+	 *            sensor bodies of this kind of pickup by template index
+	 * @param index
+	 *            template index of the pickup
+	 * @param collected
+	 */
+	private void activatePickup(AbstractGameObject pickup, Body[] bodies, int index, boolean collected)
+	{
+		Body body = bodies[index];
+		if (body == null)
+		{
+			body = createSensorBody(pickup, BodyType.StaticBody, Constants.CATEGORY_PICKUP, Constants.CATEGORY_PLAYER);
+			bodies[index] = body;
+		} else
+			body.setTransform(pickup.position, 0);
+		physics.setActive(body, !collected);
+		physics.setUserData(body, pickup);
+		pickup.body = body;
+	}
+
+	private void deactivatePickup(AbstractGameObject pickup)
+	{
+		physics.setActive(pickup.body, false);
+		physics.setUserData(pickup.body, null);
+		pickup.body = null;
+	}
+	/**
+	 * Creates a body with a sensor fixture the size of the bounds of an
+	 * object. Sensors don't push anything, they only report contacts.
+	 * 
+	 * @param obj
+	 * @param type
+	 * @param category
+	 *            what the sensor is, see Constants.CATEGORY_PLAYER
+	 * @param mask
+	 *            what the sensor detects
+	 * @return
+	 */
+	private Body createSensorBody(AbstractGameObject obj, BodyType type, short category, short mask)
+	{
+		bodyDef.type = type;
+		bodyDef.position.set(obj.position);
+		bodyDef.angle = 0;
+		Body body = physics.createBody(bodyDef);
+		body.setUserData(obj);
+		obj.body = body;
+		float halfWidth = obj.bounds.width / 2.0f;
+		float halfHeight = obj.bounds.height / 2.0f;
+		tmpOrigin.set(obj.bounds.x + halfWidth, obj.bounds.y + halfHeight);
+		polygonShape.setAsBox(halfWidth, halfHeight, tmpOrigin, 0);
+		sensorDef.shape = polygonShape;
+		sensorDef.isSensor = true;
+		sensorDef.filter.categoryBits = category;
+		sensorDef.filter.maskBits = mask;
+		body.createFixture(sensorDef);
+		if (type == BodyType.StaticBody)
+			physics.share(body, obj.position.x + obj.bounds.x, obj.position.x + obj.bounds.x + obj.bounds.width);
+		return body;
+	}
+	/**
+	 * Gives the player a sensor body to find the pickups it touches. The
+	 * bunny is not moved by Box2D; its body is put where the bunny is before
+	 * every step (see step()). It has to be dynamic to detect the static
+	 * sensors of the pickups and must not fall asleep while it is put around.
+	 */
+	private void createPlayerBody()
+	{
+		BunnyHead bunnyHead = level.bunnyHead;
+		createSensorBody(bunnyHead, BodyType.DynamicBody, Constants.CATEGORY_PLAYER, Constants.CATEGORY_PICKUP);
+		bunnyHead.body.setGravityScale(0);
+		bunnyHead.body.setFixedRotation(true);
+		bunnyHead.body.setSleepingAllowed(false);
+	}
+	/**
+	 * Creates the static bodies of the rocks that don't float, once per
+	 * level. All colliders that start in the same physics region become
+	 * fixtures of one body, which is shared with the neighboring regions it
+	 * reaches into.
+	 */
+	private void createRockColliders()
+	{
+		IntMap<Body> bodies = new IntMap<Body>();
+		IntMap<Rectangle> extents = new IntMap<Rectangle>();
+		bodyDef.type = BodyType.StaticBody;
+		bodyDef.angle = 0;
+		for (Rectangle collider : level.rockColliders)
+		{
+			int region = (int)Math.floor(collider.x / Constants.PHYSICS_REGION_WIDTH);
+			Body body = bodies.get(region);
+			if (body == null)
+			{
+				bodyDef.position.set(collider.x, collider.y);
+				body = physics.createBody(bodyDef);
+				bodies.put(region, body);
+				extents.put(region, new Rectangle(collider));
+			} else
+				extents.get(region).merge(collider);
+			float halfWidth = collider.width / 2.0f;
+			float halfHeight = collider.height / 2.0f;
+			tmpOrigin.set(collider.x + halfWidth, collider.y + halfHeight).sub(body.getPosition());
+			polygonShape.setAsBox(halfWidth, halfHeight, tmpOrigin, 0);
 			fixtureDef.shape = polygonShape;
+			fixtureDef.density = 0;
+			fixtureDef.restitution = 0;
+			fixtureDef.friction = 0.2f;
 			body.createFixture(fixtureDef);
-			polygonShape.dispose();
+		}
+		for (IntMap.Entry<Body> entry : bodies.entries())
+		{
+			Rectangle extent = extents.get(entry.key);
+			physics.share(entry.value, extent.x, extent.x + extent.width);
 		}
 	}
 	/**
-	 * Updates the game for use in tracking the camera, playing sounds, checking
-	 * if the player fell in water, updating the level, and other various tasks.
-	 * Also updates if lives are lost and displays if the game is over.
+	 * Gives a floating rock a body polygon shape for use in collision detection with
+	 * BunnyHead. Rocks close to the border of a physics region are shared
+	 * with the neighboring region.
+	 * 
+	 * @param rock
+	 * @return the new body
+	 */
+	private Body createRockBody(Rock rock)
+	{
+		bodyDef.type = BodyType.KinematicBody;
+		bodyDef.position.set(rock.position);
+		bodyDef.angle = 0;
+		Body body = physics.createBody(bodyDef);
+		float halfWidth = rock.bounds.width / 2.0f;
+		float halfHeight = rock.bounds.height / 2.0f;
+		polygonShape.setAsBox(halfWidth, halfHeight, tmpOrigin.set(halfWidth, halfHeight), 0);
+		fixtureDef.shape = polygonShape;
+		fixtureDef.density = 0;
+		fixtureDef.restitution = 0;
+		fixtureDef.friction = 0.2f;
+		body.createFixture(fixtureDef);
+		physics.share(body, rock.position.x, rock.position.x + rock.bounds.width);
+		return body;
+	}
+	/**
+	 * Lets the level load the chunks that are in (or close to) the visible
+	 * area and unload the ones far behind. The range grows with the zoom of
+	 * the camera.
+	 */
+	private void streamLevel()
+	{
+		float range = Constants.VIEWPORT_WIDTH * cameraHelper.getZoom() + Constants.LEVEL_CHUNK_LOAD_MARGIN;
+		level.updateStreaming(cameraHelper.getPosition().x, range);
+		float radius = Constants.VIEWPORT_WIDTH * cameraHelper.getZoom() + Constants.ACTIVITY_MARGIN;
+		level.updateActivity(cameraHelper.getPosition().x, radius);
+		for (Carrot carrot : level.carrots)
+		{
+			if (carrot.asleep == carrot.body.isActive())
+				physics.setActive(carrot.body, !carrot.asleep);
+		}
+	}
+	/**
+	 * Moves the rock bodies back to the start positions of their rocks and
+	 * stops them. Used instead of initPhysics() when the level is reset.
+	 */
+	private void resetPhysics()
+	{
+		for (Rock rock : level.rocks)
+		{
+			if (rock.body == null)
+				continue;
+			rock.body.setTransform(rock.position, 0);
+			rock.body.setLinearVelocity(0, 0);
+		}
+		// all items of the chunks that are awake can be collected again
+		for (LevelChunk chunk : level.chunks)
+		{
+			if (chunk.state != LevelChunk.STATE.ACTIVE || !chunk.awake)
+				continue;
+			for (GoldCoin goldcoin : chunk.goldcoins)
+				physics.setActive(goldcoin.body, true);
+			for (Feather feather : chunk.feathers)
+				physics.setActive(feather.body, true);
+		}
+		pickupContacts.clear();
+	}
+	/**
+	 * Switches off the bodies of all carrots that were spawned when the goal
+	 * was reached and puts the carrots back into the pool.
+	 */
+	private void releaseCarrots()
+	{
+		for (Carrot carrot : level.carrots)
+		{
+			physics.setActive(carrot.body, false);
+			carrotPool.free(carrot);
+		}
+	}
+	/**
+	 * Sets how many simulation steps are done per second.
+	 * 
+	 * @param stepsPerSecond
+	 */
+	public void setSimulationRate(float stepsPerSecond)
+	{
+		stepTime = 1.0f / stepsPerSecond;
+	}
+	/**
+	 * Advances the game by the time of a frame. The time is collected and
+	 * simulated in fixed steps, so the game behaves the same no matter how
+	 * fast the frames come. If a frame would need more than
+	 * Constants.SIMULATION_MAX_STEPS, the rest of its time is dropped.
+	 * 
+	 * What is left over that is too short for a whole step decides how far
+	 * the objects and the camera are drawn between the last two steps.
+	 * 
+	 * @param deltaTime
+	 * @param input
+	 *            the input of the frame, captured on the render thread
+	 */
+	public void update(float deltaTime, FrameInput input)
+	{
+		cameraHelper.setViewport(input.viewportWidth, input.viewportHeight);
+		handleReleasedKeys(input);
+		handleDebugInput(deltaTime, input);
+		accumulator += deltaTime;
+		int steps = 0;
+		while (accumulator >= stepTime && !leavingGame)
+		{
+			if (steps == Constants.SIMULATION_MAX_STEPS)
+			{
+				accumulator = 0;
+				break;
+			}
+			level.savePreviousState();
+			cameraHelper.savePreviousState();
+			step(stepTime, input);
+			accumulator -= stepTime;
+			steps++;
+		}
+		float alpha = accumulator / stepTime;
+		level.interpolate(alpha);
+		cameraHelper.interpolate(alpha);
+	}
+	/**
+	 * Does one step of the simulation: tracking the camera, playing sounds,
+	 * checking if the player fell in water, updating the level, and other
+	 * various tasks. Also updates if lives are lost and displays if the game
+	 * is over.
 	 * 
 	 * @param deltaTime
+	 *            the fixed time of a step
+	 * @param input
 	 */
-	public void update(float deltaTime)
+	private void step(float deltaTime, FrameInput input)
 	{
-		handleDebugInput(deltaTime);
 		if (isGameOver() || goalReached)
 		{
 			timeLeftGameOverDelay -= deltaTime;
@@ -125,11 +593,18 @@ public class WorldController extends InputAdapter implements Disposable
 				backToMenu();
 		} else
 		{
-			handleInputGame(deltaTime);
+			handleInputGame(deltaTime, input);
 		}
+		streamLevel();
+		sweepStart.set(level.bunnyHead.position);
 		level.update(deltaTime);
+		pushFloatingRocks();
+		sweepBunnyHead();
 		testCollisions();
-		b2world.step(deltaTime, 8, 3);
+		level.bunnyHead.body.setTransform(level.bunnyHead.position, 0);
+		physics.step(deltaTime, 8, 3);
+		syncBodies();
+		handlePickups();
 		cameraHelper.update(deltaTime);
 		if (!isGameOver() && isPlayerInWater())
 		{
@@ -140,12 +615,72 @@ public class WorldController extends InputAdapter implements Disposable
 			else
 				initLevel();
 		}
-		level.mountains.updateScrollPosition(cameraHelper.getPosition());
 		if (livesVisual > lives)
 			livesVisual = Math.max(lives, livesVisual - 1 * deltaTime);
 		if (scoreVisual < score)
 			scoreVisual = Math.min(score, scoreVisual + 250 * deltaTime);
 	}
+	/**
+	 * Hands the positions and speeds of the floating rocks near the player to
+	 * their bodies. Nothing but the player's carrots ever touches a rock body,
+	 * so the bodies of rocks further away are left where they were until the
+	 * player gets close again. Their velocity is taken away when they fall
+	 * out of range, otherwise Box2D would keep moving them in one direction.
+	 */
+	private void pushFloatingRocks()
+	{
+		BunnyHead bunnyHead = level.bunnyHead;
+		float distance = Constants.ROCK_BODY_SYNC_DISTANCE;
+		syncArea.set(bunnyHead.position.x - distance, bunnyHead.position.y - distance, 2 * distance, 2 * distance);
+		for (Rock rock : syncedRocks)
+			rock.bodySynced = false;
+		nearbyRocks.clear();
+		for (Rock rock : level.findRocks(syncArea, nearbyRocks))
+		{
+			if (rock.body == null)
+				continue;
+			rock.body.setTransform(rock.position, 0);
+			rock.body.setLinearVelocity(0, rock.floatVelocity);
+			rock.bodySynced = true;
+		}
+		for (Rock rock : syncedRocks)
+		{
+			if (!rock.bodySynced && rock.body != null)
+				rock.body.setLinearVelocity(0, 0);
+		}
+		syncedRocks.clear();
+		for (Rock rock : nearbyRocks)
+		{
+			if (rock.bodySynced)
+				syncedRocks.add(rock);
+		}
+	}
+	/**
+	 * Moves the objects that have a dynamic body to where the physics step
+	 * put the body. Bodies that are asleep did not move, so they are skipped
+	 * without reading their transform. Objects that are off-screen are only
+	 * marked, and catch up once they are close to the screen again.
+	 */
+	private void syncBodies()
+	{
+		float zoom = cameraHelper.getZoom();
+		float halfWidth = Constants.VIEWPORT_WIDTH * zoom + Constants.BODY_SYNC_MARGIN;
+		float halfHeight = Constants.VIEWPORT_HEIGHT * zoom + Constants.BODY_SYNC_MARGIN;
+		Vector2 center = cameraHelper.getPosition();
+		for (Carrot carrot : level.carrots)
+		{
+			boolean awake = carrot.body.isAwake();
+			if (!awake && !carrot.bodyMoved)
+				continue;
+			if (Math.abs(carrot.position.x - center.x) > halfWidth
+			        || Math.abs(carrot.position.y - center.y) > halfHeight)
+			{
+				carrot.bodyMoved = true;
+				continue;
+			}
+			carrot.syncWithBody();
+		}
+	}
 	/**
 	 * Check to see if the game is over.
 	 * 
@@ -166,8 +701,38 @@ public class WorldController extends InputAdapter implements Disposable
 		return level.bunnyHead.position.y < -5;
 	}
 	/**
-	 * Monitors for various collision situations and calls to the appropriate
-	 * methods to execute actions.
+	 * Handles the pickups the player touched during the last physics step.
+	 * All of them are collected, so the player can pick up several items in
+	 * the same step.
+	 */
+	private void handlePickups()
+	{
+		for (int i = 0; i < pickupContacts.size(); i++)
+		{
+			Object pickup = pickupContacts.getSecond(i);
+			if (pickup instanceof GoldCoin)
+			{
+				GoldCoin goldcoin = (GoldCoin) pickup;
+				if (!goldcoin.collected)
+					onCollisionBunnyWithGoldCoin(goldcoin);
+			} else if (pickup instanceof Feather)
+			{
+				Feather feather = (Feather) pickup;
+				if (!feather.collected)
+					onCollisionBunnyWithFeather(feather);
+			} else if (pickup instanceof Goal)
+			{
+				if (!goalReached)
+					onCollisionBunnyWithGoal();
+			}
+		}
+		pickupContacts.clear();
+	}
+	/**
+	 * Monitors for collisions with rocks and calls to the appropriate methods
+	 * to execute actions. Rocks are looked up in the level's terrain bitmap,
+	 * so only the rocks in the cells around the player are tested. Pickups
+	 * are found by Box2D (see handlePickups()).
 	 */
 	private void testCollisions()
 	{
@@ -175,7 +740,8 @@ public class WorldController extends InputAdapter implements Disposable
 		        level.bunnyHead.bounds.height);
 
 		// Test collision: Bunny Head <-> Rocks
-		for (Rock rock : level.rocks)
+		nearbyRocks.clear();
+		for (Rock rock : level.findRocks(r1, nearbyRocks))
 		{
 			r2.set(rock.position.x, rock.position.y, rock.bounds.width, rock.bounds.height);
 			if (!r1.overlaps(r2))
@@ -184,44 +750,113 @@ public class WorldController extends InputAdapter implements Disposable
 			// IMPORTANT: must do all collisions for valid edge testing on
 			// rocks.
 		}
-
-		// Test collision: Bunny Head <-> Gold Coins
-		for (GoldCoin goldcoin : level.goldcoins)
-		{
-			if (goldcoin.collected)
-				continue;
-			r2.set(goldcoin.position.x, goldcoin.position.y, goldcoin.bounds.width, goldcoin.bounds.height);
-			if (!r1.overlaps(r2))
-				continue;
-			onCollisionBunnyWithGoldCoin(goldcoin);
-			break;
-		}
-
-		// Test collision: Bunny Head <-> Feathers
-		for (Feather feather : level.feathers)
-		{
-			if (feather.collected)
-				continue;
-			r2.set(feather.position.x, feather.position.y, feather.bounds.width, feather.bounds.height);
-			if (!r1.overlaps(r2))
-				continue;
-			onCollisionBunnyWithFeather(feather);
-			break;
-		}
-
-		// Test collision: Bunny Head <-> Goal
-		if (!goalReached)
+	}
+	/**
+	 * Moves the BunnyHead back to where it first hit a rock on its way during
+	 * this step. The bunny is moved in one go by update(), so with long steps
+	 * it can end up behind or below a rock it should have hit, which the
+	 * overlap test in testCollisions() can't see.
+	 * 
+	 * The box of the bunny is swept from where it was before the update to
+	 * where it is now, and the time of impact with every rock near the path
+	 * is worked out. At the earliest hit the bunny either lands on the rock
+	 * or is stopped at its side. Bumping into a rock from below is left to
+	 * testCollisions(), like before. A second pass sweeps the rest of the
+	 * motion from the point of contact, without the rock that was just hit,
+	 * to catch another rock on the way, e.g. a wall after landing.
+	 */
+	private void sweepBunnyHead()
+	{
+		BunnyHead bunnyHead = level.bunnyHead;
+		float width = bunnyHead.bounds.width;
+		float height = bunnyHead.bounds.height;
+		Rock resolved = null;
+		for (int pass = 0; pass < 2; pass++)
 		{
-			r2.set(level.goal.bounds);
-			r2.x += level.goal.position.x;
-			r2.y += level.goal.position.y;
-			if (r1.overlaps(r2))
-				onCollisionBunnyWithGoal();
+			float dx = bunnyHead.position.x - sweepStart.x;
+			float dy = bunnyHead.position.y - sweepStart.y;
+			r1.set(Math.min(sweepStart.x, bunnyHead.position.x), Math.min(sweepStart.y, bunnyHead.position.y),
+			        width + Math.abs(dx), height + Math.abs(dy));
+			Rock hit = null;
+			float hitTime = Float.POSITIVE_INFINITY;
+			boolean hitSide = false;
+			nearbyRocks.clear();
+			for (Rock rock : level.findRocks(r1, nearbyRocks))
+			{
+				if (rock == resolved)
+					continue;
+				r2.set(rock.position.x, rock.position.y, rock.bounds.width, rock.bounds.height);
+				// entry and exit times of the sweep on both axes
+				float entryX, exitX, entryY, exitY;
+				if (dx > 0)
+				{
+					entryX = (r2.x - (sweepStart.x + width)) / dx;
+					exitX = (r2.x + r2.width - sweepStart.x) / dx;
+				} else if (dx < 0)
+				{
+					entryX = (r2.x + r2.width - sweepStart.x) / dx;
+					exitX = (r2.x - (sweepStart.x + width)) / dx;
+				} else if (sweepStart.x + width > r2.x && sweepStart.x < r2.x + r2.width)
+				{
+					entryX = Float.NEGATIVE_INFINITY;
+					exitX = Float.POSITIVE_INFINITY;
+				} else
+					continue;
+				if (dy > 0)
+				{
+					entryY = (r2.y - (sweepStart.y + height)) / dy;
+					exitY = (r2.y + r2.height - sweepStart.y) / dy;
+				} else if (dy < 0)
+				{
+					entryY = (r2.y + r2.height - sweepStart.y) / dy;
+					exitY = (r2.y - (sweepStart.y + height)) / dy;
+				} else if (sweepStart.y + height > r2.y && sweepStart.y < r2.y + r2.height)
+				{
+					entryY = Float.NEGATIVE_INFINITY;
+					exitY = Float.POSITIVE_INFINITY;
+				} else
+					continue;
+				float entry = Math.max(entryX, entryY);
+				float exit = Math.min(exitX, exitY);
+				// no hit on this path, or already inside at the start
+				if (entry >= exit || entry < 0 || entry > 1)
+					continue;
+				boolean side = entryX > entryY;
+				// hits from below are left to testCollisions()
+				if (!side && dy > 0)
+					continue;
+				if (entry < hitTime)
+				{
+					hit = rock;
+					hitTime = entry;
+					hitSide = side;
+				}
+			}
+			if (hit == null)
+				return;
+			// the rest of the motion starts where the bunny touched the rock
+			sweepStart.add(dx * hitTime, dy * hitTime);
+			if (hitSide)
+			{
+				// stop at the side, keep going up or down
+				bunnyHead.position.x = dx > 0 ? hit.position.x - width : hit.position.x + hit.bounds.width;
+				bunnyHead.velocity.x = 0;
+				sweepStart.x = bunnyHead.position.x;
+			} else
+			{
+				// land on top, keep going sideways
+				bunnyHead.position.y = hit.position.y + hit.bounds.height;
+				landBunnyHead(hit);
+				sweepStart.y = bunnyHead.position.y;
+			}
+			resolved = hit;
 		}
 	}
 	/**
 	 * Determines collision with rocks so the BunnyHead does not pass through
-	 * the rocks and fall when it is not supposed to.
+	 * the rocks and fall when it is not supposed to. When landing, the bunny
+	 * is put on the highest ground under its center as the terrain bitmap
+	 * sees it, so overlapping rocks don't fight over where it stands.
 	 * 
 	 * @param rock
 	 */
@@ -241,18 +876,31 @@ public class WorldController extends InputAdapter implements Disposable
 			}
 			return;
 		}
-
+		landBunnyHead(rock);
+	}
+	/**
+	 * Puts the BunnyHead on the ground after it came down on a rock.
+	 * 
+	 * @param rock
+	 */
+	private void landBunnyHead(Rock rock)
+	{
+		BunnyHead bunnyHead = level.bunnyHead;
+		float groundHeight = level.getGroundHeight(bunnyHead.position.x + bunnyHead.bounds.width / 2.0f,
+		        bunnyHead.position.y + 0.25f);
+		if (groundHeight == Float.NEGATIVE_INFINITY)
+			groundHeight = rock.position.y + rock.bounds.height;
 		switch (bunnyHead.jumpState)
 		{
 		case GROUNDED:
 			break;
 		case FALLING:
 		case JUMP_FALLING:
-			bunnyHead.position.y = rock.position.y + bunnyHead.bounds.height + bunnyHead.origin.y;
+			bunnyHead.position.y = groundHeight;
 			bunnyHead.jumpState = JUMP_STATE.GROUNDED;
 			break;
 		case JUMP_RISING:
-			bunnyHead.position.y = rock.position.y + bunnyHead.bounds.height + bunnyHead.origin.y;
+			bunnyHead.position.y = groundHeight;
 			break;
 		}
 	}
@@ -264,7 +912,8 @@ public class WorldController extends InputAdapter implements Disposable
 	 */
 	private void onCollisionBunnyWithGoldCoin(GoldCoin goldcoin)
 	{
-		goldcoin.collected = true;
+		level.collect(goldcoin);
+		physics.setActive(goldcoin.body, false);
 		AudioManager.instance.play(Assets.instance.sounds.pickupCoin);
 		score += goldcoin.getScore();
 		Gdx.app.log(TAG, "Gold coin collected");
@@ -277,7 +926,8 @@ public class WorldController extends InputAdapter implements Disposable
 	 */
 	private void onCollisionBunnyWithFeather(Feather feather)
 	{
-		feather.collected = true;
+		level.collect(feather);
+		physics.setActive(feather.body, false);
 		AudioManager.instance.play(Assets.instance.sounds.pickupFeather);
 		score += feather.getScore();
 		level.bunnyHead.setFeatherPowerup(true);
@@ -299,8 +949,9 @@ public class WorldController extends InputAdapter implements Disposable
 	 * Handles debug movement with the camera to view level.
 	 * 
 	 * @param deltaTime
+	 * @param input
 	 */
-	private void handleDebugInput(float deltaTime)
+	private void handleDebugInput(float deltaTime, FrameInput input)
 	{
 		if (Gdx.app.getType() != ApplicationType.Desktop)
 			return;
@@ -310,30 +961,30 @@ public class WorldController extends InputAdapter implements Disposable
 			// Camera Controls (move)
 			float camMoveSpeed = 5 * deltaTime;
 			float camMoveSpeedAccelerationFactor = 5;
-			if (Gdx.input.isKeyPressed(Keys.SHIFT_LEFT))
+			if (input.isKeyPressed(Keys.SHIFT_LEFT))
 				camMoveSpeed *= camMoveSpeedAccelerationFactor;
-			if (Gdx.input.isKeyPressed(Keys.LEFT))
+			if (input.isKeyPressed(Keys.LEFT))
 				moveCamera(-camMoveSpeed, 0);
-			if (Gdx.input.isKeyPressed(Keys.RIGHT))
+			if (input.isKeyPressed(Keys.RIGHT))
 				moveCamera(camMoveSpeed, 0);
-			if (Gdx.input.isKeyPressed(Keys.UP))
+			if (input.isKeyPressed(Keys.UP))
 				moveCamera(0, camMoveSpeed);
-			if (Gdx.input.isKeyPressed(Keys.DOWN))
+			if (input.isKeyPressed(Keys.DOWN))
 				moveCamera(0, -camMoveSpeed);
-			if (Gdx.input.isKeyPressed(Keys.BACKSPACE))
+			if (input.isKeyPressed(Keys.BACKSPACE))
 				cameraHelper.setPosition(0, 0);
 		}
 
 		// Camera Controls (zoom)
 		float camZoomSpeed = 1 * deltaTime;
 		float camZoomSpeedAccelerationFactor = 5;
-		if (Gdx.input.isKeyPressed(Keys.SHIFT_LEFT))
+		if (input.isKeyPressed(Keys.SHIFT_LEFT))
 			camZoomSpeed *= camZoomSpeedAccelerationFactor;
-		if (Gdx.input.isKeyPressed(Keys.COMMA))
+		if (input.isKeyPressed(Keys.COMMA))
 			cameraHelper.addZoom(camZoomSpeed);
-		if (Gdx.input.isKeyPressed(Keys.PERIOD))
+		if (input.isKeyPressed(Keys.PERIOD))
 			cameraHelper.addZoom(-camZoomSpeed);
-		if (Gdx.input.isKeyPressed(Keys.SLASH))
+		if (input.isKeyPressed(Keys.SLASH))
 			cameraHelper.setZoom(1);
 	}
 	/**
@@ -341,16 +992,17 @@ public class WorldController extends InputAdapter implements Disposable
 	 * pressed, move right. Space jumps.
 	 * 
 	 * @param deltaTime
+	 * @param input
 	 */
-	private void handleInputGame(float deltaTime)
+	private void handleInputGame(float deltaTime, FrameInput input)
 	{
 		if (cameraHelper.hasTarget(level.bunnyHead))
 		{
 			// Player Movement
-			if (Gdx.input.isKeyPressed(Keys.LEFT))
+			if (input.isKeyPressed(Keys.LEFT))
 			{
 				level.bunnyHead.velocity.x = -level.bunnyHead.terminalVelocity.x;
-			} else if (Gdx.input.isKeyPressed(Keys.RIGHT))
+			} else if (input.isKeyPressed(Keys.RIGHT))
 			{
 				level.bunnyHead.velocity.x = level.bunnyHead.terminalVelocity.x;
 			} else
@@ -360,7 +1012,7 @@ public class WorldController extends InputAdapter implements Disposable
 				{
 					// normalize accelerometer values from [-10, 10] to [-1, 1]
 					// which translate to rotations of [-90, 90] degrees
-					float amount = Gdx.input.getAccelerometerY() / 10.0f;
+					float amount = input.accelerometerY / 10.0f;
 					amount *= 90.0f;
 					// is angle of rotation inside dead zone?
 					if (Math.abs(amount) < Constants.ACCEL_ANGLE_DEAD_ZONE)
@@ -382,7 +1034,7 @@ public class WorldController extends InputAdapter implements Disposable
 			}
 
 			// Bunny Jump
-			if (Gdx.input.isTouched() || Gdx.input.isKeyPressed(Keys.SPACE))
+			if (input.touched || input.isKeyPressed(Keys.SPACE))
 				level.bunnyHead.setJumping(true);
 			else
 				level.bunnyHead.setJumping(false);
@@ -398,6 +1050,36 @@ public class WorldController extends InputAdapter implements Disposable
 
 	@Override
 	public boolean keyUp(int keycode)
+	{
+		// The world may be simulated on another thread right now, so the key
+		// is only acted upon in the next update.
+		releasedKeys.add(keycode);
+		return false;
+	}
+	/**
+	 * Tells the controller how large the viewport of the camera is. Like the
+	 * released keys, the size reaches the simulation with the next FrameInput.
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	public void setViewport(float width, float height)
+	{
+		viewportWidth = width;
+		viewportHeight = height;
+	}
+	/**
+	 * Acts upon the keys that were released since the last update.
+	 * 
+	 * @param input
+	 */
+	private void handleReleasedKeys(FrameInput input)
+	{
+		for (int i = 0; i < input.releasedKeys.size; i++)
+			handleReleasedKey(input.releasedKeys.get(i));
+	}
+
+	private void handleReleasedKey(int keycode)
 	{
 		// Reset game world
 		if (keycode == Keys.R)
@@ -416,22 +1098,32 @@ public class WorldController extends InputAdapter implements Disposable
 		{
 			backToMenu();
 		}
-		return false;
 	}
 
 	private void backToMenu()
 	{
-		// switch to menu screen
-		ScreenTransition transition = ScreenTransitionSlide.init(0.75f, ScreenTransitionSlide.DOWN, false,
-		        Interpolation.bounceOut);
-		game.setScreen(new MenuScreen(game), transition);
+		leavingGame = true;
+		// switch to menu screen, on the render thread as we might be on the
+		// simulation thread
+		Gdx.app.postRunnable(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				ScreenTransition transition = ScreenTransitionSlide.init(0.75f, ScreenTransitionSlide.DOWN, false,
+				        Interpolation.bounceOut);
+				game.setScreen(new MenuScreen(game), transition);
+			}
+		});
 	}
 
 	@Override
 	public void dispose()
 	{
-		if (b2world != null)
-			b2world.dispose();
+		if (physics != null)
+			physics.dispose();
+		if (polygonShape != null)
+			polygonShape.dispose();
 	}
 	/**
 	 * Spawns carrots when the player reaches the goal. The amount of carrots
@@ -440,49 +1132,68 @@ public class WorldController extends InputAdapter implements Disposable
 	 * When carrots are made they are put in to an array of carrots. Each carrot
 	 * has a body so that when it collides with the ground it bounces off.
 	 * 
+	 * The carrots come from a pool. After the first celebration their bodies
+	 * already exist and are only switched back on at the new position.
+	 * 
 	 * @param pos
 	 * @param numCarrots
 	 * @param radius
 	 */
 	private void spawnCarrots(Vector2 pos, int numCarrots, float radius)
 	{
-		float carrotShapeScale = 0.5f;
-		// create carrots with box2d body and fixture
 		for (int i = 0; i < numCarrots; i++)
 		{
-			Carrot carrot = new Carrot();
-			// calculate random spawn position, rotation, and scale
-			float x = MathUtils.random(-radius, radius);
-			float y = MathUtils.random(5.0f, 15.0f);
+			Carrot carrot = carrotPool.obtain();
+			// calculate random spawn position and rotation
+			float x = pos.x + MathUtils.random(-radius, radius);
+			float y = pos.y + MathUtils.random(5.0f, 15.0f);
 			float rotation = MathUtils.random(0.0f, 360.0f) * MathUtils.degreesToRadians;
-			float carrotScale = MathUtils.random(0.5f, 1.5f);
-			carrot.scale.set(carrotScale, carrotScale);
-			// create box2d body for carrot with start position
-			// and angle of rotation
-			BodyDef bodyDef = new BodyDef();
-			bodyDef.position.set(pos);
-			bodyDef.position.add(x, y);
-			bodyDef.angle = rotation;
-			Body body = b2world.createBody(bodyDef);
-			body.setType(BodyType.DynamicBody);
-			carrot.body = body;
-			// create rectangular shape for carrot to allow
-			// interactions (collisions) with other objects
-			PolygonShape polygonShape = new PolygonShape();
-			float halfWidth = carrot.bounds.width / 2.0f * carrotScale;
-			float halfHeight = carrot.bounds.height / 2.0f * carrotScale;
-			polygonShape.setAsBox(halfWidth * carrotShapeScale, halfHeight * carrotShapeScale);
-			// set physics attributes
-			FixtureDef fixtureDef = new FixtureDef();
-			fixtureDef.shape = polygonShape;
-			fixtureDef.density = 50;
-			fixtureDef.restitution = 0.5f;
-			fixtureDef.friction = 0.5f;
-			body.createFixture(fixtureDef);
-			polygonShape.dispose();
-			// finally, add new carrot to list for updating/rendering
+			// move the body to the start position and angle of rotation
+			Body body = carrot.body;
+			body.setTransform(x, y, rotation);
+			body.setLinearVelocity(0, 0);
+			body.setAngularVelocity(0);
+			physics.setActive(body, true);
+			body.setAwake(true);
+			carrot.position.set(x, y);
+			carrot.rotation = rotation * MathUtils.radiansToDegrees;
+			carrot.bodyMoved = false;
+			carrot.savePreviousState();
+			// finally, add carrot to list for updating/rendering
 			level.carrots.add(carrot);
 		}
 	}
 
+	/**
+	 * Creates a carrot of random scale with its box2d body and fixture. The
+	 * body is placed by spawnCarrots().
+	 * 
+	 * @return
+	 */
+	private Carrot createCarrot()
+	{
+		float carrotShapeScale = 0.5f;
+		Carrot carrot = new Carrot();
+		float carrotScale = MathUtils.random(0.5f, 1.5f);
+		carrot.scale.set(carrotScale, carrotScale);
+		bodyDef.type = BodyType.DynamicBody;
+		bodyDef.position.set(0, 0);
+		bodyDef.angle = 0;
+		Body body = physics.createBody(bodyDef);
+		body.setUserData(carrot);
+		carrot.body = body;
+		// create rectangular shape for carrot to allow
+		// interactions (collisions) with other objects
+		float halfWidth = carrot.bounds.width / 2.0f * carrotScale;
+		float halfHeight = carrot.bounds.height / 2.0f * carrotScale;
+		polygonShape.setAsBox(halfWidth * carrotShapeScale, halfHeight * carrotShapeScale);
+		// set physics attributes
+		fixtureDef.shape = polygonShape;
+		fixtureDef.density = 50;
+		fixtureDef.restitution = 0.5f;
+		fixtureDef.friction = 0.5f;
+		body.createFixture(fixtureDef);
+		return carrot;
+	}
+
 }
\ No newline at end of file
@@ -2,16 +2,22 @@ package com.wilson.gdx.game;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
+import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Align;
 import com.badlogic.gdx.utils.Disposable;
-import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.wilson.gdx.game.effects.MonochromeEffect;
+import com.wilson.gdx.game.effects.PostProcessor;
+import com.wilson.gdx.util.BatchRecorder;
 import com.wilson.gdx.util.Constants;
 import com.wilson.gdx.util.GamePreferences;
+import com.wilson.gdx.util.MultiTextureBatch;
 
 
 public class WorldRenderer implements Disposable
@@ -30,13 +36,30 @@ public class WorldRenderer implements Disposable
 	private OrthographicCamera camera;
 	private OrthographicCamera cameraGUI;
 	private SpriteBatch batch;
+	// draws the render queues, with several textures per draw call
+	private MultiTextureBatch multiTextureBatch;
+	private boolean multiTexture = true;
+	private final Rectangle view = new Rectangle();
 	private WorldController worldController;
+	// the rocks of the level, baked once
+	private TerrainCache terrainCache;
+	// mountains and clouds
+	private BackgroundLayers backgroundLayers;
+	// the level when zoomed out far
+	private ChunkImpostors chunkImpostors;
+	// gold coins and carrots, when there is OpenGL ES 3.0
+	private InstancedRenderer instancedRenderer;
+	// the world is drawn at a lower resolution when frames take too long
+	private final DynamicResolution dynamicResolution = new DynamicResolution();
+	// the GUI is queued up first so its sprites can be sorted by texture
+	private final BatchRecorder guiQueue = new BatchRecorder();
 	private Box2DDebugRenderer b2debugRenderer;
 
 	/**
-	 * Creates a shader that turns the game grayscale.
+	 * Effects applied to the world once it is drawn, like the one that turns
+	 * the game grayscale.
 	 */
-	private ShaderProgram shaderMonochrome;
+	private final PostProcessor postProcessor = new PostProcessor();
 
 	public WorldRenderer(WorldController worldController)
 	{
@@ -54,6 +77,7 @@ public class WorldRenderer implements Disposable
 	private void init()
 	{
 		batch = new SpriteBatch();
+		multiTextureBatch = new MultiTextureBatch(1000);
 		camera = new OrthographicCamera(Constants.VIEWPORT_WIDTH, Constants.VIEWPORT_HEIGHT);
 		camera.position.set(0, 0, 0);
 		camera.update();
@@ -62,42 +86,112 @@ public class WorldRenderer implements Disposable
 		cameraGUI.setToOrtho(true); // flip y-axis
 		cameraGUI.update();
 		b2debugRenderer = new Box2DDebugRenderer();
-		shaderMonochrome = new ShaderProgram(Gdx.files.internal(Constants.shaderMonochromeVertex),
-		        Gdx.files.internal(Constants.shaderMonochromeFragment));
-		if (!shaderMonochrome.isCompiled())
+		postProcessor.add(new MonochromeEffect());
+		terrainCache = new TerrainCache(worldController.level);
+		backgroundLayers = new BackgroundLayers(worldController.level);
+		chunkImpostors = new ChunkImpostors(worldController.level, terrainCache);
+		if (InstancedRenderer.isSupported())
+			instancedRenderer = new InstancedRenderer();
+	}
+
+	/**
+	 * Draws a frame. The camera and the GUI only use what is in the snapshot,
+	 * and the level is drawn from the snapshot's render queues, already
+	 * sorted by layer and texture.
+	 * 
+	 * @param frame
+	 */
+	public void render(FrameSnapshot frame)
+	{
+		dynamicResolution.update(Gdx.graphics.getRawDeltaTime());
+		dynamicResolution.begin();
+		renderWorld(batch, frame);
+		dynamicResolution.end();
+		Texture world = dynamicResolution.getTexture();
+		if (world != null)
 		{
-			String msg = "Could not compile shader program: " + shaderMonochrome.getLog();
-			throw new GdxRuntimeException(msg);
+			if (postProcessor.isEnabled())
+				postProcessor.render(batch, world, dynamicResolution.getU2(), dynamicResolution.getV2());
+			else
+				dynamicResolution.draw(batch);
 		}
+		renderGui(batch, frame);
 	}
-
-	public void render()
+	/**
+	 * Lets the render queues be drawn with the plain SpriteBatch instead of
+	 * the MultiTextureBatch, so the two can be compared.
+	 * 
+	 * @param multiTexture
+	 */
+	void setMultiTexture(boolean multiTexture)
 	{
-		renderWorld(batch);
-		renderGui(batch);
+		this.multiTexture = multiTexture;
+	}
+	/**
+	 * The batch the render queues are drawn with.
+	 * 
+	 * @return
+	 */
+	private Batch getQueueBatch()
+	{
+		return multiTexture ? multiTextureBatch : batch;
 	}
 	/**
 	 * Initiates the world rendering and calls to the other classes to perform
 	 * their duties.
 	 * 
 	 * @param batch
+	 * @param frame
 	 */
-	private void renderWorld(SpriteBatch batch)
+	private void renderWorld(SpriteBatch batch, FrameSnapshot frame)
 	{
-		worldController.cameraHelper.applyTo(camera);
+		camera.position.set(frame.cameraX, frame.cameraY, 0);
+		camera.zoom = frame.cameraZoom;
+		camera.update();
 		batch.setProjectionMatrix(camera.combined);
-		batch.begin();
-		if (GamePreferences.instance.useMonochromeShader)
+		float width = camera.viewportWidth * camera.zoom;
+		float height = camera.viewportHeight * camera.zoom;
+		view.set(camera.position.x - width / 2, camera.position.y - height / 2, width, height);
+		backgroundLayers.renderMountains(batch, view, frame.cameraX);
+		Batch queueBatch = getQueueBatch();
+		queueBatch.setProjectionMatrix(camera.combined);
+		queueBatch.begin();
+		frame.background.replay(queueBatch);
+		queueBatch.end();
+		// far out, the rocks and items are drawn with impostors
+		boolean impostors = ChunkImpostors.isUsed(frame.cameraZoom);
+		if (impostors)
+		{
+			chunkImpostors.update(batch, frame.terrainParts);
+			batch.setProjectionMatrix(camera.combined);
+			batch.begin();
+			chunkImpostors.render(batch, frame.terrainParts);
+			batch.end();
+		} else
 		{
-			batch.setShader(shaderMonochrome);
-			shaderMonochrome.setUniformf("u_amount", 1.0f);
+			terrainCache.render(camera.combined, frame.terrainParts, frame.terrainOffsets);
 		}
-		worldController.level.render(batch);
-		batch.setShader(null);
-		batch.end();
-		if (DEBUG_DRAW_BOX2D_WORLD)
+		queueBatch.begin();
+		if (frame.instanced)
 		{
-			b2debugRenderer.render(worldController.b2world, camera.combined);
+			// the instanced gold coins and carrots go in between the layers
+			frame.foreground.replay(queueBatch, 0, Level.LAYER_ITEMS);
+			queueBatch.end();
+			instancedRenderer.render(camera.combined, frame.goldcoinInstances);
+			instancedRenderer.render(camera.combined, frame.carrotInstances);
+			queueBatch.begin();
+			frame.foreground.replay(queueBatch, Level.LAYER_PARTICLES, BatchRecorder.MAX_LAYERS - 1);
+		} else
+		{
+			frame.foreground.replay(queueBatch);
+		}
+		queueBatch.end();
+		backgroundLayers.renderClouds(batch, view, frame.cloudTime);
+		// the physics world can only be looked at while it is not simulated
+		if (DEBUG_DRAW_BOX2D_WORLD && !frame.simulatedAhead)
+		{
+			for (World world : worldController.physics.getWorlds())
+				b2debugRenderer.render(world, camera.combined);
 		}
 	}
 	/**
@@ -105,39 +199,50 @@ public class WorldRenderer implements Disposable
 	 * elements that will not move position on our screen when the character
 	 * moves.
 	 * 
+	 * The icons come from the atlas and the text from the font pages, so
+	 * everything goes into the GUI queue first and is drawn sorted by
+	 * texture.
+	 * 
 	 * @param batch
+	 * @param frame
 	 */
-	private void renderGui(SpriteBatch batch)
+	private void renderGui(SpriteBatch batch, FrameSnapshot frame)
 	{
-		batch.setProjectionMatrix(cameraGUI.combined);
-		batch.begin();
+		guiQueue.clear();
+		guiQueue.begin();
 
 		// draw collected gold coins icon + text (anchored to top left edge)
-		renderGuiScore(batch);
+		renderGuiScore(guiQueue, frame);
 		// draw collected feather icon (anchored to top left edge)
-		renderGuiFeatherPowerup(batch);
+		renderGuiFeatherPowerup(guiQueue, frame);
 		// draw extra lives icon + text (anchored to top right edge)
-		renderGuiExtraLive(batch);
+		renderGuiExtraLive(guiQueue, frame);
 		// draw FPS text (anchored to bottom right edge)
 		if (GamePreferences.instance.showFpsCounter)
-			renderGuiFpsCounter(batch);
+			renderGuiFpsCounter(guiQueue, frame);
 		// draw game over text
-		renderGuiGameOverMessage(batch);
+		renderGuiGameOverMessage(guiQueue, frame);
 
-		batch.end();
+		guiQueue.end();
+		Batch queueBatch = getQueueBatch();
+		queueBatch.setProjectionMatrix(cameraGUI.combined);
+		queueBatch.begin();
+		guiQueue.replay(queueBatch);
+		queueBatch.end();
 	}
 	/**
 	 * Adds the score to our game
 	 * 
 	 * @param batch
+	 * @param frame
 	 */
-	private void renderGuiScore(SpriteBatch batch)
+	private void renderGuiScore(Batch batch, FrameSnapshot frame)
 	{
 		float x = -15;
 		float y = -15;
 		float offsetX = 50;
 		float offsetY = 50;
-		if (worldController.scoreVisual < worldController.score)
+		if (frame.scoreVisual < frame.score)
 		{
 			long shakeAlpha = System.currentTimeMillis() % 360;
 			float shakeDist = 1.5f;
@@ -145,14 +250,14 @@ public class WorldRenderer implements Disposable
 			offsetY += MathUtils.sinDeg(shakeAlpha * 2.9f) * shakeDist;
 		}
 		batch.draw(Assets.instance.goldCoin.goldCoin, x, y, offsetX, offsetY, 100, 100, 0.35f, -0.35f, 0);
-		Assets.instance.fonts.defaultBig.draw(batch, "" + (int) worldController.scoreVisual, x + 75, y + 37);
+		Assets.instance.fonts.defaultBig.draw(batch, "" + (int) frame.scoreVisual, x + 75, y + 37);
 	}
 
-	private void renderGuiFeatherPowerup(SpriteBatch batch)
+	private void renderGuiFeatherPowerup(Batch batch, FrameSnapshot frame)
 	{
 		float x = -15;
 		float y = 30;
-		float timeLeftFeatherPowerup = worldController.level.bunnyHead.timeLeftFeatherPowerup;
+		float timeLeftFeatherPowerup = frame.timeLeftFeatherPowerup;
 		if (timeLeftFeatherPowerup > 0)
 		{
 			// Start icon fade in/out if the left power-up time
@@ -177,23 +282,24 @@ public class WorldRenderer implements Disposable
 	 * create a fading effect
 	 * 
 	 * @param batch
+	 * @param frame
 	 */
-	private void renderGuiExtraLive(SpriteBatch batch)
+	private void renderGuiExtraLive(Batch batch, FrameSnapshot frame)
 	{
 		float x = cameraGUI.viewportWidth - 50 - Constants.LIVES_START * 50;
 		float y = -15;
 		for (int i = 0; i < Constants.LIVES_START; i++)
 		{
-			if (worldController.lives <= i)
+			if (frame.lives <= i)
 				batch.setColor(0.5f, 0.5f, 0.5f, 0.5f);
 			batch.draw(Assets.instance.bunny.head, x + i * 50, y, 50, 50, 120, 100, 0.35f, -0.35f, 0);
 			batch.setColor(1, 1, 1, 1);
 		}
-		if (worldController.lives >= 0 && worldController.livesVisual > worldController.lives)
+		if (frame.lives >= 0 && frame.livesVisual > frame.lives)
 		{
-			int i = worldController.lives;
-			float alphaColor = Math.max(0, worldController.livesVisual - worldController.lives - 0.5f);
-			float alphaScale = 0.35f * (2 + worldController.lives - worldController.livesVisual) * 2;
+			int i = frame.lives;
+			float alphaColor = Math.max(0, frame.livesVisual - frame.lives - 0.5f);
+			float alphaScale = 0.35f * (2 + frame.lives - frame.livesVisual) * 2;
 			float alphaRotate = -45 * alphaColor;
 			batch.setColor(1.0f, 0.7f, 0.7f, alphaColor);
 			batch.draw(Assets.instance.bunny.head, x + i * 50, y, 50, 50, 120, 100, alphaScale, -alphaScale,
@@ -202,11 +308,13 @@ public class WorldRenderer implements Disposable
 		}
 	}
 	/**
-	 * Keeps track of our FPS
+	 * Keeps track of our FPS, of how many objects of the level were drawn and
+	 * of the resolution the world is drawn at
 	 * 
 	 * @param batch
+	 * @param frame
 	 */
-	private void renderGuiFpsCounter(SpriteBatch batch)
+	private void renderGuiFpsCounter(Batch batch, FrameSnapshot frame)
 	{
 		float x = cameraGUI.viewportWidth - 55;
 		float y = cameraGUI.viewportHeight - 15;
@@ -228,13 +336,19 @@ public class WorldRenderer implements Disposable
 
 		fpsFont.draw(batch, "FPS: " + fps, x, y);
 		fpsFont.setColor(1, 1, 1, 1); // white
+		// objects drawn out of the ones in the loaded part of the level
+		fpsFont.draw(batch, "Drawn: " + frame.objectsDrawn + "/" + frame.objectsTotal, cameraGUI.viewportWidth - 5,
+		        y - 15, 0, Align.right, false);
+		// resolution the world is drawn at
+		fpsFont.draw(batch, "Res: " + MathUtils.round(dynamicResolution.getScale() * 100) + "%",
+		        cameraGUI.viewportWidth - 5, y - 30, 0, Align.right, false);
 	}
 
-	private void renderGuiGameOverMessage(SpriteBatch batch)
+	private void renderGuiGameOverMessage(Batch batch, FrameSnapshot frame)
 	{
 		float x = cameraGUI.viewportWidth / 2;
 		float y = cameraGUI.viewportHeight / 2;
-		if (worldController.isGameOver())
+		if (frame.gameOver)
 		{
 			BitmapFont fontGameOver = Assets.instance.fonts.defaultBig;
 			fontGameOver.setColor(1, 0.75f, 0.25f, 1);
@@ -252,19 +366,30 @@ public class WorldRenderer implements Disposable
 	{
 		camera.viewportWidth = (Constants.VIEWPORT_HEIGHT / (float) height) * (float) width;
 		camera.update();
+		worldController.setViewport(camera.viewportWidth, camera.viewportHeight);
 		cameraGUI.viewportHeight = Constants.VIEWPORT_GUI_HEIGHT;
 		cameraGUI.viewportWidth = (Constants.VIEWPORT_GUI_HEIGHT / (float) height) * (float) width;
 		cameraGUI.position.set(cameraGUI.viewportWidth / 2, cameraGUI.viewportHeight / 2, 0);
 		cameraGUI.update();
+		dynamicResolution.resize(width, height);
+		postProcessor.resize(width, height);
 	}
 	/**
-	 * Destroys sprites when game is closed. Also destroys monochrome shader.
+	 * Destroys sprites when game is closed. Also destroys the post processing
+	 * effects.
 	 */
 	@Override
 	public void dispose()
 	{
 		batch.dispose();
-		shaderMonochrome.dispose();
+		multiTextureBatch.dispose();
+		postProcessor.dispose();
+		terrainCache.dispose();
+		backgroundLayers.dispose();
+		chunkImpostors.dispose();
+		if (instancedRenderer != null)
+			instancedRenderer.dispose();
+		dynamicResolution.dispose();
 	}
 
 }
\ No newline at end of file
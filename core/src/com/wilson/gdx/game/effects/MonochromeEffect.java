@@ -0,0 +1,33 @@
+package com.wilson.gdx.game.effects;
+
+import com.wilson.gdx.util.Constants;
+import com.wilson.gdx.util.GamePreferences;
+
+/**
+ * Turns the game grayscale while "Use Monochrome Shader" is checked in the
+ * options.
+ *
+ * @author Chris
+ *
+ */
+public class MonochromeEffect extends PostEffect
+{
+
+	public MonochromeEffect()
+	{
+		super(Constants.shaderMonochromeVertex, Constants.shaderMonochromeFragment, 1.0f);
+	}
+
+	@Override
+	public boolean isEnabled()
+	{
+		return GamePreferences.instance.useMonochromeShader;
+	}
+
+	@Override
+	protected void setUniforms()
+	{
+		shader.setUniformf("u_amount", 1.0f);
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.wilson.gdx.game.effects;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * One step of the PostProcessor. An effect is a shader that the picture of
+ * the world is drawn through, as one quad the size of the screen. Its
+ * vertex shader gets the usual attributes and u_projTrans of a SpriteBatch,
+ * its fragment shader the picture as u_texture.
+ *
+ * @author Chris
+ *
+ */
+public abstract class PostEffect implements Disposable
+{
+
+	protected final ShaderProgram shader;
+	private final float resolutionScale;
+
+	/**
+	 * @param vertexShader
+	 *            path of the vertex shader
+	 * @param fragmentShader
+	 *            path of the fragment shader
+	 * @param resolutionScale
+	 *            resolution the effect is drawn at, as a share of the
+	 *            screen's. Effects that blur anyway can get away with less
+	 *            than 1. The last effect is always drawn at full resolution.
+	 */
+	protected PostEffect(String vertexShader, String fragmentShader, float resolutionScale)
+	{
+		shader = new ShaderProgram(Gdx.files.internal(vertexShader), Gdx.files.internal(fragmentShader));
+		if (!shader.isCompiled())
+			throw new GdxRuntimeException("Could not compile shader program: " + shader.getLog());
+		this.resolutionScale = resolutionScale;
+	}
+
+	/**
+	 * Effects that are not enabled are left out. When none is, the
+	 * PostProcessor is skipped altogether.
+	 *
+	 * @return
+	 */
+	public abstract boolean isEnabled();
+
+	/**
+	 * Sets the uniforms of the shader. Called while it is bound.
+	 */
+	protected void setUniforms()
+	{
+	}
+
+	public ShaderProgram getShader()
+	{
+		return shader;
+	}
+
+	public float getResolutionScale()
+	{
+		return resolutionScale;
+	}
+
+	@Override
+	public void dispose()
+	{
+		shader.dispose();
+	}
+
+}
@@ -0,0 +1,180 @@
+package com.wilson.gdx.game.effects;
+
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Runs the picture of the world through a list of PostEffects, in the order
+ * they were added. Each effect draws the result of the one before it into
+ * the other of two frame buffers, and the last one draws straight onto the
+ * screen, so one effect needs no frame buffer of its own at all.
+ *
+ * Like DynamicResolution, the frame buffers are the size of the screen and
+ * effects with a lower resolution only use a part of them.
+ *
+ * @author Chris
+ *
+ */
+public class PostProcessor implements Disposable
+{
+
+	private final Array<PostEffect> effects = new Array<PostEffect>();
+	private final Array<PostEffect> enabled = new Array<PostEffect>();
+	// the two frame buffers, made when an effect first needs them
+	private final FrameBuffer[] buffers = new FrameBuffer[2];
+	private int width;
+	private int height;
+
+	private final Matrix4 projection = new Matrix4();
+	private final IntBuffer binding = BufferUtils.newIntBuffer(16);
+
+	/**
+	 * Adds an effect after the ones added so far. It is disposed along with
+	 * the PostProcessor.
+	 *
+	 * @param effect
+	 */
+	public void add(PostEffect effect)
+	{
+		effects.add(effect);
+	}
+
+	/**
+	 * Sets the size of the screen.
+	 *
+	 * @param width
+	 * @param height
+	 */
+	public void resize(int width, int height)
+	{
+		if (width == this.width && height == this.height)
+			return;
+		this.width = width;
+		this.height = height;
+		disposeBuffers();
+		projection.setToOrtho2D(0, 0, width, height);
+	}
+
+	/**
+	 * Tells whether any effect is enabled. If not, render() has nothing to do
+	 * and the picture can be drawn to the screen as it is.
+	 *
+	 * @return
+	 */
+	public boolean isEnabled()
+	{
+		for (PostEffect effect : effects)
+		{
+			if (effect.isEnabled())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Draws the picture through all enabled effects onto the frame buffer
+	 * that is bound now, usually the screen.
+	 *
+	 * @param batch
+	 *            must not be drawing; its projection matrix is changed
+	 * @param source
+	 *            the picture, upside down like all frame buffer textures
+	 * @param u2
+	 *            how much of the width of the texture the picture takes up
+	 * @param v2
+	 *            how much of the height of the texture the picture takes up
+	 */
+	public void render(SpriteBatch batch, Texture source, float u2, float v2)
+	{
+		enabled.clear();
+		for (PostEffect effect : effects)
+		{
+			if (effect.isEnabled())
+				enabled.add(effect);
+		}
+		if (enabled.size == 0)
+			return;
+
+		binding.clear();
+		Gdx.gl.glGetIntegerv(GL20.GL_FRAMEBUFFER_BINDING, binding);
+		int previous = binding.get(0);
+		batch.setProjectionMatrix(projection);
+		batch.disableBlending();
+		Texture input = source;
+		int target = 0;
+		for (int i = 0; i < enabled.size; i++)
+		{
+			PostEffect effect = enabled.get(i);
+			boolean last = i == enabled.size - 1;
+			int targetWidth = width;
+			int targetHeight = height;
+			if (last)
+			{
+				Gdx.gl.glBindFramebuffer(GL20.GL_FRAMEBUFFER, previous);
+			} else
+			{
+				targetWidth = Math.max(MathUtils.round(width * effect.getResolutionScale()), 1);
+				targetHeight = Math.max(MathUtils.round(height * effect.getResolutionScale()), 1);
+				getBuffer(target).bind();
+			}
+			Gdx.gl.glViewport(0, 0, targetWidth, targetHeight);
+			batch.setShader(effect.getShader());
+			batch.begin();
+			effect.setUniforms();
+			// the projection covers the whole screen, the viewport shrinks it
+			// down to the part of the frame buffer that is used
+			batch.draw(input, 0, 0, width, height, 0, 0, u2, v2);
+			batch.end();
+			if (!last)
+			{
+				input = buffers[target].getColorBufferTexture();
+				u2 = (float)targetWidth / width;
+				v2 = (float)targetHeight / height;
+				target = 1 - target;
+			}
+		}
+		batch.setShader(null);
+		batch.enableBlending();
+	}
+
+	private FrameBuffer getBuffer(int index)
+	{
+		if (buffers[index] == null)
+		{
+			buffers[index] = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+			buffers[index].getColorBufferTexture().setFilter(Texture.TextureFilter.Linear,
+			        Texture.TextureFilter.Linear);
+		}
+		return buffers[index];
+	}
+
+	private void disposeBuffers()
+	{
+		for (int i = 0; i < buffers.length; i++)
+		{
+			if (buffers[i] != null)
+				buffers[i].dispose();
+			buffers[i] = null;
+		}
+	}
+
+	@Override
+	public void dispose()
+	{
+		disposeBuffers();
+		for (PostEffect effect : effects)
+			effect.dispose();
+	}
+
+}
@@ -1,7 +1,7 @@
 package com.wilson.gdx.game.objects;
 
 import com.badlogic.gdx.graphics.g2d.Animation;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
@@ -29,11 +29,26 @@ public abstract class AbstractGameObject
 	public Vector2 friction;
 	public Vector2 acceleration;
 	public Rectangle bounds;
+
+	/**
+	 * The simulation runs in fixed steps that don't line up with the frames.
+	 * We remember where an object was after the previous step, and draw it
+	 * somewhere between that and where it is now, depending on how far into
+	 * the next step the frame is.
+	 */
+	public Vector2 previousPosition;
+	public float previousRotation;
+	public Vector2 renderPosition;
+	public float renderRotation;
 	
 	/**
 	 * Body allows objects to use Box2D physics
 	 */
 	public Body body;
+	// the body moved while the object was not synced with it
+	public boolean bodyMoved;
+	// the object is too far from the camera to be updated or simulated
+	public boolean asleep;
 	
 	public float stateTime;
 	public Animation animation;
@@ -52,6 +67,8 @@ public abstract class AbstractGameObject
 		friction = new Vector2();
 		acceleration = new Vector2();
 		bounds = new Rectangle();
+		previousPosition = new Vector2();
+		renderPosition = new Vector2();
 	}
 	/**
 	 * These classes exist so that World Controller can call on it (as it really
@@ -64,19 +81,25 @@ public abstract class AbstractGameObject
 	public void update(float deltaTime)
 	{
 		stateTime += deltaTime;
-		if (body == null)
-		{
-			updateMotionX(deltaTime);
-			updateMotionY(deltaTime);
+		updateMotionX(deltaTime);
+		updateMotionY(deltaTime);
 
-			// Move to new position
-			position.x += velocity.x * deltaTime;
-			position.y += velocity.y * deltaTime;
-		} else
-		{
-			position.set(body.getPosition());
-			rotation = body.getAngle() * MathUtils.radiansToDegrees;
-		}
+		// Move to new position. Objects that are moved by a dynamic body
+		// have no velocity of their own, so this leaves them alone.
+		position.x += velocity.x * deltaTime;
+		position.y += velocity.y * deltaTime;
+	}
+
+	/**
+	 * Takes over the position and angle of the body. Objects with a body are
+	 * moved by Box2D, so this is called after the physics step (see
+	 * WorldController.syncBodies()) instead of in update().
+	 */
+	public void syncWithBody()
+	{
+		position.set(body.getPosition());
+		rotation = body.getAngle() * MathUtils.radiansToDegrees;
+		bodyMoved = false;
 	}
 
 	protected void updateMotionX(float deltaTime)
@@ -119,12 +142,39 @@ public abstract class AbstractGameObject
 		velocity.y = MathUtils.clamp(velocity.y, -terminalVelocity.y, terminalVelocity.y);
 	}
 
+	/**
+	 * Remembers the current state as the state of the previous simulation
+	 * step. Called before every step, and whenever an object is put somewhere
+	 * without moving there (spawning, resetting) so it does not get drawn
+	 * sliding in from where it was.
+	 */
+	public void savePreviousState()
+	{
+		previousPosition.set(position);
+		previousRotation = rotation;
+		renderPosition.set(position);
+		renderRotation = rotation;
+	}
+
+	/**
+	 * Computes the state to draw the object in.
+	 * 
+	 * @param alpha
+	 *            how far the frame is between the previous and the current
+	 *            simulation step, from 0 to 1
+	 */
+	public void interpolate(float alpha)
+	{
+		renderPosition.set(previousPosition).lerp(position, alpha);
+		renderRotation = previousRotation + (rotation - previousRotation) * alpha;
+	}
+
 	public void setAnimation(Animation animation)
 	{
 		this.animation = animation;
 		stateTime = 0;
 	}
 
-	public abstract void render(SpriteBatch batch);
+	public abstract void render(Batch batch);
 
 }
\ No newline at end of file
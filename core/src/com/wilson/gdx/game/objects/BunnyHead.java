@@ -2,8 +2,8 @@ package com.wilson.gdx.game.objects;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.ParticleEffect;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.MathUtils;
 import com.wilson.gdx.game.Assets;
@@ -48,6 +48,10 @@ public class BunnyHead extends AbstractGameObject
 
 	public BunnyHead()
 	{
+		// Particles are only loaded once, init() may be called again on
+		// every restart of the level.
+		dustParticles.load(Gdx.files.internal("../core/assets/particles/dust.pfx"),
+		        Gdx.files.internal("../core/assets/particles"));
 		init();
 	}
 	/**
@@ -59,7 +63,8 @@ public class BunnyHead extends AbstractGameObject
 	 * the right, and that we have no feather powerup.
 	 * 
 	 * Uses dust particles file to generate dust as the bunny moves around the
-	 * screen on the ground.
+	 * screen on the ground. The particle file itself is loaded by the
+	 * constructor, so calling init() again only resets the bunny's state.
 	 */
 	public void init()
 	{
@@ -93,9 +98,11 @@ public class BunnyHead extends AbstractGameObject
 		hasFeatherPowerup = false;
 		timeLeftFeatherPowerup = 0;
 
+		// Motion
+		velocity.set(0, 0);
+
 		// Particles
-		dustParticles.load(Gdx.files.internal("../core/assets/particles/dust.pfx"),
-		        Gdx.files.internal("../core/assets/particles"));
+		dustParticles.allowCompletion();
 	}
 	/**
 	 * Updates the screen as you move, the feather timer counts down, etc.
@@ -203,13 +210,10 @@ public class BunnyHead extends AbstractGameObject
 	 * Otherwise just draws the head from the region of the atlas.
 	 */
 	@Override
-	public void render(SpriteBatch batch)
+	public void render(Batch batch)
 	{
 		TextureRegion reg = null;
 
-		// Draw Particles
-		dustParticles.draw(batch);
-
 		// Apply Skin Color
 		batch.setColor(CharacterSkin.values()[GamePreferences.instance.charSkin].getColor());
 
@@ -224,13 +228,25 @@ public class BunnyHead extends AbstractGameObject
 		// Draw image
 		reg = animation.getKeyFrame(stateTime, true);
 
-		batch.draw(reg.getTexture(), position.x, position.y, origin.x, origin.y, dimension.x + dimCorrectionX,
-		        dimension.y + dimCorrectionY, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(),
+		batch.draw(reg.getTexture(), renderPosition.x, renderPosition.y, origin.x, origin.y, dimension.x + dimCorrectionX,
+		        dimension.y + dimCorrectionY, scale.x, scale.y, renderRotation, reg.getRegionX(), reg.getRegionY(),
 		        reg.getRegionWidth(), reg.getRegionHeight(), viewDirection == VIEW_DIRECTION.LEFT, false);
 
 		// Reset color to white
 		batch.setColor(1, 1, 1, 1);
 	}
+
+	/**
+	 * Draws the dust particles. They have a texture of their own, so the
+	 * level draws them in a layer of their own behind the bunny instead of
+	 * in the middle of render().
+	 * 
+	 * @param batch
+	 */
+	public void renderParticles(Batch batch)
+	{
+		dustParticles.draw(batch);
+	}
 	/**
 	 * Sets the duration of the feather powerup.
 	 * 
@@ -295,4 +311,4 @@ public class BunnyHead extends AbstractGameObject
 		}
 	}
 
-}
\ No newline at end of file
+}
@@ -1,13 +1,16 @@
 package com.wilson.gdx.game.objects;
 
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.wilson.gdx.game.Assets;
+import com.wilson.gdx.util.SpriteInstances;
 
 public class Carrot extends AbstractGameObject
 {
 
 	private TextureRegion regCarrot;
+	// the one frame of a carrot, for drawing it instanced
+	private TextureRegion[] frames;
 
 	public Carrot()
 	{
@@ -19,20 +22,33 @@ public class Carrot extends AbstractGameObject
 		dimension.set(0.25f, 0.5f);
 
 		regCarrot = Assets.instance.levelDecoration.carrot;
+		frames = new TextureRegion[] { regCarrot };
 
 		// Set bounding box for collision detection
 		bounds.set(0, 0, dimension.x, dimension.y);
 		origin.set(dimension.x / 2, dimension.y / 2);
 	}
 
-	public void render(SpriteBatch batch)
+	public void render(Batch batch)
 	{
 		TextureRegion reg = null;
 
 		reg = regCarrot;
-		batch.draw(reg.getTexture(), position.x - origin.x, position.y - origin.y, origin.x, origin.y, dimension.x,
-		        dimension.y, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
+		batch.draw(reg.getTexture(), renderPosition.x - origin.x, renderPosition.y - origin.y, origin.x, origin.y, dimension.x,
+		        dimension.y, scale.x, scale.y, renderRotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
 		        reg.getRegionHeight(), false, false);
 	}
 
+	/**
+	 * Adds the carrot to the carrots that are drawn instanced.
+	 * 
+	 * @param instances
+	 */
+	public void render(SpriteInstances instances)
+	{
+		if (instances.isEmpty())
+			instances.setSprite(frames, dimension.x, dimension.y, origin.x, origin.y);
+		instances.add(renderPosition.x - origin.x, renderPosition.y - origin.y, renderRotation, scale.x, scale.y, 0);
+	}
+
 }
\ No newline at end of file
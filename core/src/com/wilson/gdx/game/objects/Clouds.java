@@ -1,9 +1,7 @@
 package com.wilson.gdx.game.objects;
 
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
 import com.wilson.gdx.game.Assets;
 
@@ -12,49 +10,36 @@ public class Clouds extends AbstractGameObject
 
 	/**
 	 * Defines clouds for us.
+	 * 
+	 * Clouds are not game objects of their own any more. Where a cloud is,
+	 * which image it uses and how fast it drifts to the left is worked out
+	 * by the cloud shader from nothing but the time, see BackgroundLayers.
+	 * All this class does is keep the clock and the numbers the shader needs.
+	 * 
+	 * The sky is cut into cells of CELL_WIDTH meters with one cloud in each.
+	 * There are two rows of cells that drift at different speeds, so the
+	 * clouds still pass each other like they used to.
 	 */
-	private float length;
+	public static final float CELL_WIDTH = 10.0f;
+	public static final float SPEED_FAR = 0.6f;
+	public static final float SPEED_NEAR = 1.0f;
+	// height of the bottom of a cloud, moved up or down randomly by up to
+	// HEIGHT_VARIATION
+	public static final float BASE_HEIGHT = 1.75f;
+	public static final float HEIGHT_VARIATION = 0.2f;
 
 	private Array<TextureRegion> regClouds;
-	private Array<Cloud> clouds;
-
-	private class Cloud extends AbstractGameObject
-	{
-		private TextureRegion regCloud;
-
-		public Cloud()
-		{
-		}
-
-		public void setRegion(TextureRegion region)
-		{
-			regCloud = region;
-		}
 
-		/**
-		 * Like the other objects, batch.draw defines the placement of the cloud
-		 * in the game.
-		 */
-		@Override
-		public void render(SpriteBatch batch)
-		{
-			TextureRegion reg = regCloud;
-			batch.draw(reg.getTexture(), position.x + origin.x, position.y + origin.y, origin.x, origin.y, dimension.x,
-			        dimension.y, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
-			        reg.getRegionHeight(), false, false);
-		}
-	}
+	// time the clouds have been drifting for
+	private float time;
+	private float previousTime;
+	public float renderTime;
 
-	public Clouds(float length)
+	public Clouds()
 	{
-		this.length = length;
 		init();
 	}
 
-	/**
-	 * This method is to ensure there is a cloud every 5 meters of the game. To
-	 * actually spawn the cloud however, it calls to the spawnCloud() method.
-	 */
 	private void init()
 	{
 		dimension.set(3.0f, 1.5f);
@@ -63,71 +48,44 @@ public class Clouds extends AbstractGameObject
 		regClouds.add(Assets.instance.levelDecoration.cloud01);
 		regClouds.add(Assets.instance.levelDecoration.cloud02);
 		regClouds.add(Assets.instance.levelDecoration.cloud03);
-
-		int distFac = 5;
-		int numClouds = (int) (length / distFac);
-		clouds = new Array<Cloud>(2 * numClouds);
-		for (int i = 0; i < numClouds; i++)
-		{
-			Cloud cloud = spawnCloud();
-			cloud.position.x = i * distFac;
-			clouds.add(cloud);
-		}
 	}
 
 	/**
-	 * This adds the cloud to the scene and randomly shifts it up or down. The
-	 * new cloud is then saved to the list and returned to the calling method.
+	 * The cloud images a cloud picks from.
 	 * 
 	 * @return
 	 */
-	private Cloud spawnCloud()
+	public Array<TextureRegion> getRegions()
 	{
-		Cloud cloud = new Cloud();
-		cloud.dimension.set(dimension);
-		// select random cloud image
-		cloud.setRegion(regClouds.random());
-		// position
-		Vector2 pos = new Vector2();
-		pos.x = length + 10; // position after end of level
-		pos.y += 1.75; // base position
-		// random additional position
-		pos.y += MathUtils.random(0.0f, 0.2f) * (MathUtils.randomBoolean() ? 1 : -1);
-		cloud.position.set(pos);
-		/**
-		 * This section creates different clouds that utilize different movement.
-		 * Iterates through all clouds and if the cloud is moved off screen,
-		 * it is removed and a new one is added to the right of the level.
-		 */
-		// speed
-		Vector2 speed = new Vector2();
-		speed.x += 0.5f; // base speed
-		// random additional speed
-		speed.x += MathUtils.random(0.0f, 0.75f);
-		cloud.terminalVelocity.set(speed);
-		speed.x *= -1; // move left
-		cloud.velocity.set(speed);
-		return cloud;
+		return regClouds;
 	}
-	
+
 	@Override
-	public void update (float deltaTime) {
-		for (int i = clouds.size - 1; i >= 0; i--) {
-			Cloud cloud = clouds.get(i);
-			cloud.update(deltaTime);
-			if (cloud.position.x < -10) {
-				// cloud moved outside of world.
-				// destroy and spawn new cloud at end of level.
-				clouds.removeIndex(i);
-				clouds.add(spawnCloud());
-			}
-		}
+	public void update(float deltaTime)
+	{
+		time += deltaTime;
 	}
 
 	@Override
-	public void render (SpriteBatch batch) {
-		for (Cloud cloud : clouds)
-			cloud.render(batch);
+	public void savePreviousState()
+	{
+		super.savePreviousState();
+		previousTime = time;
+		renderTime = time;
+	}
+
+	@Override
+	public void interpolate(float alpha)
+	{
+		renderTime = previousTime + (time - previousTime) * alpha;
+	}
+
+	/**
+	 * Clouds are drawn by BackgroundLayers, see above.
+	 */
+	@Override
+	public void render(Batch batch)
+	{
 	}
 
-}
\ No newline at end of file
+}
@@ -1,6 +1,6 @@
 package com.wilson.gdx.game.objects;
 
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.wilson.gdx.game.Assets;
 
@@ -28,7 +28,7 @@ public class Feather extends AbstractGameObject
 		collected = false;
 	}
 
-	public void render(SpriteBatch batch)
+	public void render(Batch batch)
 	{
 		if (collected)
 			return;
@@ -36,8 +36,8 @@ public class Feather extends AbstractGameObject
 		TextureRegion reg = null;
 
 		reg = regFeather;
-		batch.draw(reg.getTexture(), position.x, position.y, origin.x, origin.y, dimension.x, dimension.y, scale.x,
-		        scale.y, rotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(), reg.getRegionHeight(),
+		batch.draw(reg.getTexture(), renderPosition.x, renderPosition.y, origin.x, origin.y, dimension.x, dimension.y, scale.x,
+		        scale.y, renderRotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(), reg.getRegionHeight(),
 		        false, false);
 	}
 
@@ -1,6 +1,6 @@
 package com.wilson.gdx.game.objects;
 
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.wilson.gdx.game.Assets;
 
@@ -24,13 +24,13 @@ public class Goal extends AbstractGameObject
 		origin.set(dimension.x / 2.0f, 0.0f);
 	}
 
-	public void render(SpriteBatch batch)
+	public void render(Batch batch)
 	{
 		TextureRegion reg = null;
 
 		reg = regGoal;
-		batch.draw(reg.getTexture(), position.x - origin.x, position.y - origin.y, origin.x, origin.y, dimension.x,
-		        dimension.y, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
+		batch.draw(reg.getTexture(), renderPosition.x - origin.x, renderPosition.y - origin.y, origin.x, origin.y, dimension.x,
+		        dimension.y, scale.x, scale.y, renderRotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
 		        reg.getRegionHeight(), false, false);
 	}
 
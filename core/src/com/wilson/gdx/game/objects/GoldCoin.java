@@ -1,9 +1,10 @@
 package com.wilson.gdx.game.objects;
 
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.MathUtils;
 import com.wilson.gdx.game.Assets;
+import com.wilson.gdx.util.SpriteInstances;
 
 public class GoldCoin extends AbstractGameObject
 {
@@ -32,7 +33,7 @@ public class GoldCoin extends AbstractGameObject
 	/**
 	 * Creates a coin image using TextureAtlas dimensions.
 	 */
-	public void render(SpriteBatch batch)
+	public void render(Batch batch)
 	{
 		if (collected)
 			return;
@@ -40,10 +41,26 @@ public class GoldCoin extends AbstractGameObject
 		TextureRegion reg = null;
 
 		reg = animation.getKeyFrame(stateTime, true);
-		batch.draw(reg.getTexture(), position.x, position.y, origin.x, origin.y, dimension.x, dimension.y, scale.x,
-		        scale.y, rotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(), reg.getRegionHeight(),
+		batch.draw(reg.getTexture(), renderPosition.x, renderPosition.y, origin.x, origin.y, dimension.x, dimension.y, scale.x,
+		        scale.y, renderRotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(), reg.getRegionHeight(),
 		        false, false);
 	}
+	/**
+	 * Adds the coin to the coins that are drawn instanced, with the frame of
+	 * its animation it is at.
+	 * 
+	 * @param instances
+	 */
+	public void render(SpriteInstances instances)
+	{
+		if (collected)
+			return;
+
+		if (instances.isEmpty())
+			instances.setSprite(animation.getKeyFrames(), dimension.x, dimension.y, origin.x, origin.y);
+		instances.add(renderPosition.x, renderPosition.y, renderRotation, scale.x, scale.y,
+		        animation.getKeyFrameIndex(stateTime));
+	}
 	/**
 	 * Increases the score for each coin collected.
 	 * 
@@ -1,10 +1,8 @@
 package com.wilson.gdx.game.objects;
 
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.math.MathUtils;
 import com.wilson.gdx.game.Assets;
-import com.badlogic.gdx.math.Vector2;
 
 public class Mountains extends AbstractGameObject
 {
@@ -12,21 +10,33 @@ public class Mountains extends AbstractGameObject
 	/**
 	 * This class works similarly to rock. Mountains have two parts with
 	 * seamless blending to allow for an infinite loop in our background.
+	 * 
+	 * There are three layers of mountains. Each layer is shifted by a part of
+	 * a mountain, has its own tint and scrolls at its own speed, which gives
+	 * the parallax effect. The float parallaxSpeedX ranges between 0 and 1
+	 * and describes the distance of a layer: the position of a layer is the
+	 * camera position multiplied with it.
+	 * 
+	 * Mountains are not drawn with a batch. BackgroundLayers draws all three
+	 * layers at once with one quad the size of the screen and a shader that
+	 * repeats the two parts, so drawing them costs the same however long the
+	 * level is.
 	 */
 	private TextureRegion regMountainLeft;
 	private TextureRegion regMountainRight;
 
-	private int length;
+	public static final int LAYERS = 3;
+	// the layers from back to front: distant mountains (dark gray), distant
+	// mountains (gray), distant mountains (light gray)
+	private static final float[] LAYER_OFFSET_X = { 0.5f, 0.25f, 0.0f };
+	private static final float[] LAYER_OFFSET_Y = { 0.5f, 0.25f, 0.0f };
+	private static final float[] LAYER_TINT = { 0.5f, 0.7f, 0.9f };
+	private static final float[] LAYER_PARALLAX_SPEED_X = { 0.8f, 0.5f, 0.3f };
 
-	public Mountains(int length)
+	public Mountains()
 	{
-		this.length = length;
 		init();
 	}
-	
-	public void updateScrollPosition (Vector2 camPosition) {
-		position.set(camPosition.x, position.y);
-	}
 
 	private void init()
 	{
@@ -35,67 +45,56 @@ public class Mountains extends AbstractGameObject
 		regMountainLeft = Assets.instance.levelDecoration.mountainLeft;
 		regMountainRight = Assets.instance.levelDecoration.mountainRight;
 
-		// shift mountain and extend length
+		// shift mountain
 		origin.x = -dimension.x * 2;
-		length += dimension.x * 2;
 	}
-	
+
+	/**
+	 * Where the tiles of a layer line up when the camera is at cameraX. A left
+	 * part of a mountain starts here and every 2 * dimension.x meters from
+	 * here.
+	 * 
+	 * @param layer
+	 * @param cameraX
+	 * @return
+	 */
+	public float getLayerX(int layer, float cameraX)
+	{
+		return origin.x + dimension.x * LAYER_OFFSET_X[layer] + cameraX * LAYER_PARALLAX_SPEED_X[layer];
+	}
+
 	/**
-	 * This creates the two sides of the mountain background graphics
-	 * and draws them across the entire level.
+	 * Bottom of the mountains of a layer.
 	 * 
-	 * Also includes the parallax effect. the float parallazSpeedx variable
-	 * ranges between 0 and 1 and describes the distance and its scrolling
-	 * speed. The scrolling depends on camera position, which is then
-	 * multiplied with the distance factor. New method to accomodate
-	 * this is added called updateScrollPosition()
-	 * @param batch
-	 * @param offsetX
-	 * @param offsetY
-	 * @param tintColor
-	 * @param parallaxSpeedX
+	 * @param layer
+	 * @return
 	 */
+	public float getLayerY(int layer)
+	{
+		return origin.y + dimension.y * LAYER_OFFSET_Y[layer] + position.y;
+	}
 
-	private void drawMountain (SpriteBatch batch, float offsetX, float offsetY, float tintColor, float parallaxSpeedX) {
-		TextureRegion reg = null;
-		batch.setColor(tintColor, tintColor, tintColor, 1);
-		float xRel = dimension.x * offsetX;
-		float yRel = dimension.y * offsetY;
+	public float getLayerTint(int layer)
+	{
+		return LAYER_TINT[layer];
+	}
 
-		// mountains span the whole level
-		int mountainLength = 0;
-		mountainLength += MathUtils.ceil(length / (2 * dimension.x) * (1 - parallaxSpeedX));
-		mountainLength += MathUtils.ceil(0.5f + offsetX);
-		for (int i = 0; i < mountainLength; i++) {
-			// mountain left
-			reg = regMountainLeft;
-			batch.draw(reg.getTexture(), origin.x + xRel + position.x * parallaxSpeedX, origin.y + yRel + position.y, origin.x,
-				origin.y, dimension.x, dimension.y, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(),
-				reg.getRegionWidth(), reg.getRegionHeight(), false, false);
-			xRel += dimension.x;
-			// mountain right
-			reg = regMountainRight;
-			batch.draw(reg.getTexture(), origin.x + xRel + position.x * parallaxSpeedX, origin.y + yRel + position.y, origin.x,
-				origin.y, dimension.x, dimension.y, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(),
-				reg.getRegionWidth(), reg.getRegionHeight(), false, false);
-			xRel += dimension.x;
-		}
-		// reset color to white
-		batch.setColor(1, 1, 1, 1);
+	public TextureRegion getRegionLeft()
+	{
+		return regMountainLeft;
+	}
+
+	public TextureRegion getRegionRight()
+	{
+		return regMountainRight;
 	}
 
 	/**
-	 * All three rendered mountains now move at different speeds.
+	 * Mountains are drawn by BackgroundLayers, see above.
 	 */
 	@Override
-	public void render(SpriteBatch batch)
+	public void render(Batch batch)
 	{
-		// distant mountains (dark gray)
-		drawMountain(batch, 0.5f, 0.5f, 0.5f, 0.8f);
-		// distant mountains (gray)
-		drawMountain(batch, 0.25f, 0.25f, 0.7f, 0.5f);
-		// distant mountains (light gray)
-		drawMountain(batch, 0.0f, 0.0f, 0.9f, 0.3f);
 	}
 
-}
\ No newline at end of file
+}
@@ -1,10 +1,8 @@
 package com.wilson.gdx.game.objects;
 
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.wilson.gdx.game.Assets;
-import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.math.Vector2;
 
 /**
  * The Rock Object is divided up in to three parts using two different images in
@@ -30,15 +28,20 @@ public class Rock extends AbstractGameObject
 	private int length;
 
 	/**
-	 * Makes floating mechanism of rocks correctly initialized. Cycle time is
-	 * randomly picked between 0 and half a maximum float cycle time. This
-	 * allows rocks to be in different positions when they initialize.
+	 * Floating rocks sink for one cycle and rise back up for the next. Their
+	 * speed starts at the amplitude and is damped by 2% every 60th of a
+	 * second, which is what FLOAT_DAMPING is per second.
 	 */
-	private final float FLOAT_CYCLE_TIME = 2.0f;
-	private final float FLOAT_AMPLITUDE = 0.25f;
-	private float floatCycleTimeLeft;
-	private boolean floatingDownwards;
-	private Vector2 floatTargetPosition;
+	public static final float FLOAT_CYCLE_TIME = 2.0f;
+	private static final float FLOAT_AMPLITUDE = 0.25f;
+	private static final float FLOAT_DAMPING = (float)-Math.log(0.98) * 60;
+	// rocks that don't float stay where they are and have no body of their
+	// own, see Level.findFloatingRocks()
+	public boolean floating = true;
+	// current vertical speed of a floating rock, for its body
+	public float floatVelocity;
+	// the body was moved along with the rock in the last physics step
+	public boolean bodySynced;
 
 	public Rock()
 	{
@@ -54,10 +57,50 @@ public class Rock extends AbstractGameObject
 
 		// Start length of this rock
 		setLength(1);
+	}
+
+	/**
+	 * Tells how far a floating rock is below its resting height. The motion
+	 * only depends on how long the rock has been floating, so it can be
+	 * worked out for any rock at any time without simulating it.
+	 * 
+	 * @param time
+	 *            time since the rock started floating, negative before that
+	 * @return the offset, between 0 and minus the distance of one cycle
+	 */
+	public static float floatOffset(float time)
+	{
+		if (time <= 0)
+			return 0;
+		float phase = time % (2 * FLOAT_CYCLE_TIME);
+		if (phase < FLOAT_CYCLE_TIME)
+			return -floatDistance(phase);
+		return floatDistance(phase - FLOAT_CYCLE_TIME) - floatDistance(FLOAT_CYCLE_TIME);
+	}
 
-		floatingDownwards = false;
-		floatCycleTimeLeft = MathUtils.random(0, FLOAT_CYCLE_TIME / 2);
-		floatTargetPosition = null;
+	/**
+	 * Tells how fast a floating rock moves up (or down, if negative).
+	 * 
+	 * @param time
+	 *            time since the rock started floating, negative before that
+	 * @return
+	 */
+	public static float floatVelocity(float time)
+	{
+		if (time <= 0)
+			return 0;
+		float phase = time % (2 * FLOAT_CYCLE_TIME);
+		if (phase < FLOAT_CYCLE_TIME)
+			return -FLOAT_AMPLITUDE * (float)Math.exp(-FLOAT_DAMPING * phase);
+		return FLOAT_AMPLITUDE * (float)Math.exp(-FLOAT_DAMPING * (phase - FLOAT_CYCLE_TIME));
+	}
+
+	/**
+	 * Distance covered in the given time of a cycle.
+	 */
+	private static float floatDistance(float time)
+	{
+		return FLOAT_AMPLITUDE * (1 - (float)Math.exp(-FLOAT_DAMPING * time)) / FLOAT_DAMPING;
 	}
 
 	/**
@@ -88,7 +131,7 @@ public class Rock extends AbstractGameObject
 	 * method and override it.
 	 */
 	@Override
-	public void render(SpriteBatch batch)
+	public void render(Batch batch)
 	{
 		TextureRegion reg = null;
 
@@ -110,8 +153,8 @@ public class Rock extends AbstractGameObject
 		// Draw left edge
 		reg = regEdge;
 		relX -= dimension.x / 4;
-		batch.draw(reg.getTexture(), position.x + relX, position.y + relY, origin.x, origin.y, dimension.x / 4,
-		        dimension.y, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
+		batch.draw(reg.getTexture(), renderPosition.x + relX, renderPosition.y + relY, origin.x, origin.y, dimension.x / 4,
+		        dimension.y, scale.x, scale.y, renderRotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
 		        reg.getRegionHeight(), false, false);
 
 		// Draw middle
@@ -119,35 +162,26 @@ public class Rock extends AbstractGameObject
 		reg = regMiddle;
 		for (int i = 0; i < length; i++)
 		{
-			batch.draw(reg.getTexture(), position.x + relX, position.y + relY, origin.x, origin.y, dimension.x,
-			        dimension.y, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
+			batch.draw(reg.getTexture(), renderPosition.x + relX, renderPosition.y + relY, origin.x, origin.y, dimension.x,
+			        dimension.y, scale.x, scale.y, renderRotation, reg.getRegionX(), reg.getRegionY(), reg.getRegionWidth(),
 			        reg.getRegionHeight(), false, false);
 			relX += dimension.x;
 		}
 
 		// Draw right edge
 		reg = regEdge;
-		batch.draw(reg.getTexture(), position.x + relX, position.y + relY, origin.x + dimension.x / 8, origin.y,
-		        dimension.x / 4, dimension.y, scale.x, scale.y, rotation, reg.getRegionX(), reg.getRegionY(),
+		batch.draw(reg.getTexture(), renderPosition.x + relX, renderPosition.y + relY, origin.x + dimension.x / 8, origin.y,
+		        dimension.x / 4, dimension.y, scale.x, scale.y, renderRotation, reg.getRegionX(), reg.getRegionY(),
 		        reg.getRegionWidth(), reg.getRegionHeight(), true, false);
 	}
 
+	/**
+	 * Rocks are not updated one by one. The level moves all floating rocks
+	 * at once, see Level.update().
+	 */
 	@Override
 	public void update(float deltaTime)
 	{
-		super.update(deltaTime);
-
-		floatCycleTimeLeft -= deltaTime;
-		if (floatCycleTimeLeft <= 0)
-		{
-			floatCycleTimeLeft = FLOAT_CYCLE_TIME;
-			floatingDownwards = !floatingDownwards;
-			body.setLinearVelocity(0, FLOAT_AMPLITUDE * (floatingDownwards ? -1 : 1));
-		} else
-		{
-			body.setLinearVelocity(body.getLinearVelocity().scl(0.98f));
-
-		}
 	}
 
-}
\ No newline at end of file
+}
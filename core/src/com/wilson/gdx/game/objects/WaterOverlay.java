@@ -1,6 +1,6 @@
 package com.wilson.gdx.game.objects;
 
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.wilson.gdx.game.Assets;
 
@@ -11,6 +11,9 @@ public class WaterOverlay extends AbstractGameObject
 	 * Water sits in front of all other rendered images and does
 	 * not move with the camera. Tiles across infinitely
 	 * throughout the level.
+	 * 
+	 * The image is stretched across the whole level, but only the part that
+	 * can be seen is drawn, see render(batch, minX, maxX).
 	 */
 	private TextureRegion regWaterOverlay;
 	private float length;
@@ -31,7 +34,7 @@ public class WaterOverlay extends AbstractGameObject
 	}
 
 	@Override
-	public void render(SpriteBatch batch)
+	public void render(Batch batch)
 	{
 		TextureRegion reg = null;
 		reg = regWaterOverlay;
@@ -40,4 +43,27 @@ public class WaterOverlay extends AbstractGameObject
 		        reg.getRegionHeight(), false, false);
 	}
 
+	/**
+	 * Draws the part of the water between minX and maxX as one quad, with the
+	 * texture coordinates cut down to match. It looks the same as the whole
+	 * water, but covers the screen instead of the level.
+	 * 
+	 * @param batch
+	 * @param minX
+	 * @param maxX
+	 */
+	public void render(Batch batch, float minX, float maxX)
+	{
+		TextureRegion reg = regWaterOverlay;
+		float startX = position.x + origin.x;
+		minX = Math.max(minX, startX);
+		maxX = Math.min(maxX, startX + dimension.x);
+		if (minX >= maxX)
+			return;
+		float u = reg.getU() + (minX - startX) / dimension.x * (reg.getU2() - reg.getU());
+		float u2 = reg.getU() + (maxX - startX) / dimension.x * (reg.getU2() - reg.getU());
+		batch.draw(reg.getTexture(), minX, position.y + origin.y, maxX - minX, dimension.y, u, reg.getV2(), u2,
+		        reg.getV());
+	}
+
 }
\ No newline at end of file
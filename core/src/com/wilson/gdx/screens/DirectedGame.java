@@ -6,6 +6,7 @@ import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.wilson.gdx.screens.transitions.ScreenTransition;
+import com.wilson.gdx.util.Constants;
 
 public abstract class DirectedGame implements ApplicationListener
 {
@@ -51,8 +52,10 @@ public abstract class DirectedGame implements ApplicationListener
 	@Override
 	public void render()
 	{
-		// get delta time and ensure an upper limit of one 60th second
-		float deltaTime = Math.min(Gdx.graphics.getDeltaTime(), 1.0f / 60.0f);
+		// get delta time and ensure an upper limit. The game screen splits
+		// the time into fixed simulation steps itself, so this only guards
+		// against huge jumps (e.g. after the window was dragged)
+		float deltaTime = Math.min(Gdx.graphics.getDeltaTime(), Constants.MAX_FRAME_TIME);
 		if (nextScreen == null)
 		{
 			// no ongoing transition
@@ -3,6 +3,9 @@ package com.wilson.gdx.screens;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputProcessor;
 import com.badlogic.gdx.graphics.GL20;
+import com.wilson.gdx.game.FrameInput;
+import com.wilson.gdx.game.FrameSnapshot;
+import com.wilson.gdx.game.PipelinedSimulation;
 import com.wilson.gdx.game.WorldController;
 import com.wilson.gdx.game.WorldRenderer;
 import com.wilson.gdx.util.GamePreferences;
@@ -15,6 +18,10 @@ public class GameScreen extends AbstractGameScreen
 
 	private WorldController worldController;
 	private WorldRenderer worldRenderer;
+	// set while the world is simulated on its own thread
+	private PipelinedSimulation pipelinedSimulation;
+	private FrameSnapshot frame;
+	private FrameInput input;
 
 	private boolean paused;
 
@@ -26,19 +33,29 @@ public class GameScreen extends AbstractGameScreen
 	@Override
 	public void render(float deltaTime)
 	{
-		// Do not update game world when paused.
-		if (!paused)
+		if (pipelinedSimulation != null)
 		{
-			// Update game world by the time that has passed
-			// since last rendered frame.
-			worldController.update(deltaTime);
+			// Draw the frame simulated meanwhile and let the next one be
+			// simulated while we draw.
+			frame = pipelinedSimulation.frame(deltaTime, !paused);
+		} else
+		{
+			// Do not update game world when paused.
+			if (!paused)
+			{
+				// Update game world by the time that has passed
+				// since last rendered frame.
+				input.capture(worldController);
+				worldController.update(deltaTime, input);
+			}
+			frame.capture(worldController, false);
 		}
 		// Sets the clear screen color to: Cornflower Blue
 		Gdx.gl.glClearColor(0x64 / 255.0f, 0x95 / 255.0f, 0xed / 255.0f, 0xff / 255.0f);
 		// Clears the screen
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 		// Render game world to screen
-		worldRenderer.render();
+		worldRenderer.render(frame);
 	}
 
 	@Override
@@ -53,12 +70,21 @@ public class GameScreen extends AbstractGameScreen
 		GamePreferences.instance.load();
 		worldController = new WorldController(game);
 		worldRenderer = new WorldRenderer(worldController);
+		if (GamePreferences.instance.usePipelinedSimulation)
+			pipelinedSimulation = new PipelinedSimulation(worldController);
+		else
+		{
+			frame = new FrameSnapshot();
+			input = new FrameInput();
+		}
 		Gdx.input.setCatchBackKey(true);
 	}
 
 	@Override
 	public void hide()
 	{
+		if (pipelinedSimulation != null)
+			pipelinedSimulation.dispose();
 		worldController.dispose();
 		worldRenderer.dispose();
 		Gdx.input.setCatchBackKey(false);
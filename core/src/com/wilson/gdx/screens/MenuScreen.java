@@ -63,6 +63,8 @@ public class MenuScreen extends AbstractGameScreen
 	private Image imgCharSkin;
 	private CheckBox chkShowFpsCounter;
 	private CheckBox chkUseMonochromeShader;
+	private CheckBox chkUsePipelinedSimulation;
+	private CheckBox chkUseLowSimulationRate;
 
 	// debug
 	private final float DEBUG_REBUILD_INTERVAL = 5.0f;
@@ -300,6 +302,16 @@ public class MenuScreen extends AbstractGameScreen
 		tbl.add(new Label("Use Monochrome Shader", skinLibgdx));
 		tbl.add(chkUseMonochromeShader);
 		tbl.row();
+		// + Checkbox, "Simulate On Own Thread" label
+		chkUsePipelinedSimulation = new CheckBox("", skinLibgdx);
+		tbl.add(new Label("Simulate On Own Thread", skinLibgdx));
+		tbl.add(chkUsePipelinedSimulation);
+		tbl.row();
+		// + Checkbox, "Simulate At 30 Hz" label
+		chkUseLowSimulationRate = new CheckBox("", skinLibgdx);
+		tbl.add(new Label("Simulate At 30 Hz", skinLibgdx));
+		tbl.add(chkUseLowSimulationRate);
+		tbl.row();
 		return tbl;
 	}
 
@@ -417,6 +429,8 @@ public class MenuScreen extends AbstractGameScreen
 		onCharSkinSelected(prefs.charSkin);
 		chkShowFpsCounter.setChecked(prefs.showFpsCounter);
 		chkUseMonochromeShader.setChecked(prefs.useMonochromeShader);
+		chkUsePipelinedSimulation.setChecked(prefs.usePipelinedSimulation);
+		chkUseLowSimulationRate.setChecked(prefs.useLowSimulationRate);
 
 	}
 
@@ -430,6 +444,8 @@ public class MenuScreen extends AbstractGameScreen
 		prefs.charSkin = selCharSkin.getSelectedIndex();
 		prefs.showFpsCounter = chkShowFpsCounter.isChecked();
 		prefs.useMonochromeShader = chkUseMonochromeShader.isChecked();
+		prefs.usePipelinedSimulation = chkUsePipelinedSimulation.isChecked();
+		prefs.useLowSimulationRate = chkUseLowSimulationRate.isChecked();
 		prefs.save();
 	}
 
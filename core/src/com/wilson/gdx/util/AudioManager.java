@@ -1,5 +1,6 @@
 package com.wilson.gdx.util;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.audio.Sound;
 
@@ -16,6 +17,9 @@ public class AudioManager
 
 	private Music playingMusic;
 
+	// sounds are played on the render thread a little later, see setDeferred()
+	private volatile boolean deferred;
+
 	// singleton: prevent instantiation from other classes
 	private AudioManager()
 	{
@@ -36,13 +40,37 @@ public class AudioManager
 		play(sound, volume, pitch, 0);
 	}
 
-	public void play(Sound sound, float volume, float pitch, float pan)
+	public void play(final Sound sound, final float volume, final float pitch, final float pan)
 	{
 		if (!GamePreferences.instance.sound)
 			return;
+		if (deferred)
+		{
+			Gdx.app.postRunnable(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					sound.play(GamePreferences.instance.volSound * volume, pitch, pan);
+				}
+			});
+			return;
+		}
 		sound.play(GamePreferences.instance.volSound * volume, pitch, pan);
 	}
 
+	/**
+	 * While deferred, sounds are not played right away but handed to the
+	 * render thread, which plays them before it draws the next frame. This is
+	 * used while the game world is simulated on a thread of its own.
+	 * 
+	 * @param deferred
+	 */
+	public void setDeferred(boolean deferred)
+	{
+		this.deferred = deferred;
+	}
+
 	public void play(Music music)
 	{
 		playingMusic = music;
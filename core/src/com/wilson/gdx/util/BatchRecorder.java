@@ -0,0 +1,620 @@
+package com.wilson.gdx.util;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.NumberUtils;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * A Batch that does not draw anything but writes down what it is asked to
+ * draw, so it can be drawn later with a real batch by calling replay().
+ *
+ * Every draw call is turned into the four vertices of a sprite right away,
+ * the same way SpriteBatch does it, so the recording only holds numbers and
+ * texture references. It never touches OpenGL and can be filled on any
+ * thread.
+ *
+ * Projection, transform and shader are left to the batch the recording is
+ * replayed with; only the blend function is recorded along with the sprites.
+ *
+ * This also makes it the render queue of the game: every sprite is put into
+ * a layer (see setLayer()), and when it is replayed the sprites of a layer
+ * are sorted by texture, so sprites from the same atlas or font page are
+ * drawn together however they were drawn in between.
+ *
+ * @author Chris
+ *
+ */
+public class BatchRecorder implements Batch
+{
+
+	// floats per recorded sprite
+	public static final int SPRITE_SIZE = 20;
+	// blend state of a sprite drawn with blending disabled
+	private static final int BLENDING_DISABLED = -1;
+
+	private final FloatArray vertices = new FloatArray(SPRITE_SIZE * 256);
+	private final Array<Texture> textures = new Array<Texture>(false, 256);
+	private final IntArray blendStates = new IntArray(256);
+
+	// sort keys: the layer, texture and blend state of each sprite as small
+	// numbers, see replay()
+	public static final int MAX_LAYERS = 1 << 8;
+	private static final int MAX_TEXTURES = 1 << 12;
+	private static final int MAX_BLEND_STATES = 1 << 8;
+	private final IntArray layers = new IntArray(256);
+	private final ObjectIntMap<Texture> textureKeys = new ObjectIntMap<Texture>();
+	private final IntIntMap blendKeys = new IntIntMap();
+	private long[] sortKeys = new long[256];
+	private final FloatArray sortedVertices = new FloatArray(SPRITE_SIZE * 256);
+	private final Array<Texture> sortedTextures = new Array<Texture>(false, 256);
+	private final IntArray sortedBlendStates = new IntArray(256);
+	private final IntArray sortedLayers = new IntArray(256);
+	// a paused frame is replayed over and over, it only has to be sorted once
+	private boolean sortedValid;
+	private int layer;
+
+	private final Color color = new Color(1, 1, 1, 1);
+	private float packedColor = Color.WHITE.toFloatBits();
+	private int blendSrcFunc = GL20.GL_SRC_ALPHA;
+	private int blendDstFunc = GL20.GL_ONE_MINUS_SRC_ALPHA;
+	private boolean blendingDisabled;
+	private boolean drawing;
+
+	private final Matrix4 projectionMatrix = new Matrix4();
+	private final Matrix4 transformMatrix = new Matrix4();
+	private ShaderProgram shader;
+
+	private final float[] sprite = new float[SPRITE_SIZE];
+
+	/**
+	 * Forgets everything that was recorded.
+	 */
+	public void clear()
+	{
+		vertices.clear();
+		textures.clear();
+		blendStates.clear();
+		layers.clear();
+		textureKeys.clear();
+		blendKeys.clear();
+		sortedValid = false;
+		layer = 0;
+	}
+
+	/**
+	 * Sets the layer the following sprites go into. Layers are drawn from
+	 * the lowest to the highest; within a layer, sprites are drawn sorted by
+	 * texture, so only sprites that may be drawn in any order should share
+	 * one. Sprites with the same texture keep their order. Everything is in
+	 * layer 0 until this is called.
+	 *
+	 * @param layer
+	 *            from 0 to 255
+	 */
+	public void setLayer(int layer)
+	{
+		if (layer < 0 || layer >= MAX_LAYERS)
+			throw new GdxRuntimeException("Layer out of range: " + layer);
+		this.layer = layer;
+	}
+
+	/**
+	 * Number of sprites recorded.
+	 *
+	 * @return
+	 */
+	public int size()
+	{
+		return textures.size;
+	}
+
+	/**
+	 * Texture of a recorded sprite.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public Texture getTexture(int index)
+	{
+		return textures.get(index);
+	}
+
+	/**
+	 * The vertices of all recorded sprites, SPRITE_SIZE floats each. The
+	 * array can be longer than what was recorded.
+	 *
+	 * @return
+	 */
+	public float[] getVertices()
+	{
+		return vertices.items;
+	}
+
+	/**
+	 * Draws everything that was recorded with the given batch, layer by layer
+	 * and sorted by texture and blend state within each layer. Sprites that
+	 * end up next to each other with the same texture and blend state are
+	 * handed to the batch in one go, so the batch only has to flush when the
+	 * texture really changes. The batch has to be between begin() and end(),
+	 * and its blend function is set back to its default afterwards.
+	 *
+	 * @param batch
+	 */
+	public void replay(Batch batch)
+	{
+		replay(batch, 0, MAX_LAYERS - 1);
+	}
+
+	/**
+	 * Draws the recorded sprites of some layers only, like replay(). This
+	 * lets something else be drawn in between the layers.
+	 *
+	 * @param batch
+	 * @param firstLayer
+	 * @param lastLayer
+	 *            the last layer that is drawn, not the one after it
+	 */
+	public void replay(Batch batch, int firstLayer, int lastLayer)
+	{
+		sort();
+		float[] vertices = sortedVertices.items;
+		int start = 0;
+		while (start < textures.size && sortedLayers.get(start) < firstLayer)
+			start++;
+		int count = start;
+		while (count < textures.size && sortedLayers.get(count) <= lastLayer)
+			count++;
+		while (start < count)
+		{
+			Texture texture = sortedTextures.get(start);
+			int blendState = sortedBlendStates.get(start);
+			int end = start + 1;
+			while (end < count && sortedTextures.get(end) == texture && sortedBlendStates.get(end) == blendState)
+				end++;
+			if (blendState == BLENDING_DISABLED)
+			{
+				batch.disableBlending();
+			} else
+			{
+				batch.enableBlending();
+				batch.setBlendFunction(blendState >>> 16, blendState & 0xffff);
+			}
+			batch.draw(texture, vertices, start * SPRITE_SIZE, (end - start) * SPRITE_SIZE);
+			start = end;
+		}
+		batch.enableBlending();
+		batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+	}
+
+	/**
+	 * Puts the sprites into the order they are drawn in, in sortedVertices,
+	 * sortedTextures, sortedBlendStates and sortedLayers.
+	 *
+	 * A sort key holds the layer, the number of the texture and the number of
+	 * the blend state, in the order they first showed up, followed by the
+	 * index of the sprite. Sorting the keys as plain numbers therefore sorts
+	 * by all of these, and sprites that only differ in their index keep their
+	 * order.
+	 */
+	private void sort()
+	{
+		if (sortedValid)
+			return;
+		sortedValid = true;
+		int count = textures.size;
+		if (sortKeys.length < count)
+			sortKeys = new long[Math.max(count, sortKeys.length * 2)];
+		long[] keys = sortKeys;
+		boolean sorted = true;
+		for (int i = 0; i < count; i++)
+		{
+			long key = (long)layers.get(i) << 20 | textureKeys.get(textures.get(i), 0) << 8
+			        | blendKeys.get(blendStates.get(i), 0);
+			keys[i] = key << 32 | i;
+			if (i > 0 && keys[i] < keys[i - 1])
+				sorted = false;
+		}
+		sortedVertices.clear();
+		sortedTextures.clear();
+		sortedBlendStates.clear();
+		sortedLayers.clear();
+		if (sorted)
+		{
+			sortedVertices.addAll(vertices);
+			sortedTextures.addAll(textures);
+			sortedBlendStates.addAll(blendStates);
+			sortedLayers.addAll(layers);
+			return;
+		}
+		Arrays.sort(keys, 0, count);
+		sortedVertices.ensureCapacity(vertices.size);
+		for (int i = 0; i < count; i++)
+		{
+			int index = (int)keys[i];
+			sortedVertices.addAll(vertices.items, index * SPRITE_SIZE, SPRITE_SIZE);
+			sortedTextures.add(textures.get(index));
+			sortedBlendStates.add(blendStates.get(index));
+			sortedLayers.add(layers.get(index));
+		}
+	}
+
+	private void add(Texture texture, float[] spriteVertices, int offset)
+	{
+		int blendState = blendingDisabled ? BLENDING_DISABLED : blendSrcFunc << 16 | blendDstFunc;
+		if (!textureKeys.containsKey(texture))
+		{
+			if (textureKeys.size >= MAX_TEXTURES)
+				throw new GdxRuntimeException("Too many textures in one recording");
+			textureKeys.put(texture, textureKeys.size);
+		}
+		if (!blendKeys.containsKey(blendState))
+		{
+			if (blendKeys.size >= MAX_BLEND_STATES)
+				throw new GdxRuntimeException("Too many blend states in one recording");
+			blendKeys.put(blendState, blendKeys.size);
+		}
+		vertices.addAll(spriteVertices, offset, SPRITE_SIZE);
+		textures.add(texture);
+		blendStates.add(blendState);
+		layers.add(layer);
+		sortedValid = false;
+	}
+
+	private void add(Texture texture, float x1, float y1, float u1, float v1, float x2, float y2, float u2,
+	        float v2, float x3, float y3, float u3, float v3, float x4, float y4, float u4, float v4)
+	{
+		float[] sprite = this.sprite;
+		float color = packedColor;
+		sprite[X1] = x1;
+		sprite[Y1] = y1;
+		sprite[C1] = color;
+		sprite[U1] = u1;
+		sprite[V1] = v1;
+		sprite[X2] = x2;
+		sprite[Y2] = y2;
+		sprite[C2] = color;
+		sprite[U2] = u2;
+		sprite[V2] = v2;
+		sprite[X3] = x3;
+		sprite[Y3] = y3;
+		sprite[C3] = color;
+		sprite[U3] = u3;
+		sprite[V3] = v3;
+		sprite[X4] = x4;
+		sprite[Y4] = y4;
+		sprite[C4] = color;
+		sprite[U4] = u4;
+		sprite[V4] = v4;
+		add(texture, sprite, 0);
+	}
+
+	/**
+	 * Adds a scaled and rotated sprite, the way SpriteBatch computes it.
+	 */
+	private void add(Texture texture, float x, float y, float originX, float originY, float width, float height,
+	        float scaleX, float scaleY, float rotation, float u, float v, float u2, float v2)
+	{
+		float worldOriginX = x + originX;
+		float worldOriginY = y + originY;
+		float fx = -originX * scaleX;
+		float fy = -originY * scaleY;
+		float fx2 = (width - originX) * scaleX;
+		float fy2 = (height - originY) * scaleY;
+
+		float x1, y1, x2, y2, x3, y3, x4, y4;
+		if (rotation != 0)
+		{
+			float cos = MathUtils.cosDeg(rotation);
+			float sin = MathUtils.sinDeg(rotation);
+			x1 = cos * fx - sin * fy;
+			y1 = sin * fx + cos * fy;
+			x2 = cos * fx - sin * fy2;
+			y2 = sin * fx + cos * fy2;
+			x3 = cos * fx2 - sin * fy2;
+			y3 = sin * fx2 + cos * fy2;
+			x4 = x1 + (x3 - x2);
+			y4 = y3 - (y2 - y1);
+		} else
+		{
+			x1 = fx;
+			y1 = fy;
+			x2 = fx;
+			y2 = fy2;
+			x3 = fx2;
+			y3 = fy2;
+			x4 = fx2;
+			y4 = fy;
+		}
+		add(texture, x1 + worldOriginX, y1 + worldOriginY, u, v, x2 + worldOriginX, y2 + worldOriginY, u, v2,
+		        x3 + worldOriginX, y3 + worldOriginY, u2, v2, x4 + worldOriginX, y4 + worldOriginY, u2, v);
+	}
+
+	@Override
+	public void begin()
+	{
+		drawing = true;
+	}
+
+	@Override
+	public void end()
+	{
+		drawing = false;
+	}
+
+	@Override
+	public void setColor(Color tint)
+	{
+		color.set(tint);
+		packedColor = tint.toFloatBits();
+	}
+
+	@Override
+	public void setColor(float r, float g, float b, float a)
+	{
+		color.set(r, g, b, a);
+		packedColor = color.toFloatBits();
+	}
+
+	@Override
+	public void setColor(float color)
+	{
+		int intBits = NumberUtils.floatToIntColor(color);
+		this.color.r = (intBits & 0xff) / 255f;
+		this.color.g = ((intBits >>> 8) & 0xff) / 255f;
+		this.color.b = ((intBits >>> 16) & 0xff) / 255f;
+		this.color.a = ((intBits >>> 24) & 0xff) / 255f;
+		packedColor = color;
+	}
+
+	@Override
+	public Color getColor()
+	{
+		return color;
+	}
+
+	@Override
+	public float getPackedColor()
+	{
+		return packedColor;
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, float originX, float originY, float width, float height,
+	        float scaleX, float scaleY, float rotation, int srcX, int srcY, int srcWidth, int srcHeight,
+	        boolean flipX, boolean flipY)
+	{
+		float invTexWidth = 1.0f / texture.getWidth();
+		float invTexHeight = 1.0f / texture.getHeight();
+		float u = srcX * invTexWidth;
+		float v = (srcY + srcHeight) * invTexHeight;
+		float u2 = (srcX + srcWidth) * invTexWidth;
+		float v2 = srcY * invTexHeight;
+		if (flipX)
+		{
+			float tmp = u;
+			u = u2;
+			u2 = tmp;
+		}
+		if (flipY)
+		{
+			float tmp = v;
+			v = v2;
+			v2 = tmp;
+		}
+		add(texture, x, y, originX, originY, width, height, scaleX, scaleY, rotation, u, v, u2, v2);
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, float width, float height, int srcX, int srcY,
+	        int srcWidth, int srcHeight, boolean flipX, boolean flipY)
+	{
+		draw(texture, x, y, 0, 0, width, height, 1, 1, 0, srcX, srcY, srcWidth, srcHeight, flipX, flipY);
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, int srcX, int srcY, int srcWidth, int srcHeight)
+	{
+		draw(texture, x, y, 0, 0, srcWidth, srcHeight, 1, 1, 0, srcX, srcY, srcWidth, srcHeight, false, false);
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, float width, float height, float u, float v, float u2,
+	        float v2)
+	{
+		add(texture, x, y, 0, 0, width, height, 1, 1, 0, u, v, u2, v2);
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y)
+	{
+		draw(texture, x, y, texture.getWidth(), texture.getHeight());
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, float width, float height)
+	{
+		add(texture, x, y, 0, 0, width, height, 1, 1, 0, 0, 1, 1, 0);
+	}
+
+	@Override
+	public void draw(Texture texture, float[] spriteVertices, int offset, int count)
+	{
+		for (int i = offset; i < offset + count; i += SPRITE_SIZE)
+			add(texture, spriteVertices, i);
+	}
+
+	@Override
+	public void draw(TextureRegion region, float x, float y)
+	{
+		draw(region, x, y, region.getRegionWidth(), region.getRegionHeight());
+	}
+
+	@Override
+	public void draw(TextureRegion region, float x, float y, float width, float height)
+	{
+		add(region.getTexture(), x, y, 0, 0, width, height, 1, 1, 0, region.getU(), region.getV2(),
+		        region.getU2(), region.getV());
+	}
+
+	@Override
+	public void draw(TextureRegion region, float x, float y, float originX, float originY, float width,
+	        float height, float scaleX, float scaleY, float rotation)
+	{
+		add(region.getTexture(), x, y, originX, originY, width, height, scaleX, scaleY, rotation, region.getU(),
+		        region.getV2(), region.getU2(), region.getV());
+	}
+
+	@Override
+	public void draw(TextureRegion region, float x, float y, float originX, float originY, float width,
+	        float height, float scaleX, float scaleY, float rotation, boolean clockwise)
+	{
+		// draw it counter-clockwise first, then turn the texture coordinates
+		// a quarter around
+		add(region.getTexture(), x, y, originX, originY, width, height, scaleX, scaleY, rotation, 0, 0, 0, 0);
+		float[] spriteVertices = vertices.items;
+		int i = vertices.size - SPRITE_SIZE;
+		float u = region.getU(), v = region.getV(), u2 = region.getU2(), v2 = region.getV2();
+		if (clockwise)
+		{
+			spriteVertices[i + U1] = u2;
+			spriteVertices[i + V1] = v2;
+			spriteVertices[i + U2] = u;
+			spriteVertices[i + V2] = v2;
+			spriteVertices[i + U3] = u;
+			spriteVertices[i + V3] = v;
+			spriteVertices[i + U4] = u2;
+			spriteVertices[i + V4] = v;
+		} else
+		{
+			spriteVertices[i + U1] = u;
+			spriteVertices[i + V1] = v;
+			spriteVertices[i + U2] = u2;
+			spriteVertices[i + V2] = v;
+			spriteVertices[i + U3] = u2;
+			spriteVertices[i + V3] = v2;
+			spriteVertices[i + U4] = u;
+			spriteVertices[i + V4] = v2;
+		}
+	}
+
+	@Override
+	public void draw(TextureRegion region, float width, float height, Affine2 transform)
+	{
+		float x1 = transform.m02;
+		float y1 = transform.m12;
+		float x2 = transform.m01 * height + transform.m02;
+		float y2 = transform.m11 * height + transform.m12;
+		float x3 = transform.m00 * width + transform.m01 * height + transform.m02;
+		float y3 = transform.m10 * width + transform.m11 * height + transform.m12;
+		float x4 = transform.m00 * width + transform.m02;
+		float y4 = transform.m10 * width + transform.m12;
+		float u = region.getU(), v = region.getV2(), u2 = region.getU2(), v2 = region.getV();
+		add(region.getTexture(), x1, y1, u, v, x2, y2, u, v2, x3, y3, u2, v2, x4, y4, u2, v);
+	}
+
+	@Override
+	public void flush()
+	{
+	}
+
+	@Override
+	public void disableBlending()
+	{
+		blendingDisabled = true;
+	}
+
+	@Override
+	public void enableBlending()
+	{
+		blendingDisabled = false;
+	}
+
+	@Override
+	public void setBlendFunction(int srcFunc, int dstFunc)
+	{
+		blendSrcFunc = srcFunc;
+		blendDstFunc = dstFunc;
+	}
+
+	@Override
+	public int getBlendSrcFunc()
+	{
+		return blendSrcFunc;
+	}
+
+	@Override
+	public int getBlendDstFunc()
+	{
+		return blendDstFunc;
+	}
+
+	@Override
+	public Matrix4 getProjectionMatrix()
+	{
+		return projectionMatrix;
+	}
+
+	@Override
+	public Matrix4 getTransformMatrix()
+	{
+		return transformMatrix;
+	}
+
+	@Override
+	public void setProjectionMatrix(Matrix4 projection)
+	{
+		projectionMatrix.set(projection);
+	}
+
+	@Override
+	public void setTransformMatrix(Matrix4 transform)
+	{
+		transformMatrix.set(transform);
+	}
+
+	@Override
+	public void setShader(ShaderProgram shader)
+	{
+		this.shader = shader;
+	}
+
+	@Override
+	public ShaderProgram getShader()
+	{
+		return shader;
+	}
+
+	@Override
+	public boolean isBlendingEnabled()
+	{
+		return !blendingDisabled;
+	}
+
+	@Override
+	public boolean isDrawing()
+	{
+		return drawing;
+	}
+
+	@Override
+	public void dispose()
+	{
+		clear();
+	}
+
+}
@@ -2,6 +2,7 @@ package com.wilson.gdx.util;
 
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.wilson.gdx.game.objects.AbstractGameObject;
 
@@ -15,15 +16,35 @@ public class CameraHelper
 	private final float FOLLOW_SPEED = 4.0f;
 
 	private Vector2 position;
+	// position after the previous simulation step and the one the camera is
+	// actually put at, see AbstractGameObject
+	private Vector2 previousPosition;
+	private Vector2 renderPosition;
 	private float zoom;
+	// size of the viewport in world units at a zoom of 1
+	private float viewportWidth = Constants.VIEWPORT_WIDTH;
+	private float viewportHeight = Constants.VIEWPORT_HEIGHT;
 	private AbstractGameObject target;
 
 	public CameraHelper()
 	{
 		position = new Vector2();
+		previousPosition = new Vector2();
+		renderPosition = new Vector2();
 		zoom = 1.0f;
 	}
 
+	/**
+	 * Puts the camera back to where a new CameraHelper starts, without a
+	 * target. The viewport size stays, it only changes with the window.
+	 */
+	public void reset()
+	{
+		setPosition(0, 0);
+		zoom = 1.0f;
+		target = null;
+	}
+
 	public void update(float deltaTime)
 	{
 		if (!hasTarget())
@@ -35,9 +56,39 @@ public class CameraHelper
 		position.y = Math.max(-1f, position.y);
 	}
 
+	/**
+	 * Remembers the current position as the one of the previous simulation
+	 * step.
+	 */
+	public void savePreviousState()
+	{
+		previousPosition.set(position);
+	}
+
+	/**
+	 * Computes the position the camera is drawn from.
+	 * 
+	 * @param alpha
+	 *            how far the frame is between the previous and the current
+	 *            simulation step
+	 */
+	public void interpolate(float alpha)
+	{
+		renderPosition.set(previousPosition).lerp(position, alpha);
+	}
+
+	/**
+	 * Moves the camera right away, without sliding there from its old
+	 * position.
+	 * 
+	 * @param x
+	 * @param y
+	 */
 	public void setPosition(float x, float y)
 	{
 		this.position.set(x, y);
+		previousPosition.set(position);
+		renderPosition.set(position);
 	}
 
 	public Vector2 getPosition()
@@ -55,11 +106,42 @@ public class CameraHelper
 		this.zoom = MathUtils.clamp(zoom, MAX_ZOOM_IN, MAX_ZOOM_OUT);
 	}
 
+	public Vector2 getRenderPosition()
+	{
+		return renderPosition;
+	}
+
 	public float getZoom()
 	{
 		return zoom;
 	}
 
+	/**
+	 * Tells the helper how large the viewport of the camera is, which
+	 * depends on the size of the window.
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	public void setViewport(float width, float height)
+	{
+		viewportWidth = width;
+		viewportHeight = height;
+	}
+
+	/**
+	 * Stores the area of the world the camera sees from its render position.
+	 * 
+	 * @param out
+	 * @return out
+	 */
+	public Rectangle getVisibleArea(Rectangle out)
+	{
+		float width = viewportWidth * zoom;
+		float height = viewportHeight * zoom;
+		return out.set(renderPosition.x - width / 2, renderPosition.y - height / 2, width, height);
+	}
+
 	public void setTarget(AbstractGameObject target)
 	{
 		this.target = target;
@@ -82,8 +164,8 @@ public class CameraHelper
 
 	public void applyTo(OrthographicCamera camera)
 	{
-		camera.position.x = position.x;
-		camera.position.y = position.y;
+		camera.position.x = renderPosition.x;
+		camera.position.y = renderPosition.y;
 		camera.zoom = zoom;
 		camera.update();
 	}
@@ -27,6 +27,85 @@ public class Constants
 	// Location of image file for level 01
 	public static final String LEVEL_01 = "../core/assets/images/level-01.png";
 
+	// Width of the chunks a level is streamed in (meters)
+	public static final float LEVEL_CHUNK_WIDTH = 16.0f;
+
+	// Distance beyond the visible area in which chunks get loaded (meters)
+	public static final float LEVEL_CHUNK_LOAD_MARGIN = 16.0f;
+
+	// Cell size of the grid used to find items near the player (meters)
+	public static final float ITEM_GRID_CELL_SIZE = 2.0f;
+
+	// Levels with more terrain cells than this keep their terrain bitmap
+	// outside of the Java heap
+	public static final long TERRAIN_OFF_HEAP_CELLS = 1L << 24;
+
+	// Simulation steps per second
+	public static final float SIMULATION_RATE = 60.0f;
+
+	// Simulation steps per second for slow machines
+	public static final float SIMULATION_RATE_LOW = 30.0f;
+
+	// Most simulation steps done in one frame to catch up; the rest of the
+	// time is dropped and the game slows down instead
+	public static final int SIMULATION_MAX_STEPS = 5;
+
+	// Longest frame time passed on to the screens, e.g. after a hiccup
+	public static final float MAX_FRAME_TIME = 0.25f;
+
+	// Width of the regions the physics is split into, each stepped in a
+	// Box2D world of its own (meters). Float.POSITIVE_INFINITY simulates the
+	// whole level in one world.
+	public static final float PHYSICS_REGION_WIDTH = 64.0f;
+
+	// How far static and kinematic bodies reach into neighboring physics
+	// regions (meters)
+	public static final float PHYSICS_REGION_SHARE_DISTANCE = 2.0f;
+
+	// Floating rocks closer to the player than this have their motion
+	// handed to Box2D every step
+	public static final float ROCK_BODY_SYNC_DISTANCE = 12.0f;
+
+	// Objects with a body further off the screen than this are not moved
+	// to their body after a physics step
+	public static final float BODY_SYNC_MARGIN = 2.0f;
+
+	// Collision categories of Box2D fixtures. Pickups are sensors that only
+	// detect the player.
+	public static final short CATEGORY_PLAYER = 0x0002;
+	public static final short CATEGORY_PICKUP = 0x0004;
+
+	// Objects further from the camera than the visible width plus this are
+	// not updated and their bodies are switched off
+	public static final float ACTIVITY_MARGIN = 4.0f;
+
+	// From this zoom on the level is drawn with impostors
+	public static final float IMPOSTOR_ZOOM = 4.0f;
+
+	// Resolution of the impostors (pixels per meter)
+	public static final float IMPOSTOR_PIXELS_PER_METER = 16.0f;
+
+	// Most impostors kept at once, each holds a frame buffer
+	public static final int IMPOSTOR_CACHE_SIZE = 32;
+
+	// Time a frame may take before the world is drawn at a lower resolution
+	public static final float RESOLUTION_FRAME_BUDGET = 1.0f / 60.0f;
+
+	// Lowest resolution the world is drawn at, as a share of the screen's
+	public static final float RESOLUTION_MIN_SCALE = 0.5f;
+
+	// Time between lowering the resolution while over budget (seconds)
+	public static final float RESOLUTION_ADJUST_TIME = 0.25f;
+
+	// Time on budget before trying a higher resolution (seconds)
+	public static final float RESOLUTION_HEADROOM_TIME = 2.0f;
+
+	// Most textures the MultiTextureBatch binds at once
+	public static final int MULTI_TEXTURE_UNITS = 8;
+
+	// Most animation frames of a sprite that is drawn instanced
+	public static final int INSTANCED_MAX_FRAMES = 16;
+
 	// Amount of extra lives at level start
 	public static final int LIVES_START = 3;
 
@@ -51,6 +130,15 @@ public class Constants
 	// Shader
 	public static final String shaderMonochromeVertex = "../core/assets/shaders/monochrome.vs";
 	public static final String shaderMonochromeFragment = "../core/assets/shaders/monochrome.fs";
+	public static final String shaderTerrainVertex = "../core/assets/shaders/terrain.vs";
+	public static final String shaderTerrainFragment = "../core/assets/shaders/terrain.fs";
+	public static final String shaderLayerVertex = "../core/assets/shaders/layer.vs";
+	public static final String shaderMountainsFragment = "../core/assets/shaders/mountains.fs";
+	public static final String shaderCloudsFragment = "../core/assets/shaders/clouds.fs";
+	public static final String shaderMultiTextureVertex = "../core/assets/shaders/multitexture.vs";
+	public static final String shaderMultiTextureFragment = "../core/assets/shaders/multitexture.fs";
+	public static final String shaderInstancedVertex = "../core/assets/shaders/instanced.vs";
+	public static final String shaderInstancedFragment = "../core/assets/shaders/instanced.fs";
 
 	// Angle of rotation for dead zone (no movement)
 	public static final float ACCEL_ANGLE_DEAD_ZONE = 5.0f;
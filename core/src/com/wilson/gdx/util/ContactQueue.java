@@ -0,0 +1,99 @@
+package com.wilson.gdx.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A queue of contact events that any number of threads can add to without
+ * locking. The physics regions are stepped on several threads at once, and
+ * all of their contact listeners put what they find in here.
+ *
+ * All space is allocated up front. Events that don't fit any more are
+ * dropped and counted, so the queue never grows during a step.
+ *
+ * The queue is only read and cleared while no world is being stepped, so the
+ * reading thread sees everything that was added (waiting for the steps to
+ * finish orders the writes before the reads).
+ *
+ * @author Chris
+ *
+ */
+public class ContactQueue
+{
+
+	private final Object[] first;
+	private final Object[] second;
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger dropped = new AtomicInteger();
+
+	/**
+	 * @param capacity
+	 *            how many events fit in the queue between two clear() calls
+	 */
+	public ContactQueue(int capacity)
+	{
+		first = new Object[capacity];
+		second = new Object[capacity];
+	}
+
+	/**
+	 * Adds the two user data objects of a contact. Safe to call from any
+	 * thread.
+	 *
+	 * @param a
+	 * @param b
+	 * @return false if the queue was full and the event got dropped
+	 */
+	public boolean offer(Object a, Object b)
+	{
+		int index = size.getAndIncrement();
+		if (index >= first.length)
+		{
+			dropped.incrementAndGet();
+			return false;
+		}
+		first[index] = a;
+		second[index] = b;
+		return true;
+	}
+
+	/**
+	 * @return the number of events in the queue
+	 */
+	public int size()
+	{
+		return Math.min(size.get(), first.length);
+	}
+
+	public Object getFirst(int index)
+	{
+		return first[index];
+	}
+
+	public Object getSecond(int index)
+	{
+		return second[index];
+	}
+
+	/**
+	 * @return how many events were dropped since the queue was created
+	 */
+	public int getDropped()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Empties the queue. Must not be called while contacts are still added.
+	 */
+	public void clear()
+	{
+		int count = size();
+		for (int i = 0; i < count; i++)
+		{
+			first[i] = null;
+			second[i] = null;
+		}
+		size.set(0);
+	}
+
+}
@@ -18,6 +18,8 @@ public class GamePreferences
 	public int charSkin;
 	public boolean showFpsCounter;
 	public boolean useMonochromeShader;
+	public boolean usePipelinedSimulation;
+	public boolean useLowSimulationRate;
 
 	private Preferences prefs;
 
@@ -36,6 +38,8 @@ public class GamePreferences
 		charSkin = MathUtils.clamp(prefs.getInteger("charSkin", 0), 0, 2);
 		showFpsCounter = prefs.getBoolean("showFpsCounter", false);
 		useMonochromeShader = prefs.getBoolean("useMonochromeShader", false);
+		usePipelinedSimulation = prefs.getBoolean("usePipelinedSimulation", false);
+		useLowSimulationRate = prefs.getBoolean("useLowSimulationRate", false);
 	}
 
 	public void save()
@@ -47,6 +51,8 @@ public class GamePreferences
 		prefs.putInteger("charSkin", charSkin);
 		prefs.putBoolean("showFpsCounter", showFpsCounter);
 		prefs.putBoolean("useMonochromeShader", useMonochromeShader);
+		prefs.putBoolean("usePipelinedSimulation", usePipelinedSimulation);
+		prefs.putBoolean("useLowSimulationRate", useLowSimulationRate);
 		prefs.flush();
 	}
 
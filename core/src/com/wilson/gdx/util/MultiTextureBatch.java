@@ -0,0 +1,508 @@
+package com.wilson.gdx.util;
+
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A Batch that binds several textures at once. Every vertex carries the
+ * number of the texture unit its sprite's texture is bound to and the shader
+ * picks the texture with it, so sprites from the atlas, the font pages and
+ * the particle texture can all go into one draw call. The batch only has to
+ * flush when a sprite needs a texture and all units are taken, or when the
+ * blend function changes.
+ *
+ * Drawing vertices that are already worked out, the way BatchRecorder
+ * replays a recording, copies them straight into the mesh. All other draw
+ * calls are turned into vertices by a BatchRecorder first, so the math is
+ * the same as everywhere else in the game.
+ *
+ * A shader set with setShader() gets the attributes of a SpriteBatch shader
+ * plus a_texIndex, and has to have the sampler array u_textures.
+ *
+ * @author Chris
+ *
+ */
+public class MultiTextureBatch implements Batch
+{
+
+	// floats per vertex: position, color, texture coordinates, texture unit
+	private static final int VERTEX_SIZE = 6;
+	private static final int SPRITE_SIZE = 4 * VERTEX_SIZE;
+	private static final int RECORDED_VERTEX_SIZE = BatchRecorder.SPRITE_SIZE / 4;
+
+	private final Mesh mesh;
+	private final float[] vertices;
+	private int idx;
+
+	// the textures bound to the units, in unit order
+	private final Texture[] textures;
+	private int textureCount;
+	private Texture lastTexture;
+	private float lastTextureUnit;
+
+	private final ShaderProgram shader;
+	private ShaderProgram customShader;
+
+	// turns draw calls that are not made of vertices yet into vertices
+	private final BatchRecorder converter = new BatchRecorder();
+
+	private final Color color = new Color(1, 1, 1, 1);
+	private float packedColor = Color.WHITE.toFloatBits();
+	private int blendSrcFunc = GL20.GL_SRC_ALPHA;
+	private int blendDstFunc = GL20.GL_ONE_MINUS_SRC_ALPHA;
+	private boolean blendingDisabled;
+	private boolean drawing;
+
+	private final Matrix4 projectionMatrix = new Matrix4();
+	private final Matrix4 transformMatrix = new Matrix4();
+	private final Matrix4 combinedMatrix = new Matrix4();
+
+	/**
+	 * Number of draw calls since the last call to begin().
+	 */
+	public int renderCalls;
+
+	/**
+	 * Creates a batch that holds up to the given number of sprites before it
+	 * has to flush.
+	 *
+	 * @param size
+	 *            at most 8191, as the indices are shorts
+	 */
+	public MultiTextureBatch(int size)
+	{
+		if (size > 8191)
+			throw new IllegalArgumentException("Can't have more than 8191 sprites per batch: " + size);
+
+		mesh = new Mesh(false, size * 4, size * 6, new VertexAttribute(Usage.Position, 2,
+		        ShaderProgram.POSITION_ATTRIBUTE), new VertexAttribute(Usage.ColorPacked, 4,
+		        ShaderProgram.COLOR_ATTRIBUTE), new VertexAttribute(Usage.TextureCoordinates, 2,
+		        ShaderProgram.TEXCOORD_ATTRIBUTE + "0"), new VertexAttribute(Usage.Generic, 1, "a_texIndex"));
+		vertices = new float[size * SPRITE_SIZE];
+		short[] indices = new short[size * 6];
+		short j = 0;
+		for (int i = 0; i < indices.length; i += 6, j += 4)
+		{
+			indices[i] = j;
+			indices[i + 1] = (short)(j + 1);
+			indices[i + 2] = (short)(j + 2);
+			indices[i + 3] = (short)(j + 2);
+			indices[i + 4] = (short)(j + 3);
+			indices[i + 5] = j;
+		}
+		mesh.setIndices(indices);
+
+		// every OpenGL ES 2.0 device has at least 8 texture units for the
+		// fragment shader, but there is no harm in asking
+		IntBuffer units = BufferUtils.newIntBuffer(16);
+		Gdx.gl.glGetIntegerv(GL20.GL_MAX_TEXTURE_IMAGE_UNITS, units);
+		textures = new Texture[Math.min(Constants.MULTI_TEXTURE_UNITS, units.get(0))];
+
+		shader = new ShaderProgram(Gdx.files.internal(Constants.shaderMultiTextureVertex).readString(),
+		        "#define TEXTURES " + textures.length + "\n"
+		                + Gdx.files.internal(Constants.shaderMultiTextureFragment).readString());
+		if (!shader.isCompiled())
+			throw new GdxRuntimeException("Could not compile shader program: " + shader.getLog());
+		projectionMatrix.setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+		converter.begin();
+	}
+
+	/**
+	 * Number of textures the batch binds at once.
+	 *
+	 * @return
+	 */
+	public int getMaxTextures()
+	{
+		return textures.length;
+	}
+
+	@Override
+	public void begin()
+	{
+		if (drawing)
+			throw new IllegalStateException("MultiTextureBatch.end must be called before begin.");
+		renderCalls = 0;
+		Gdx.gl.glDepthMask(false);
+		ShaderProgram program = getCurrentShader();
+		program.begin();
+		setupUniforms(program);
+		drawing = true;
+	}
+
+	@Override
+	public void end()
+	{
+		if (!drawing)
+			throw new IllegalStateException("MultiTextureBatch.begin must be called before end.");
+		if (idx > 0)
+			flush();
+		drawing = false;
+		Gdx.gl.glDepthMask(true);
+		if (!blendingDisabled)
+			Gdx.gl.glDisable(GL20.GL_BLEND);
+		getCurrentShader().end();
+	}
+
+	private ShaderProgram getCurrentShader()
+	{
+		return customShader != null ? customShader : shader;
+	}
+
+	private void setupUniforms(ShaderProgram program)
+	{
+		combinedMatrix.set(projectionMatrix).mul(transformMatrix);
+		program.setUniformMatrix("u_projTrans", combinedMatrix);
+		for (int i = 0; i < textures.length; i++)
+			program.setUniformi("u_textures[" + i + "]", i);
+	}
+
+	@Override
+	public void draw(Texture texture, float[] spriteVertices, int offset, int count)
+	{
+		if (!drawing)
+			throw new IllegalStateException("MultiTextureBatch.begin must be called before draw.");
+		float[] vertices = this.vertices;
+		for (int end = offset + count; offset < end; offset += BatchRecorder.SPRITE_SIZE)
+		{
+			if (idx == vertices.length)
+				flush();
+			float unit = textureUnit(texture);
+			for (int i = 0; i < 4; i++)
+			{
+				int from = offset + i * RECORDED_VERTEX_SIZE;
+				vertices[idx] = spriteVertices[from];
+				vertices[idx + 1] = spriteVertices[from + 1];
+				vertices[idx + 2] = spriteVertices[from + 2];
+				vertices[idx + 3] = spriteVertices[from + 3];
+				vertices[idx + 4] = spriteVertices[from + 4];
+				vertices[idx + 5] = unit;
+				idx += VERTEX_SIZE;
+			}
+		}
+	}
+
+	/**
+	 * Finds the unit the texture is bound to, and gives it one if it has
+	 * none yet. When all units are taken, the sprites so far are drawn and
+	 * the units are handed out again.
+	 */
+	private float textureUnit(Texture texture)
+	{
+		if (texture == lastTexture)
+			return lastTextureUnit;
+		int unit = -1;
+		for (int i = 0; i < textureCount; i++)
+		{
+			if (textures[i] == texture)
+			{
+				unit = i;
+				break;
+			}
+		}
+		if (unit < 0)
+		{
+			if (textureCount == textures.length)
+				flush();
+			unit = textureCount++;
+			textures[unit] = texture;
+		}
+		lastTexture = texture;
+		lastTextureUnit = unit;
+		return unit;
+	}
+
+	/**
+	 * Draws what the converter was just asked to draw.
+	 */
+	private void drawConverted()
+	{
+		float[] spriteVertices = converter.getVertices();
+		for (int i = 0; i < converter.size(); i++)
+			draw(converter.getTexture(i), spriteVertices, i * BatchRecorder.SPRITE_SIZE, BatchRecorder.SPRITE_SIZE);
+		converter.clear();
+	}
+
+	@Override
+	public void flush()
+	{
+		if (idx == 0)
+		{
+			textureCount = 0;
+			lastTexture = null;
+			return;
+		}
+		renderCalls++;
+		// bind unit 0 last, so it is the active one again afterwards
+		for (int i = textureCount - 1; i >= 0; i--)
+			textures[i].bind(i);
+		int count = idx / SPRITE_SIZE * 6;
+		mesh.setVertices(vertices, 0, idx);
+		mesh.getIndicesBuffer().position(0);
+		mesh.getIndicesBuffer().limit(count);
+		if (blendingDisabled)
+		{
+			Gdx.gl.glDisable(GL20.GL_BLEND);
+		} else
+		{
+			Gdx.gl.glEnable(GL20.GL_BLEND);
+			if (blendSrcFunc != -1)
+				Gdx.gl.glBlendFunc(blendSrcFunc, blendDstFunc);
+		}
+		mesh.render(getCurrentShader(), GL20.GL_TRIANGLES, 0, count);
+		idx = 0;
+		for (int i = 0; i < textureCount; i++)
+			textures[i] = null;
+		textureCount = 0;
+		lastTexture = null;
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, float originX, float originY, float width, float height,
+	        float scaleX, float scaleY, float rotation, int srcX, int srcY, int srcWidth, int srcHeight,
+	        boolean flipX, boolean flipY)
+	{
+		converter.draw(texture, x, y, originX, originY, width, height, scaleX, scaleY, rotation, srcX, srcY,
+		        srcWidth, srcHeight, flipX, flipY);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, float width, float height, int srcX, int srcY,
+	        int srcWidth, int srcHeight, boolean flipX, boolean flipY)
+	{
+		converter.draw(texture, x, y, width, height, srcX, srcY, srcWidth, srcHeight, flipX, flipY);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, int srcX, int srcY, int srcWidth, int srcHeight)
+	{
+		converter.draw(texture, x, y, srcX, srcY, srcWidth, srcHeight);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, float width, float height, float u, float v, float u2,
+	        float v2)
+	{
+		converter.draw(texture, x, y, width, height, u, v, u2, v2);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y)
+	{
+		converter.draw(texture, x, y);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(Texture texture, float x, float y, float width, float height)
+	{
+		converter.draw(texture, x, y, width, height);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(TextureRegion region, float x, float y)
+	{
+		converter.draw(region, x, y);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(TextureRegion region, float x, float y, float width, float height)
+	{
+		converter.draw(region, x, y, width, height);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(TextureRegion region, float x, float y, float originX, float originY, float width,
+	        float height, float scaleX, float scaleY, float rotation)
+	{
+		converter.draw(region, x, y, originX, originY, width, height, scaleX, scaleY, rotation);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(TextureRegion region, float x, float y, float originX, float originY, float width,
+	        float height, float scaleX, float scaleY, float rotation, boolean clockwise)
+	{
+		converter.draw(region, x, y, originX, originY, width, height, scaleX, scaleY, rotation, clockwise);
+		drawConverted();
+	}
+
+	@Override
+	public void draw(TextureRegion region, float width, float height, Affine2 transform)
+	{
+		converter.draw(region, width, height, transform);
+		drawConverted();
+	}
+
+	@Override
+	public void setColor(Color tint)
+	{
+		color.set(tint);
+		packedColor = tint.toFloatBits();
+		converter.setColor(packedColor);
+	}
+
+	@Override
+	public void setColor(float r, float g, float b, float a)
+	{
+		color.set(r, g, b, a);
+		packedColor = color.toFloatBits();
+		converter.setColor(packedColor);
+	}
+
+	@Override
+	public void setColor(float color)
+	{
+		converter.setColor(color);
+		this.color.set(converter.getColor());
+		packedColor = color;
+	}
+
+	@Override
+	public Color getColor()
+	{
+		return color;
+	}
+
+	@Override
+	public float getPackedColor()
+	{
+		return packedColor;
+	}
+
+	@Override
+	public void disableBlending()
+	{
+		if (blendingDisabled)
+			return;
+		flush();
+		blendingDisabled = true;
+	}
+
+	@Override
+	public void enableBlending()
+	{
+		if (!blendingDisabled)
+			return;
+		flush();
+		blendingDisabled = false;
+	}
+
+	@Override
+	public void setBlendFunction(int srcFunc, int dstFunc)
+	{
+		if (blendSrcFunc == srcFunc && blendDstFunc == dstFunc)
+			return;
+		flush();
+		blendSrcFunc = srcFunc;
+		blendDstFunc = dstFunc;
+	}
+
+	@Override
+	public int getBlendSrcFunc()
+	{
+		return blendSrcFunc;
+	}
+
+	@Override
+	public int getBlendDstFunc()
+	{
+		return blendDstFunc;
+	}
+
+	@Override
+	public Matrix4 getProjectionMatrix()
+	{
+		return projectionMatrix;
+	}
+
+	@Override
+	public Matrix4 getTransformMatrix()
+	{
+		return transformMatrix;
+	}
+
+	@Override
+	public void setProjectionMatrix(Matrix4 projection)
+	{
+		if (drawing)
+			flush();
+		projectionMatrix.set(projection);
+		if (drawing)
+			setupUniforms(getCurrentShader());
+	}
+
+	@Override
+	public void setTransformMatrix(Matrix4 transform)
+	{
+		if (drawing)
+			flush();
+		transformMatrix.set(transform);
+		if (drawing)
+			setupUniforms(getCurrentShader());
+	}
+
+	@Override
+	public void setShader(ShaderProgram shader)
+	{
+		if (drawing)
+		{
+			flush();
+			getCurrentShader().end();
+		}
+		customShader = shader;
+		if (drawing)
+		{
+			getCurrentShader().begin();
+			setupUniforms(getCurrentShader());
+		}
+	}
+
+	@Override
+	public ShaderProgram getShader()
+	{
+		return getCurrentShader();
+	}
+
+	@Override
+	public boolean isBlendingEnabled()
+	{
+		return !blendingDisabled;
+	}
+
+	@Override
+	public boolean isDrawing()
+	{
+		return drawing;
+	}
+
+	@Override
+	public void dispose()
+	{
+		mesh.dispose();
+		shader.dispose();
+		converter.dispose();
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.wilson.gdx.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * A grid of cells that are either solid or empty, packed into 64 cells per
+ * long. Every row starts at a new long so looking at a cell or walking along
+ * a row never has to leave the row.
+ *
+ * Small grids keep their bits in a long[]. Huge grids can keep them in a
+ * direct ByteBuffer instead, so they live outside of the Java heap.
+ *
+ * @author Chris
+ *
+ */
+public class OccupancyBitmap
+{
+
+	public final int width;
+	public final int height;
+
+	private final int wordsPerRow;
+	private final long[] words;
+	private final LongBuffer buffer;
+
+	/**
+	 * Creates an empty grid.
+	 *
+	 * @param width
+	 * @param height
+	 * @param offHeap
+	 *            keep the bits in a direct ByteBuffer instead of a long[]
+	 */
+	public OccupancyBitmap(int width, int height, boolean offHeap)
+	{
+		this.width = width;
+		this.height = height;
+		wordsPerRow = (width + 63) >>> 6;
+		int numWords = wordsPerRow * height;
+		if (offHeap)
+		{
+			words = null;
+			buffer = ByteBuffer.allocateDirect(numWords * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+		} else
+		{
+			words = new long[numWords];
+			buffer = null;
+		}
+	}
+
+	private long getWord(int index)
+	{
+		return words != null ? words[index] : buffer.get(index);
+	}
+
+	private void setWord(int index, long word)
+	{
+		if (words != null)
+			words[index] = word;
+		else
+			buffer.put(index, word);
+	}
+
+	/**
+	 * Marks a cell as solid.
+	 *
+	 * @param x
+	 * @param y
+	 */
+	public void set(int x, int y)
+	{
+		int index = y * wordsPerRow + (x >>> 6);
+		setWord(index, getWord(index) | (1L << x));
+	}
+
+	/**
+	 * Marks a range of cells in a row as solid.
+	 *
+	 * @param x
+	 * @param y
+	 * @param length
+	 */
+	public void set(int x, int y, int length)
+	{
+		for (int i = x; i < x + length; i++)
+			set(i, y);
+	}
+
+	/**
+	 * Marks a range of cells in a row as empty.
+	 *
+	 * @param x
+	 * @param y
+	 * @param length
+	 */
+	public void clear(int x, int y, int length)
+	{
+		for (int i = x; i < x + length; i++)
+		{
+			int index = y * wordsPerRow + (i >>> 6);
+			setWord(index, getWord(index) & ~(1L << i));
+		}
+	}
+
+	/**
+	 * Tells whether all cells of a range in a row are solid.
+	 *
+	 * @param x
+	 * @param y
+	 * @param length
+	 * @return
+	 */
+	public boolean isSolid(int x, int y, int length)
+	{
+		for (int i = x; i < x + length; i++)
+		{
+			if (!isSolid(i, y))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Tells whether a cell is solid. Cells outside of the grid are empty.
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public boolean isSolid(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return false;
+		return (getWord(y * wordsPerRow + (x >>> 6)) & (1L << x)) != 0;
+	}
+
+	/**
+	 * Finds the first cell of the run of solid cells that contains the given
+	 * cell. Whole longs of solid cells are skipped at once.
+	 *
+	 * @param x
+	 *            a solid cell
+	 * @param y
+	 * @return
+	 */
+	public int runStart(int x, int y)
+	{
+		int rowStart = y * wordsPerRow;
+		int word = x >>> 6;
+		// cells at and below x inside the first long
+		long mask = (2L << (x & 63)) - 1;
+		while (word >= 0)
+		{
+			long empty = ~getWord(rowStart + word) & mask;
+			if (empty != 0)
+				return (word << 6) + 64 - Long.numberOfLeadingZeros(empty);
+			word--;
+			mask = -1L;
+		}
+		return 0;
+	}
+
+	/**
+	 * Finds the highest solid cell in a column, starting at the given row and
+	 * going down.
+	 *
+	 * @param x
+	 * @param y
+	 * @return the row of the cell or -1 if there is none
+	 */
+	public int highestSolid(int x, int y)
+	{
+		if (x < 0 || x >= width)
+			return -1;
+		for (int row = Math.min(y, height - 1); row >= 0; row--)
+		{
+			if ((getWord(row * wordsPerRow + (x >>> 6)) & (1L << x)) != 0)
+				return row;
+		}
+		return -1;
+	}
+
+	/**
+	 * Covers the solid cells with rectangles, greedily: starting at the lowest
+	 * row, every solid cell that is not covered yet starts a rectangle that
+	 * is made as wide as its run and then as tall as the rows above allow.
+	 * This does not always find the fewest rectangles, but gets close for the
+	 * blocky shapes of a level and only takes one pass.
+	 *
+	 * The bitmap is empty afterwards.
+	 *
+	 * @param out
+	 *            receives the rectangles in cell units
+	 * @return out
+	 */
+	public Array<Rectangle> takeRectangles(Array<Rectangle> out)
+	{
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				if (!isSolid(x, y))
+					continue;
+				int w = 1;
+				while (isSolid(x + w, y))
+					w++;
+				int h = 1;
+				while (y + h < height && isSolid(x, y + h, w))
+					h++;
+				for (int row = y; row < y + h; row++)
+					clear(x, row, w);
+				out.add(new Rectangle(x, y, w, h));
+				x += w - 1;
+			}
+		}
+		return out;
+	}
+
+}
@@ -0,0 +1,490 @@
+package com.wilson.gdx.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.CircleShape;
+import com.badlogic.gdx.physics.box2d.ContactListener;
+import com.badlogic.gdx.physics.box2d.EdgeShape;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.Shape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.wilson.gdx.game.objects.AbstractGameObject;
+
+/**
+ * Splits the physics of a level into regions along the x-axis, each with a
+ * Box2D World of its own. The worlds don't know about each other, so they
+ * can be stepped at the same time on a pool of threads.
+ *
+ * Dynamic bodies live in the region their center is in. When one moves into
+ * another region, it is rebuilt there with the same fixtures, velocity and
+ * user data, and the old one is destroyed. If the user data is a game
+ * object, its body is replaced as well.
+ *
+ * Static and kinematic bodies can be shared with the regions they reach
+ * into (see share()). The copies in the other regions follow the original
+ * before every step, so dynamic bodies near a border still collide with
+ * them. Dynamic bodies in different regions don't collide with each other.
+ *
+ * With a single region this is the same as using one World directly, and
+ * nothing runs on other threads.
+ *
+ * @author Chris
+ *
+ */
+public class PhysicsRegions implements Disposable
+{
+
+	// how far a dynamic body has to be inside another region to move there,
+	// so bodies on a border don't move back and forth
+	private static final float HANDOVER_MARGIN = 0.5f;
+
+	private static ExecutorService stepPool;
+
+	private class Region implements Callable<Region>
+	{
+		final int index;
+		final World world;
+		float timeStep;
+		int velocityIterations;
+		int positionIterations;
+
+		Region(int index)
+		{
+			this.index = index;
+			world = new World(gravity, true);
+		}
+
+		@Override
+		public Region call()
+		{
+			world.step(timeStep, velocityIterations, positionIterations);
+			return this;
+		}
+	}
+
+	private final float regionWidth;
+	private final float shareDistance;
+	private final Vector2 gravity;
+	private final IntMap<Region> regions = new IntMap<Region>();
+	private final Array<World> worlds = new Array<World>();
+	private ContactListener contactListener;
+
+	// copies of shared bodies in other regions
+	private final ObjectMap<Body, Array<Body>> copies = new ObjectMap<Body, Array<Body>>();
+
+	private final List<Future<Region>> steps = new ArrayList<Future<Region>>();
+	private final Array<Body> bodies = new Array<Body>();
+	private final Array<Body> leaving = new Array<Body>();
+	private final Vector2 vertex = new Vector2();
+
+	/**
+	 * @param regionWidth
+	 *            width of a region in meters, Float.POSITIVE_INFINITY for a
+	 *            single region
+	 * @param shareDistance
+	 *            how far past the border of a region shared bodies are still
+	 *            copied into it
+	 * @param gravity
+	 */
+	public PhysicsRegions(float regionWidth, float shareDistance, Vector2 gravity)
+	{
+		this.regionWidth = regionWidth;
+		this.shareDistance = shareDistance;
+		this.gravity = new Vector2(gravity);
+		// the natives are usually loaded by the first World, but ours are
+		// only created with their first body and shapes may come before that
+		Box2D.init();
+	}
+
+	private int regionIndex(float x)
+	{
+		if (Float.isInfinite(regionWidth))
+			return 0;
+		return (int) Math.floor(x / regionWidth);
+	}
+
+	private Region getRegion(int index)
+	{
+		Region region = regions.get(index);
+		if (region == null)
+		{
+			region = new Region(index);
+			region.world.setContactListener(contactListener);
+			regions.put(index, region);
+			worlds.add(region.world);
+		}
+		return region;
+	}
+
+	/**
+	 * Sets the contact listener of all worlds, including the ones of regions
+	 * that are created later. The listener is called from the threads that
+	 * step the regions, possibly from several at once.
+	 *
+	 * @param contactListener
+	 */
+	public void setContactListener(ContactListener contactListener)
+	{
+		this.contactListener = contactListener;
+		for (World world : worlds)
+			world.setContactListener(contactListener);
+	}
+
+	/**
+	 * Returns the world of the region that contains x, creating it if needed.
+	 *
+	 * @param x
+	 * @return
+	 */
+	public World getWorld(float x)
+	{
+		return getRegion(regionIndex(x)).world;
+	}
+
+	/**
+	 * All worlds, e.g. for debug rendering.
+	 *
+	 * @return
+	 */
+	public Array<World> getWorlds()
+	{
+		return worlds;
+	}
+
+	/**
+	 * Creates a body in the region its position is in.
+	 *
+	 * @param bodyDef
+	 * @return
+	 */
+	public Body createBody(BodyDef bodyDef)
+	{
+		return getWorld(bodyDef.position.x).createBody(bodyDef);
+	}
+
+	/**
+	 * Copies a static or kinematic body, fixtures included, into the other
+	 * regions it reaches into. Call this after its fixtures were created.
+	 *
+	 * @param body
+	 * @param minX
+	 *            left end of the body in world coordinates
+	 * @param maxX
+	 *            right end of the body in world coordinates
+	 */
+	public void share(Body body, float minX, float maxX)
+	{
+		int first = regionIndex(minX - shareDistance);
+		int last = regionIndex(maxX + shareDistance);
+		World home = body.getWorld();
+		for (int index = first; index <= last; index++)
+		{
+			Region region = getRegion(index);
+			if (region.world == home)
+				continue;
+			Array<Body> bodyCopies = copies.get(body);
+			if (bodyCopies == null)
+			{
+				bodyCopies = new Array<Body>(false, 2);
+				copies.put(body, bodyCopies);
+			}
+			bodyCopies.add(copy(body, region.world));
+		}
+	}
+
+	/**
+	 * Destroys a body and all of its copies.
+	 *
+	 * @param body
+	 */
+	public void destroyBody(Body body)
+	{
+		Array<Body> bodyCopies = copies.remove(body);
+		if (bodyCopies != null)
+		{
+			for (Body copy : bodyCopies)
+				copy.getWorld().destroyBody(copy);
+		}
+		body.getWorld().destroyBody(body);
+	}
+
+	/**
+	 * Switches a body and all of its copies on or off. Inactive bodies stay in
+	 * their world but take no part in the simulation, so they can be used
+	 * again later without creating new native objects.
+	 *
+	 * @param body
+	 * @param active
+	 */
+	public void setActive(Body body, boolean active)
+	{
+		Array<Body> bodyCopies = copies.get(body);
+		if (bodyCopies != null)
+		{
+			for (Body copy : bodyCopies)
+				copy.setActive(active);
+		}
+		body.setActive(active);
+	}
+
+	/**
+	 * Sets the user data of a body and all of its copies, so contacts with a
+	 * copy report the same object as contacts with the body.
+	 *
+	 * @param body
+	 * @param userData
+	 */
+	public void setUserData(Body body, Object userData)
+	{
+		Array<Body> bodyCopies = copies.get(body);
+		if (bodyCopies != null)
+		{
+			for (Body copy : bodyCopies)
+				copy.setUserData(userData);
+		}
+		body.setUserData(userData);
+	}
+
+	/**
+	 * Steps all regions. More than one region is stepped on the thread pool,
+	 * and this waits until all of them are done. Afterwards dynamic bodies
+	 * that left their region are moved to the one they are in now.
+	 *
+	 * @param timeStep
+	 * @param velocityIterations
+	 * @param positionIterations
+	 */
+	public void step(float timeStep, int velocityIterations, int positionIterations)
+	{
+		syncCopies();
+		if (regions.size == 1)
+		{
+			regions.values().next().world.step(timeStep, velocityIterations, positionIterations);
+			handOver();
+			return;
+		}
+		if (stepPool == null)
+		{
+			stepPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "PhysicsStep");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		for (Region region : regions.values())
+		{
+			region.timeStep = timeStep;
+			region.velocityIterations = velocityIterations;
+			region.positionIterations = positionIterations;
+			steps.add(stepPool.submit(region));
+		}
+		try
+		{
+			for (Future<Region> step : steps)
+				step.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new GdxRuntimeException("Interrupted while stepping the physics", e);
+		} catch (ExecutionException e)
+		{
+			throw new GdxRuntimeException("Couldn't step the physics", e.getCause());
+		} finally
+		{
+			steps.clear();
+		}
+		handOver();
+	}
+
+	/**
+	 * Puts the copies of shared bodies where their originals are, moving the
+	 * same way.
+	 */
+	private void syncCopies()
+	{
+		for (ObjectMap.Entry<Body, Array<Body>> entry : copies.entries())
+		{
+			Body body = entry.key;
+			for (Body copy : entry.value)
+			{
+				copy.setTransform(body.getPosition(), body.getAngle());
+				copy.setLinearVelocity(body.getLinearVelocity());
+				copy.setAngularVelocity(body.getAngularVelocity());
+			}
+		}
+	}
+
+	/**
+	 * Moves the dynamic bodies that are well outside of their region to the
+	 * region they are in now.
+	 */
+	private void handOver()
+	{
+		if (Float.isInfinite(regionWidth))
+			return;
+		for (Region region : regions.values())
+		{
+			float minX = region.index * regionWidth - HANDOVER_MARGIN;
+			float maxX = (region.index + 1) * regionWidth + HANDOVER_MARGIN;
+			region.world.getBodies(bodies);
+			for (Body body : bodies)
+			{
+				if (body.getType() != BodyType.DynamicBody || !body.isActive())
+					continue;
+				float x = body.getPosition().x;
+				if (x < minX || x >= maxX)
+					leaving.add(body);
+			}
+		}
+		bodies.clear();
+		for (Body body : leaving)
+		{
+			Body moved = copy(body, getWorld(body.getPosition().x));
+			Object userData = body.getUserData();
+			if (userData instanceof AbstractGameObject)
+				((AbstractGameObject) userData).body = moved;
+			body.getWorld().destroyBody(body);
+		}
+		leaving.clear();
+	}
+
+	/**
+	 * Builds a body just like the given one in another world.
+	 *
+	 * @param body
+	 * @param world
+	 * @return
+	 */
+	private Body copy(Body body, World world)
+	{
+		BodyDef bodyDef = new BodyDef();
+		bodyDef.type = body.getType();
+		bodyDef.position.set(body.getPosition());
+		bodyDef.angle = body.getAngle();
+		bodyDef.linearVelocity.set(body.getLinearVelocity());
+		bodyDef.angularVelocity = body.getAngularVelocity();
+		bodyDef.linearDamping = body.getLinearDamping();
+		bodyDef.angularDamping = body.getAngularDamping();
+		bodyDef.allowSleep = body.isSleepingAllowed();
+		bodyDef.awake = body.isAwake();
+		bodyDef.fixedRotation = body.isFixedRotation();
+		bodyDef.bullet = body.isBullet();
+		bodyDef.active = body.isActive();
+		bodyDef.gravityScale = body.getGravityScale();
+		Body copy = world.createBody(bodyDef);
+		copy.setUserData(body.getUserData());
+
+		FixtureDef fixtureDef = new FixtureDef();
+		for (Fixture fixture : body.getFixtureList())
+		{
+			Shape shape = copy(fixture.getShape());
+			fixtureDef.shape = shape;
+			fixtureDef.density = fixture.getDensity();
+			fixtureDef.friction = fixture.getFriction();
+			fixtureDef.restitution = fixture.getRestitution();
+			fixtureDef.isSensor = fixture.isSensor();
+			fixtureDef.filter.categoryBits = fixture.getFilterData().categoryBits;
+			fixtureDef.filter.maskBits = fixture.getFilterData().maskBits;
+			fixtureDef.filter.groupIndex = fixture.getFilterData().groupIndex;
+			copy.createFixture(fixtureDef).setUserData(fixture.getUserData());
+			shape.dispose();
+		}
+		return copy;
+	}
+
+	private Shape copy(Shape shape)
+	{
+		switch (shape.getType())
+		{
+		case Circle:
+		{
+			CircleShape circle = new CircleShape();
+			circle.setRadius(shape.getRadius());
+			circle.setPosition(((CircleShape) shape).getPosition());
+			return circle;
+		}
+		case Edge:
+		{
+			EdgeShape source = (EdgeShape) shape;
+			EdgeShape edge = new EdgeShape();
+			Vector2 vertex1 = new Vector2();
+			source.getVertex1(vertex1);
+			source.getVertex2(vertex);
+			edge.set(vertex1, vertex);
+			return edge;
+		}
+		case Polygon:
+		{
+			PolygonShape source = (PolygonShape) shape;
+			float[] vertices = new float[source.getVertexCount() * 2];
+			for (int i = 0; i < source.getVertexCount(); i++)
+			{
+				source.getVertex(i, vertex);
+				vertices[i * 2] = vertex.x;
+				vertices[i * 2 + 1] = vertex.y;
+			}
+			PolygonShape polygon = new PolygonShape();
+			polygon.set(vertices);
+			return polygon;
+		}
+		case Chain:
+		{
+			ChainShape source = (ChainShape) shape;
+			boolean looped = source.isLooped();
+			// a loop repeats its first vertex at the end
+			int count = looped ? source.getVertexCount() - 1 : source.getVertexCount();
+			float[] vertices = new float[count * 2];
+			for (int i = 0; i < count; i++)
+			{
+				source.getVertex(i, vertex);
+				vertices[i * 2] = vertex.x;
+				vertices[i * 2 + 1] = vertex.y;
+			}
+			ChainShape chain = new ChainShape();
+			if (looped)
+				chain.createLoop(vertices);
+			else
+				chain.createChain(vertices);
+			return chain;
+		}
+		default:
+			throw new GdxRuntimeException("Can't copy shapes of type " + shape.getType());
+		}
+	}
+
+	@Override
+	public void dispose()
+	{
+		for (Region region : regions.values())
+			region.world.dispose();
+		regions.clear();
+		worlds.clear();
+		copies.clear();
+	}
+
+}
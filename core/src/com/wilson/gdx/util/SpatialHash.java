@@ -0,0 +1,208 @@
+package com.wilson.gdx.util;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * A uniform grid that remembers which items overlap which cell. Asking for
+ * the items near an area only looks at the cells the area touches, so the
+ * cost does not depend on how many items there are in total.
+ *
+ * Items are stored with the bounds they were inserted with. The same bounds
+ * have to be given again to remove an item, so moving items have to be
+ * removed and inserted again.
+ *
+ * Every cell also remembers the first cell (lower left corner) of each of
+ * its items. An item that spans several cells is only reported by the one
+ * cell of the query that holds the item's lower left corner, or by the
+ * query's first row or column if the corner lies outside the query. That
+ * way query() never has to search its result for duplicates.
+ *
+ * @author Chris
+ *
+ * @param <T>
+ */
+public class SpatialHash<T>
+{
+
+	private final float cellSize;
+	private final LongMap<Cell<T>> cells = new LongMap<Cell<T>>();
+	private final Pool<Cell<T>> cellPool = new Pool<Cell<T>>()
+	{
+		@Override
+		protected Cell<T> newObject()
+		{
+			return new Cell<T>();
+		}
+	};
+
+	/**
+	 * The items of one cell, each with the first cell its bounds overlap.
+	 * The three arrays are unordered and always change together.
+	 */
+	private static class Cell<T>
+	{
+		final Array<T> items = new Array<T>(false, 4);
+		final IntArray firstX = new IntArray(false, 4);
+		final IntArray firstY = new IntArray(false, 4);
+
+		void add(T item, int x, int y)
+		{
+			items.add(item);
+			firstX.add(x);
+			firstY.add(y);
+		}
+
+		boolean remove(T item)
+		{
+			int index = items.indexOf(item, true);
+			if (index == -1)
+				return false;
+			items.removeIndex(index);
+			firstX.removeIndex(index);
+			firstY.removeIndex(index);
+			return true;
+		}
+
+		void clear()
+		{
+			items.clear();
+			firstX.clear();
+			firstY.clear();
+		}
+	}
+
+	private int size;
+
+	public SpatialHash(float cellSize)
+	{
+		this.cellSize = cellSize;
+	}
+
+	private int cell(float coordinate)
+	{
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static long key(int cellX, int cellY)
+	{
+		return ((long) cellX << 32) | (cellY & 0xffffffffL);
+	}
+
+	/**
+	 * Adds an item to every cell its bounds overlap.
+	 *
+	 * @param item
+	 * @param bounds
+	 */
+	public void insert(T item, Rectangle bounds)
+	{
+		int firstX = cell(bounds.x);
+		int firstY = cell(bounds.y);
+		int lastX = cell(bounds.x + bounds.width);
+		int lastY = cell(bounds.y + bounds.height);
+		for (int x = firstX; x <= lastX; x++)
+		{
+			for (int y = firstY; y <= lastY; y++)
+			{
+				long key = key(x, y);
+				Cell<T> cell = cells.get(key);
+				if (cell == null)
+				{
+					cell = cellPool.obtain();
+					cells.put(key, cell);
+				}
+				cell.add(item, firstX, firstY);
+			}
+		}
+		size++;
+	}
+
+	/**
+	 * Removes an item that was inserted with the given bounds. Cells that
+	 * become empty are dropped.
+	 *
+	 * @param item
+	 * @param bounds
+	 */
+	public void remove(T item, Rectangle bounds)
+	{
+		boolean removed = false;
+		int lastX = cell(bounds.x + bounds.width);
+		int lastY = cell(bounds.y + bounds.height);
+		for (int x = cell(bounds.x); x <= lastX; x++)
+		{
+			for (int y = cell(bounds.y); y <= lastY; y++)
+			{
+				long key = key(x, y);
+				Cell<T> cell = cells.get(key);
+				if (cell == null || !cell.remove(item))
+					continue;
+				removed = true;
+				if (cell.items.size == 0)
+				{
+					cells.remove(key);
+					cellPool.free(cell);
+				}
+			}
+		}
+		if (removed)
+			size--;
+	}
+
+	/**
+	 * Adds all items of the cells the area overlaps to the given array. Every
+	 * item is added only once, but it is not checked whether the item really
+	 * overlaps the area. Items already in the array are not looked at.
+	 *
+	 * @param area
+	 * @param result
+	 * @return
+	 */
+	public Array<T> query(Rectangle area, Array<T> result)
+	{
+		int firstX = cell(area.x);
+		int firstY = cell(area.y);
+		int lastX = cell(area.x + area.width);
+		int lastY = cell(area.y + area.height);
+		for (int x = firstX; x <= lastX; x++)
+		{
+			for (int y = firstY; y <= lastY; y++)
+			{
+				Cell<T> cell = cells.get(key(x, y));
+				if (cell == null)
+					continue;
+				Array<T> items = cell.items;
+				int[] itemFirstX = cell.firstX.items;
+				int[] itemFirstY = cell.firstY.items;
+				for (int i = 0; i < items.size; i++)
+				{
+					// the first cell of the item that is part of the query
+					if (Math.max(itemFirstX[i], firstX) == x && Math.max(itemFirstY[i], firstY) == y)
+						result.add(items.get(i));
+				}
+			}
+		}
+		return result;
+	}
+
+	public void clear()
+	{
+		for (Cell<T> cell : cells.values())
+		{
+			cell.clear();
+			cellPool.free(cell);
+		}
+		cells.clear();
+		size = 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.wilson.gdx.util;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Many copies of one sprite, each written down as just its position,
+ * rotation, scale and animation frame. Everything the copies have in common
+ * (size, origin and the frames themselves) is stored once. The
+ * InstancedRenderer draws all copies with a single draw call and works out
+ * their corners on the GPU.
+ *
+ * Like the BatchRecorder this only holds numbers and never touches OpenGL,
+ * so it can be filled on any thread.
+ *
+ * @author Chris
+ *
+ */
+public class SpriteInstances
+{
+
+	// floats per instance: x, y, rotation, scale x, scale y, frame
+	public static final int INSTANCE_SIZE = 6;
+
+	private final FloatArray instances = new FloatArray(INSTANCE_SIZE * 256);
+
+	private TextureRegion[] frames;
+	private float width;
+	private float height;
+	private float originX;
+	private float originY;
+
+	/**
+	 * Sets what all instances look like. Called by the first object that is
+	 * added, the others are the same.
+	 *
+	 * @param frames
+	 *            the frames of the animation, all from one texture
+	 * @param width
+	 * @param height
+	 * @param originX
+	 *            point the instances are rotated and scaled around
+	 * @param originY
+	 */
+	public void setSprite(TextureRegion[] frames, float width, float height, float originX, float originY)
+	{
+		for (int i = 1; i < frames.length; i++)
+		{
+			if (frames[i].getTexture() != frames[0].getTexture())
+				throw new GdxRuntimeException("All frames of instanced sprites have to be in one texture");
+		}
+		this.frames = frames;
+		this.width = width;
+		this.height = height;
+		this.originX = originX;
+		this.originY = originY;
+	}
+
+	/**
+	 * Adds one copy of the sprite.
+	 *
+	 * @param x
+	 *            lower left corner, before rotating and scaling
+	 * @param y
+	 * @param rotation
+	 *            in degrees, counter clockwise around the origin
+	 * @param scaleX
+	 * @param scaleY
+	 * @param frame
+	 *            index into the frames
+	 */
+	public void add(float x, float y, float rotation, float scaleX, float scaleY, int frame)
+	{
+		float[] items = instances.ensureCapacity(INSTANCE_SIZE);
+		int i = instances.size;
+		items[i] = x;
+		items[i + 1] = y;
+		items[i + 2] = rotation;
+		items[i + 3] = scaleX;
+		items[i + 4] = scaleY;
+		items[i + 5] = frame;
+		instances.size += INSTANCE_SIZE;
+	}
+
+	/**
+	 * Forgets the instances. What they look like is kept.
+	 */
+	public void clear()
+	{
+		instances.clear();
+	}
+
+	public boolean isEmpty()
+	{
+		return instances.size == 0;
+	}
+
+	/**
+	 * Number of instances.
+	 *
+	 * @return
+	 */
+	public int size()
+	{
+		return instances.size / INSTANCE_SIZE;
+	}
+
+	/**
+	 * The instances, INSTANCE_SIZE floats each. Only the first
+	 * size() * INSTANCE_SIZE floats are used.
+	 *
+	 * @return
+	 */
+	public float[] getInstances()
+	{
+		return instances.items;
+	}
+
+	public Texture getTexture()
+	{
+		return frames[0].getTexture();
+	}
+
+	public TextureRegion[] getFrames()
+	{
+		return frames;
+	}
+
+	public float getWidth()
+	{
+		return width;
+	}
+
+	public float getHeight()
+	{
+		return height;
+	}
+
+	public float getOriginX()
+	{
+		return originX;
+	}
+
+	public float getOriginY()
+	{
+		return originY;
+	}
+
+}
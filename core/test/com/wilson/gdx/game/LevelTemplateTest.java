@@ -0,0 +1,207 @@
+package com.wilson.gdx.game;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.wilson.gdx.game.Level.BLOCK_TYPE;
+import com.wilson.gdx.game.LevelTemplate.Entry;
+
+/**
+ * Checks that scanning a level image in bands gives exactly what a single
+ * scan over the whole image gives, above all for rock runs that go on from
+ * one row into the next and from one band into the next.
+ *
+ * @author Chris
+ *
+ */
+public class LevelTemplateTest
+{
+
+	private static final int EMPTY = BLOCK_TYPE.EMPTY.getColor();
+	private static final int ROCK = BLOCK_TYPE.ROCK.getColor();
+	private static final int ROCK_STATIC = BLOCK_TYPE.ROCK_STATIC.getColor();
+	private static final int GOLD_COIN = BLOCK_TYPE.ITEM_GOLD_COIN.getColor();
+	private static final int FEATHER = BLOCK_TYPE.ITEM_FEATHER.getColor();
+	private static final int PLAYER_SPAWNPOINT = BLOCK_TYPE.PLAYER_SPAWNPOINT.getColor();
+	private static final int GOAL = BLOCK_TYPE.GOAL.getColor();
+	// not a block type, produces a warning
+	private static final int UNKNOWN = 0x12345678;
+
+	/**
+	 * A level image held in an int array, RGBA like a Pixmap.
+	 */
+	private static class ArrayPixelSource implements LevelTemplate.PixelSource
+	{
+		final int width;
+		final int height;
+		final int[] pixels;
+
+		ArrayPixelSource(int width, int height)
+		{
+			this.width = width;
+			this.height = height;
+			pixels = new int[width * height];
+		}
+
+		@Override
+		public int getWidth()
+		{
+			return width;
+		}
+
+		@Override
+		public int getHeight()
+		{
+			return height;
+		}
+
+		@Override
+		public void readRow(int y, int[] row)
+		{
+			System.arraycopy(pixels, y * width, row, 0, width);
+		}
+	}
+
+	@Test
+	public void randomImagesMatchSingleBand()
+	{
+		Random random = new Random(1);
+		for (int i = 0; i < 200; i++)
+		{
+			int width = 1 + random.nextInt(40);
+			int height = 1 + random.nextInt(40);
+			ArrayPixelSource pixels = randomImage(random, width, height);
+			assertSameForAllBands("random image " + i, pixels);
+		}
+	}
+
+	@Test
+	public void rockRunsAcrossBandsMatchSingleBand()
+	{
+		// every row is rock from some x to the end and the next one starts
+		// with rock again, so the runs go on over every row and band boundary
+		Random random = new Random(2);
+		for (int i = 0; i < 50; i++)
+		{
+			int width = 1 + random.nextInt(20);
+			int height = 2 + random.nextInt(30);
+			ArrayPixelSource pixels = new ArrayPixelSource(width, height);
+			for (int y = 0; y < height; y++)
+			{
+				int rockFrom = random.nextInt(width);
+				int rockTo = random.nextInt(width + 1);
+				for (int x = 0; x < width; x++)
+					pixels.pixels[y * width + x] = x < rockTo || x >= rockFrom ? ROCK : EMPTY;
+			}
+			assertSameForAllBands("rock image " + i, pixels);
+		}
+	}
+
+	@Test
+	public void solidRockMatchesSingleBand()
+	{
+		// a single run through every band
+		ArrayPixelSource pixels = new ArrayPixelSource(7, 23);
+		Arrays.fill(pixels.pixels, ROCK);
+		assertSameForAllBands("solid rock", pixels);
+		LevelTemplate template = LevelTemplate.parse("solid rock", pixels, 23);
+		assertEquals(1, template.rocks.length);
+		assertEquals(7 * 23, template.rocks[0].length);
+	}
+
+	@Test
+	public void staticRocksAreSeparateRuns()
+	{
+		// a static run right after a floating one, going on into the next row
+		ArrayPixelSource pixels = new ArrayPixelSource(4, 2);
+		int[] image = { ROCK, ROCK, ROCK_STATIC, ROCK_STATIC, ROCK_STATIC, ROCK, EMPTY, ROCK };
+		System.arraycopy(image, 0, pixels.pixels, 0, image.length);
+		assertSameForAllBands("static rock", pixels);
+		LevelTemplate template = LevelTemplate.parse("static rock", pixels, 1);
+		assertEquals(4, template.rocks.length);
+		assertSameEntry("rock 0", new Entry(BLOCK_TYPE.ROCK, 0, 2, 2), template.rocks[0]);
+		assertSameEntry("rock 1", new Entry(BLOCK_TYPE.ROCK_STATIC, 2, 2, 3), template.rocks[1]);
+		assertSameEntry("rock 2", new Entry(BLOCK_TYPE.ROCK, 1, 1, 1), template.rocks[2]);
+		assertSameEntry("rock 3", new Entry(BLOCK_TYPE.ROCK, 3, 1, 1), template.rocks[3]);
+	}
+
+	@Test
+	public void largeImageMatchesSingleBand()
+	{
+		// big enough for parse() to scan it in parallel
+		Random random = new Random(3);
+		ArrayPixelSource pixels = randomImage(random, 300, 260);
+		assertSameTemplate("large image", LevelTemplate.parse("single", pixels, 1),
+		        LevelTemplate.parse("bands", pixels));
+	}
+
+	private static void assertSameForAllBands(String message, ArrayPixelSource pixels)
+	{
+		LevelTemplate expected = LevelTemplate.parse("single", pixels, 1);
+		for (int numBands = 2; numBands <= pixels.height; numBands++)
+			assertSameTemplate(message + ", " + numBands + " bands", expected,
+			        LevelTemplate.parse("bands", pixels, numBands));
+	}
+
+	/**
+	 * Pixels mostly repeat the one before, so there are long runs, with every
+	 * block type and an unknown color now and then.
+	 */
+	private static ArrayPixelSource randomImage(Random random, int width, int height)
+	{
+		int[] colors = { EMPTY, ROCK, ROCK, ROCK, ROCK_STATIC, GOLD_COIN, FEATHER, PLAYER_SPAWNPOINT, GOAL,
+		        UNKNOWN };
+		ArrayPixelSource pixels = new ArrayPixelSource(width, height);
+		int color = EMPTY;
+		for (int i = 0; i < pixels.pixels.length; i++)
+		{
+			if (random.nextInt(4) == 0)
+				color = colors[random.nextInt(colors.length)];
+			pixels.pixels[i] = color;
+		}
+		return pixels;
+	}
+
+	private static void assertSameTemplate(String message, LevelTemplate expected, LevelTemplate actual)
+	{
+		assertEquals(message, expected.width, actual.width);
+		assertEquals(message, expected.height, actual.height);
+		assertSameEntries(message + ", rocks", expected.rocks, actual.rocks);
+		assertSameEntries(message + ", gold coins", expected.goldcoins, actual.goldcoins);
+		assertSameEntries(message + ", feathers", expected.feathers, actual.feathers);
+		assertSameEntry(message + ", player spawn point", expected.playerSpawnpoint, actual.playerSpawnpoint);
+		assertSameEntry(message + ", goal", expected.goal, actual.goal);
+		assertArrayEquals(message + ", warnings", expected.warnings, actual.warnings);
+		assertEquals(message, expected.minX, actual.minX);
+		assertEquals(message, expected.minY, actual.minY);
+		assertEquals(message, expected.maxX, actual.maxX);
+		assertEquals(message, expected.maxY, actual.maxY);
+	}
+
+	private static void assertSameEntries(String message, Entry[] expected, Entry[] actual)
+	{
+		assertEquals(message + ", count", expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+			assertSameEntry(message + " [" + i + "]", expected[i], actual[i]);
+	}
+
+	private static void assertSameEntry(String message, Entry expected, Entry actual)
+	{
+		if (expected == null)
+		{
+			assertNull(message, actual);
+			return;
+		}
+		assertEquals(message, expected.type, actual.type);
+		assertEquals(message, expected.x, actual.x);
+		assertEquals(message, expected.y, actual.y);
+		assertEquals(message, expected.length, actual.length);
+	}
+
+}
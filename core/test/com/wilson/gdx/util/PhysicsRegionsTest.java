@@ -0,0 +1,157 @@
+package com.wilson.gdx.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Checks that splitting the physics into regions does not change the
+ * simulation: a small level with carrots falling onto rocks is stepped in
+ * one world and in several regions, and every carrot has to end up at
+ * exactly the same position and angle.
+ *
+ * Carrots in different regions don't collide, so the carrots are placed far
+ * enough from the borders that none of them ever changes region.
+ *
+ * @author Chris
+ *
+ */
+public class PhysicsRegionsTest
+{
+
+	private static final float REGION_WIDTH = 10;
+	private static final int REGIONS = 4;
+	private static final int CARROTS_PER_REGION = 4;
+	private static final int STEPS = 600;
+
+	private PhysicsRegions single;
+	private PhysicsRegions split;
+
+	@After
+	public void dispose()
+	{
+		if (single != null)
+			single.dispose();
+		if (split != null)
+			split.dispose();
+	}
+
+	@Test
+	public void regionsStepLikeOneWorld()
+	{
+		single = createLevel(Float.POSITIVE_INFINITY);
+		split = createLevel(REGION_WIDTH);
+		assertEquals(1, single.getWorlds().size);
+		// plus the regions the outer rocks are shared into
+		assertTrue(split.getWorlds().size >= REGIONS);
+
+		for (int step = 0; step < STEPS; step++)
+		{
+			single.step(1 / 60.0f, 8, 3);
+			split.step(1 / 60.0f, 8, 3);
+		}
+
+		Body[] expected = getCarrots(single);
+		Body[] actual = getCarrots(split);
+		for (int i = 0; i < expected.length; i++)
+		{
+			String carrot = "carrot " + i;
+			assertEquals(carrot + " x", expected[i].getPosition().x, actual[i].getPosition().x, 0);
+			assertEquals(carrot + " y", expected[i].getPosition().y, actual[i].getPosition().y, 0);
+			assertEquals(carrot + " angle", expected[i].getAngle(), actual[i].getAngle(), 0);
+			// make sure the carrots really landed on the rocks and stayed in
+			// their region, bodies that move to another one lose their
+			// contacts and can't come out the same
+			assertTrue(carrot + " fell through", actual[i].getPosition().y > 0);
+			assertEquals(carrot + " left its region", i / CARROTS_PER_REGION,
+			        (int) Math.floor(actual[i].getPosition().x / REGION_WIDTH));
+		}
+	}
+
+	/**
+	 * Builds the same level in regions of the given width: a floor of rocks
+	 * with a few steps on it, shared like WorldController shares its rock
+	 * colliders, and carrots that are dropped with a random angle and size
+	 * like the ones spawned at the goal. Each carrot gets its index as user
+	 * data.
+	 */
+	private static PhysicsRegions createLevel(float regionWidth)
+	{
+		PhysicsRegions physics = new PhysicsRegions(regionWidth, 2, new Vector2(0, -9.81f));
+		PolygonShape shape = new PolygonShape();
+		BodyDef bodyDef = new BodyDef();
+		FixtureDef fixtureDef = new FixtureDef();
+		fixtureDef.shape = shape;
+
+		// rocks of different lengths, some of them crossing region borders
+		bodyDef.type = BodyType.StaticBody;
+		float[] rocks = { 0, 7, 7, 13, 13, 26, 26, 33, 33, 40 };
+		for (int i = 0; i < rocks.length; i += 2)
+		{
+			float halfWidth = (rocks[i + 1] - rocks[i]) / 2;
+			float halfHeight = 0.5f + (i / 2) % 2 * 0.25f;
+			bodyDef.position.set(rocks[i] + halfWidth, halfHeight);
+			Body rock = physics.createBody(bodyDef);
+			shape.setAsBox(halfWidth, halfHeight);
+			fixtureDef.restitution = 0;
+			fixtureDef.friction = 0.2f;
+			rock.createFixture(fixtureDef);
+			physics.share(rock, rocks[i], rocks[i + 1]);
+		}
+
+		// carrots inside their region, the last one of each on a rock that
+		// belongs to the next region
+		Random random = new Random(1);
+		bodyDef.type = BodyType.DynamicBody;
+		for (int region = 0; region < REGIONS; region++)
+		{
+			for (int i = 0; i < CARROTS_PER_REGION; i++)
+			{
+				float x = region * REGION_WIDTH + 2.5f + i * 1.7f;
+				float y = 2.5f + 2 * random.nextFloat();
+				bodyDef.position.set(x, y);
+				bodyDef.angle = random.nextFloat() * 360;
+				Body carrot = physics.createBody(bodyDef);
+				carrot.setUserData(region * CARROTS_PER_REGION + i);
+				float scale = 0.5f + random.nextFloat();
+				shape.setAsBox(0.25f * scale, 0.25f * scale);
+				fixtureDef.density = 50;
+				fixtureDef.restitution = 0.5f;
+				fixtureDef.friction = 0.5f;
+				carrot.createFixture(fixtureDef);
+			}
+		}
+		shape.dispose();
+		return physics;
+	}
+
+	private static Body[] getCarrots(PhysicsRegions physics)
+	{
+		Body[] carrots = new Body[REGIONS * CARROTS_PER_REGION];
+		Array<Body> bodies = new Array<Body>();
+		for (World world : physics.getWorlds())
+		{
+			world.getBodies(bodies);
+			for (Body body : bodies)
+			{
+				if (body.getUserData() instanceof Integer)
+					carrots[(Integer) body.getUserData()] = body;
+			}
+		}
+		return carrots;
+	}
+
+}
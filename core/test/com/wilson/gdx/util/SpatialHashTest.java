@@ -0,0 +1,66 @@
+package com.wilson.gdx.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Checks that query() reports every item in the cells of the area exactly
+ * once, also items that span many cells and items that start outside the
+ * area.
+ *
+ * @author Chris
+ *
+ */
+public class SpatialHashTest
+{
+
+	@Test
+	public void queryFindsEveryOverlappingItemOnce()
+	{
+		Random random = new Random(1);
+		SpatialHash<Rectangle> grid = new SpatialHash<Rectangle>(1);
+		Array<Rectangle> all = new Array<Rectangle>();
+		for (int i = 0; i < 500; i++)
+		{
+			// up to five cells wide, some with negative coordinates
+			Rectangle bounds = new Rectangle(random.nextFloat() * 40 - 10, random.nextFloat() * 40 - 10,
+			        random.nextFloat() * 5, random.nextFloat() * 5);
+			all.add(bounds);
+			grid.insert(bounds, bounds);
+		}
+		// take some out again
+		for (int i = 0; i < 100; i++)
+		{
+			Rectangle bounds = all.removeIndex(random.nextInt(all.size));
+			grid.remove(bounds, bounds);
+		}
+		assertEquals(all.size, grid.size());
+
+		Array<Rectangle> result = new Array<Rectangle>();
+		for (int i = 0; i < 500; i++)
+		{
+			Rectangle area = new Rectangle(random.nextFloat() * 40 - 10, random.nextFloat() * 40 - 10,
+			        random.nextFloat() * 8, random.nextFloat() * 8);
+			result.clear();
+			grid.query(area, result);
+			for (int j = 0; j < result.size; j++)
+			{
+				assertTrue("item reported twice", result.indexOf(result.get(j), true) == j);
+				assertTrue("removed item reported", all.contains(result.get(j), true));
+			}
+			for (Rectangle bounds : all)
+			{
+				if (bounds.overlaps(area))
+					assertTrue("overlapping item missing", result.contains(bounds, true));
+			}
+		}
+	}
+
+}
@@ -5,11 +5,13 @@ import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.badlogic.gdx.tools.texturepacker.TexturePacker;
 import com.badlogic.gdx.tools.texturepacker.TexturePacker.Settings;
 import com.wilson.gdx.WilsonGdxGame;
+import com.wilson.gdx.util.Constants;
 
 public class DesktopLauncher
 {
 	private static boolean rebuildAtlas = false;
 	private static boolean drawDebugOutline = false;
+	private static boolean rebuildLevels = false;
 
 
 	/**
@@ -20,6 +22,9 @@ public class DesktopLauncher
 	 * we use the render images to the screen. Using the atlas, we load only one
 	 * larger image rather than multiple smaller images.
 	 * 
+	 * In the same way the LevelCompiler turns the level images into compiled
+	 * level files which load without scanning any pixels.
+	 * 
 	 * @param args
 	 */
 	public static void main(String[] args)
@@ -33,6 +38,10 @@ public class DesktopLauncher
 			TexturePacker.process(settings, "assets-raw/images", "../core/assets/images", "canyonbunny.pack");
 			TexturePacker.process(settings, "assets-raw/images-ui", "../core/assets/images", "canyonbunny-ui.pack");
 		}
+		if (rebuildLevels)
+		{
+			LevelCompiler.process(Constants.LEVEL_01);
+		}
 
 		LwjglApplicationConfiguration cfg = new LwjglApplicationConfiguration();
 		cfg.title = "CanyonBunny";
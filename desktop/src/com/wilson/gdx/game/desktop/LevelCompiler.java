@@ -0,0 +1,123 @@
+package com.wilson.gdx.game.desktop;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import com.wilson.gdx.game.Level.BLOCK_TYPE;
+import com.wilson.gdx.game.LevelTemplate;
+
+public class LevelCompiler
+{
+
+	/**
+	 * Turns level images into the compiled level format that LevelTemplate
+	 * can memory-map at runtime. This runs offline on the desktop, just like
+	 * the TexturePacker, so it reads the images with ImageIO instead of a
+	 * Pixmap and does not need a running Libgdx application.
+	 *
+	 * The compiled file is written next to the image and replaces it as the
+	 * source of the level as long as the image stays the same. Once the image
+	 * changes the game parses the image again until the level is rebuilt.
+	 *
+	 * @param filenames
+	 */
+	public static void process(String... filenames)
+	{
+		for (String filename : filenames)
+		{
+			try
+			{
+				compile(filename);
+			} catch (IOException e)
+			{
+				throw new RuntimeException("Couldn't compile level '" + filename + "'", e);
+			}
+		}
+	}
+
+	/**
+	 * Compiles the level images given on the command line.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args)
+	{
+		process(args);
+	}
+
+	private static void compile(String filename) throws IOException
+	{
+		byte[] bytes = readFile(new File(filename));
+		final BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+		if (image == null)
+			throw new IOException("Unsupported image format");
+		LevelTemplate template = LevelTemplate.parse(filename, new LevelTemplate.PixelSource()
+		{
+			@Override
+			public int getWidth()
+			{
+				return image.getWidth();
+			}
+
+			@Override
+			public int getHeight()
+			{
+				return image.getHeight();
+			}
+
+			@Override
+			public void readRow(int y, int[] row)
+			{
+				image.getRGB(0, y, row.length, 1, row, 0, row.length);
+				// convert ARGB to the RGBA layout used by Pixmap
+				for (int x = 0; x < row.length; x++)
+					row[x] = (row[x] << 8) | (row[x] >>> 24);
+			}
+		});
+		for (String warning : template.warnings)
+			System.err.println(filename + ": " + warning);
+		int staticRocks = 0;
+		for (LevelTemplate.Entry rock : template.rocks)
+		{
+			if (rock.type == BLOCK_TYPE.ROCK_STATIC)
+				staticRocks++;
+		}
+
+		File output = new File(LevelTemplate.getCompiledFilename(filename));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+		try
+		{
+			template.write(out, bytes);
+		} finally
+		{
+			out.close();
+		}
+		System.out.println("Compiled level '" + filename + "' to '" + output + "' (" + template.rocks.length
+		        + " rocks, " + staticRocks + " of them static, " + template.goldcoins.length + " gold coins, "
+		        + template.feathers.length + " feathers)");
+	}
+
+	private static byte[] readFile(File file) throws IOException
+	{
+		byte[] bytes = new byte[(int)file.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try
+		{
+			in.readFully(bytes);
+		} finally
+		{
+			in.close();
+		}
+		return bytes;
+	}
+
+}